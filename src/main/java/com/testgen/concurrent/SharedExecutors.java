@@ -0,0 +1,207 @@
+package com.testgen.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程级共享线程池
+ * 所有文档导入共用同一组有名字的线程池，线程数由配置决定，
+ * 并发导入多个文档时不会再按文档成倍创建线程。
+ *
+ * <ul>
+ *   <li>{@link #io()}：飞书接口调用、图片下载等网络I/O（SHARED_IO_THREADS，默认8）</li>
+ *   <li>{@link #cpu()}：图片解码、哈希、压缩、大批量用例评估等CPU计算（SHARED_CPU_THREADS，默认CPU核数）</li>
+ *   <li>{@link #llm()}：视觉/大模型调用，线程数即全局并发上限（SHARED_LLM_THREADS，默认2，避免429）</li>
+ *   <li>{@link #scheduler()}：定时任务（如令牌提前刷新），单线程，任务应尽快返回</li>
+ *   <li>{@link #jobs()}：后台作业（如异步识别文档图片），会阻塞等待上面几个线程池的任务，
+ *       因此不能提交到io/cpu/llm池中（SHARED_JOB_THREADS，默认4）</li>
+ *   <li>{@link #pipeline()}：端到端流水线（获取→识别→解析→生成），会等待jobs池中的图片识别作业和
+ *       speculation池中的预解析，因此单独成池（SHARED_PIPELINE_THREADS，默认2）</li>
+ *   <li>{@link #speculation()}：导入文档后的PRD预解析，会等待图片识别完成，单独成池以免占满流水线线程
+ *       （SHARED_SPECULATION_THREADS，默认2）</li>
+ *   <li>{@link #background()}：低优先级后台任务（如文档变更后预生成用例），与jobs一样会等待io/cpu/llm池，
+ *       线程优先级最低，避免与用户请求争抢CPU（SHARED_BACKGROUND_THREADS，默认1）</li>
+ *   <li>{@link #http()}：Web服务器请求处理线程，SSE长连接会占用线程（SHARED_HTTP_THREADS，默认16）</li>
+ * </ul>
+ *
+ * 目标运行环境为Java 11，未使用虚拟线程。
+ */
+public final class SharedExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedExecutors.class);
+
+    private static final ThreadPoolExecutor IO = newPool("io", intEnv("SHARED_IO_THREADS", 8));
+    private static final ThreadPoolExecutor CPU = newPool("cpu",
+            intEnv("SHARED_CPU_THREADS", Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor LLM = newPool("llm", intEnv("SHARED_LLM_THREADS", 2));
+    private static final ScheduledThreadPoolExecutor SCHEDULER = newScheduler();
+    private static final ThreadPoolExecutor JOBS = newPool("job", intEnv("SHARED_JOB_THREADS", 4));
+    private static final ThreadPoolExecutor PIPELINE = newPool("pipeline", intEnv("SHARED_PIPELINE_THREADS", 2));
+    private static final ThreadPoolExecutor SPECULATION = newPool("speculation",
+            intEnv("SHARED_SPECULATION_THREADS", 2));
+    private static final ThreadPoolExecutor BACKGROUND = newPool("background",
+            intEnv("SHARED_BACKGROUND_THREADS", 1), Thread.MIN_PRIORITY);
+    private static final ThreadPoolExecutor HTTP = newPool("http", intEnv("SHARED_HTTP_THREADS", 16));
+
+    private SharedExecutors() {
+    }
+
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    public static ExecutorService cpu() {
+        return CPU;
+    }
+
+    public static ExecutorService llm() {
+        return LLM;
+    }
+
+    public static ScheduledExecutorService scheduler() {
+        return SCHEDULER;
+    }
+
+    public static ExecutorService jobs() {
+        return JOBS;
+    }
+
+    public static ExecutorService pipeline() {
+        return PIPELINE;
+    }
+
+    public static ExecutorService speculation() {
+        return SPECULATION;
+    }
+
+    public static ExecutorService background() {
+        return BACKGROUND;
+    }
+
+    public static ExecutorService http() {
+        return HTTP;
+    }
+
+    /**
+     * Web服务器请求处理线程数
+     */
+    public static int httpThreads() {
+        return HTTP.getMaximumPoolSize();
+    }
+
+    /**
+     * 各线程池的运行状态（用于指标接口输出）
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("io", poolStats(IO));
+        result.put("cpu", poolStats(CPU));
+        result.put("llm", poolStats(LLM));
+        result.put("scheduler", poolStats(SCHEDULER));
+        result.put("jobs", poolStats(JOBS));
+        result.put("pipeline", poolStats(PIPELINE));
+        result.put("speculation", poolStats(SPECULATION));
+        result.put("background", poolStats(BACKGROUND));
+        result.put("http", poolStats(HTTP));
+        return result;
+    }
+
+    /**
+     * 关闭所有共享线程池：先等待已提交任务完成，超时后强制中断
+     */
+    public static void shutdown() {
+        ThreadPoolExecutor[] pools = { HTTP, PIPELINE, SPECULATION, BACKGROUND, JOBS, SCHEDULER, IO, CPU, LLM };
+        for (ThreadPoolExecutor pool : pools) {
+            pool.shutdown();
+        }
+        for (ThreadPoolExecutor pool : pools) {
+            try {
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("共享线程池已关闭");
+    }
+
+    private static Map<String, Object> poolStats(ThreadPoolExecutor pool) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("maxThreads", pool.getMaximumPoolSize());
+        m.put("poolSize", pool.getPoolSize());
+        m.put("active", pool.getActiveCount());
+        m.put("queueDepth", pool.getQueue().size());
+        m.put("completedTasks", pool.getCompletedTaskCount());
+        m.put("shutdown", pool.isShutdown());
+        return m;
+    }
+
+    /**
+     * 固定大小、无界队列的线程池；空闲线程60秒后回收，守护线程不阻止JVM退出
+     */
+    private static ThreadPoolExecutor newPool(String name, int threads) {
+        return newPool(name, threads, Thread.NORM_PRIORITY);
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, int priority) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("shared-" + name, priority));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 单线程定时线程池；关闭后不再执行尚未到期的延迟任务
+     */
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                new NamedThreadFactory("shared-scheduler", Thread.NORM_PRIORITY));
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return Math.max(1, defaultValue);
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return Math.max(1, defaultValue);
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final int priority;
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        NamedThreadFactory(String prefix, int priority) {
+            this.prefix = prefix;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            t.setPriority(priority);
+            return t;
+        }
+    }
+}
@@ -4,9 +4,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.testgen.parser.PRDParser;
 import com.testgen.generator.TestCaseGenerator;
 import com.testgen.model.testcase.TestCase;
-import com.testgen.evaluation.TestCaseEvaluator;
-import com.testgen.evaluation.TestCaseEvaluator.EvaluationResult;
 import com.testgen.evaluation.CaseComparisonService;
+import com.testgen.evaluation.EvaluationSession;
+import com.testgen.evaluation.EvaluationSessionStore;
+import com.testgen.pipeline.PipelineService;
+import com.testgen.reference.ReferenceSuiteStore;
 
 import java.util.*;
 
@@ -17,10 +19,14 @@ import java.util.*;
  */
 public class TestCaseController {
 
+    // 单次对比交给LLM的人工用例上限（所有用例会放进同一个提示词）
+    private static final int COMPARE_MAX_REFERENCE_CASES = parseIntEnv("COMPARE_MAX_REFERENCE_CASES", 500);
+
     private PRDParser prdParser;
     private TestCaseGenerator testCaseGenerator;
     private ObjectMapper objectMapper;
     private boolean useLLM;
+    private PipelineService pipelineService;
 
     public TestCaseController() {
         this(false); // 默认不使用LLM
@@ -33,6 +39,10 @@ public class TestCaseController {
         this.objectMapper = new ObjectMapper();
     }
 
+    public void setPipelineService(PipelineService pipelineService) {
+        this.pipelineService = pipelineService;
+    }
+
     /**
      * 生成测试用例接口
      * POST /api/testcase/generate
@@ -54,56 +64,20 @@ public class TestCaseController {
                 return buildErrorResponse("PRD内容不能为空");
             }
 
-            // 根据请求决定是否使用LLM
-            PRDParser parser = new PRDParser(useLLM);
-
-            // 1. 解析PRD
-            Map<String, Object> prdData = parser.parsePRD(prdText);
+            // 1. 解析PRD：飞书导入的文档若已在后台预解析，直接取用结果
+            Map<String, Object> prdData = useLLM == this.useLLM && pipelineService != null
+                    ? pipelineService.takeSpeculativeParse(prdText) : null;
+            if (prdData == null) {
+                // 根据请求决定是否使用LLM
+                PRDParser parser = new PRDParser(useLLM);
+                prdData = parser.parsePRD(prdText);
+            }
 
             // 2. 生成测试用例
             List<TestCase> testCases = testCaseGenerator.generateFromPRDData(prdData);
 
             // 3. 构建响应
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", useLLM ? "使用火山引擎大模型生成成功" : "测试用例生成成功");
-            response.put("testCases", testCases);
-            response.put("count", testCases.size());
-            response.put("useLLM", useLLM);
-
-            // 统计信息
-            Map<String, Object> statistics = new HashMap<>();
-            statistics.put("total", testCases.size());
-            statistics.put("frontend", testCases.stream()
-                    .filter(tc -> "FRONTEND".equals(tc.getSceneType().name())).count());
-            statistics.put("backend", testCases.stream()
-                    .filter(tc -> "BACKEND".equals(tc.getSceneType().name())).count());
-            statistics.put("integration", testCases.stream()
-                    .filter(tc -> "INTEGRATION".equals(tc.getSceneType().name())).count());
-            statistics.put("exception", testCases.stream()
-                    .filter(tc -> "EXCEPTION".equals(tc.getSceneType().name())).count());
-
-            response.put("statistics", statistics);
-
-            // 4. 如果启用评测，执行质量评估
-            if (enableEval && testCases.size() > 0) {
-                try {
-                    TestCaseEvaluator evaluator = new TestCaseEvaluator();
-                    EvaluationResult evalResult = evaluator.evaluate(testCases);
-
-                    // 直接返回完整的评测结果对象
-                    response.put("evaluation", evalResult);
-
-                    response.put("message",
-                            useLLM ? String.format("使用火山引擎大模型生成成功，质量评分: %.1f", evalResult.getTotalScore())
-                                    : String.format("测试用例生成成功，质量评分: %.1f", evalResult.getTotalScore()));
-                } catch (Exception e) {
-                    System.err.println("评测失败: " + e.getMessage());
-                    e.printStackTrace();
-                    // 评测失败不影响用例生成，继续返回
-                }
-            }
-
+            Map<String, Object> response = buildGenerateResponse(testCases, useLLM, enableEval);
             return objectMapper.writeValueAsString(response);
 
         } catch (Exception e) {
@@ -112,11 +86,19 @@ public class TestCaseController {
         }
     }
 
+    /**
+     * 构建生成接口的响应（与端到端流水线共用）
+     */
+    private Map<String, Object> buildGenerateResponse(List<TestCase> testCases, boolean useLLM, boolean enableEval) {
+        return PipelineService.buildGenerateResponse(testCases, useLLM, enableEval);
+    }
+
     /**
      * 对比人工用例与AI生成用例
      * POST /api/testcase/compare
      * 
-     * @param requestBody JSON格式: {"aiCases": [...], "referenceCases": [...]}
+     * @param requestBody JSON格式: {"aiCases": [...], "referenceCases": [...]}，
+     *                    人工用例已通过导入接口上传时用 "referenceImportId" 代替 "referenceCases"
      * @return JSON格式响应
      */
     public String compareTestCases(String requestBody) {
@@ -141,7 +123,27 @@ public class TestCaseController {
             
             // 解析人工用例（可为空，支持独立评估模式）
             List<TestCase> referenceCases = new ArrayList<>();
-            if (refCasesData != null && !refCasesData.isEmpty()) {
+            Map<String, Object> referenceImport = null;
+            String referenceImportId = (String) request.get("referenceImportId");
+            if (referenceImportId != null && !referenceImportId.isEmpty()) {
+                ReferenceSuiteStore.Suite suite = ReferenceSuiteStore.getInstance().get(referenceImportId);
+                if (suite == null) {
+                    return buildErrorResponse("导入的人工用例已过期，请重新导入");
+                }
+                // 导入的用例集可能有数万条，只取与AI用例同模块的部分交给LLM
+                Set<String> modules = new LinkedHashSet<>();
+                for (TestCase tc : aiCases) {
+                    if (tc.getModule() != null) {
+                        modules.add(tc.getModule());
+                    }
+                }
+                referenceCases = suite.select(modules, COMPARE_MAX_REFERENCE_CASES);
+                referenceImport = new LinkedHashMap<>();
+                referenceImport.put("importId", suite.id);
+                referenceImport.put("total", suite.size());
+                referenceImport.put("selected", referenceCases.size());
+                referenceImport.put("limit", COMPARE_MAX_REFERENCE_CASES);
+            } else if (refCasesData != null && !refCasesData.isEmpty()) {
                 referenceCases = parseReferenceCases(refCasesData);
             }
             
@@ -181,6 +183,9 @@ public class TestCaseController {
                 response.put("message", String.format("对比评分完成，匹配度: %.1f%%", result.getTotalScore()));
             }
             response.put("result", result);
+            if (referenceImport != null) {
+                response.put("referenceImport", referenceImport);
+            }
 
             return objectMapper.writeValueAsString(response);
 
@@ -190,6 +195,74 @@ public class TestCaseController {
         }
     }
 
+    /**
+     * 创建增量评估会话
+     * POST /api/evaluate/session
+     *
+     * @param requestBody JSON格式: {"testCases": [...]}
+     * @return JSON格式响应，含 sessionId 和当前评估结果
+     */
+    public String createEvaluationSession(String requestBody) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> request = objectMapper.readValue(requestBody, Map.class);
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> casesData = (List<Map<String, Object>>) request.get("testCases");
+            List<TestCase> testCases = casesData != null ? parseReferenceCases(casesData) : new ArrayList<>();
+
+            EvaluationSession session = new EvaluationSession(testCases);
+            EvaluationSessionStore.getInstance().put(session);
+            return buildEvaluationSessionResponse(session);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return buildErrorResponse("创建评估会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 提交用例变更，返回增量更新后的评估结果
+     * POST /api/evaluate/session/delta
+     *
+     * @param requestBody JSON格式: {"sessionId": "...", "upserts": [新增或修改的用例], "deletes": ["TC_0001", ...]}，
+     *                    修改了caseId的用例需同时删除旧caseId
+     * @return JSON格式响应；会话不存在或已过期时 expired 为true，需重新创建会话
+     */
+    public String updateEvaluationSession(String requestBody) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> request = objectMapper.readValue(requestBody, Map.class);
+            EvaluationSession session = EvaluationSessionStore.getInstance().get((String) request.get("sessionId"));
+            if (session == null) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", false);
+                response.put("expired", true);
+                response.put("message", "评估会话已过期，请重新评估");
+                return objectMapper.writeValueAsString(response);
+            }
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> upsertsData = (List<Map<String, Object>>) request.get("upserts");
+            @SuppressWarnings("unchecked")
+            List<String> deletes = (List<String>) request.get("deletes");
+            List<TestCase> upserts = upsertsData != null ? parseReferenceCases(upsertsData) : null;
+            session.apply(deletes, upserts);
+            return buildEvaluationSessionResponse(session);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return buildErrorResponse("更新评估失败: " + e.getMessage());
+        }
+    }
+
+    private String buildEvaluationSessionResponse(EvaluationSession session) throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessionId", session.id);
+        response.put("size", session.size());
+        response.put("version", session.version());
+        response.put("evaluation", session.result());
+        return objectMapper.writeValueAsString(response);
+    }
+
     /**
      * 解析人工标准用例
      */
@@ -328,6 +401,18 @@ public class TestCaseController {
         return referenceCases;
     }
 
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      * 构建错误响应
      */
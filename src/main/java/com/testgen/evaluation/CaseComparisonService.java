@@ -1,6 +1,7 @@
 package com.testgen.evaluation;
 
 import com.testgen.model.testcase.TestCase;
+import com.testgen.llm.LLMMetrics;
 import com.testgen.llm.VolcanoService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -479,7 +480,7 @@ public class CaseComparisonService {
         String userPrompt = "请评估以下AI生成的测试用例质量：\n\n" +
                 objectMapper.writeValueAsString(evaluationData);
 
-        return volcanoService.chat(systemPrompt, userPrompt);
+        return volcanoService.chat(LLMMetrics.OP_STANDALONE_EVAL, systemPrompt, userPrompt);
     }
 
     /**
@@ -645,7 +646,7 @@ public class CaseComparisonService {
         String userPrompt = "请对比评估以下AI生成的测试用例与人工标准用例：\n\n" +
                 objectMapper.writeValueAsString(comparisonData);
 
-        return volcanoService.chat(systemPrompt, userPrompt);
+        return volcanoService.chat(LLMMetrics.OP_COMPARISON, systemPrompt, userPrompt);
     }
 
     /**
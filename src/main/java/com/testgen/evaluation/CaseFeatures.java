@@ -0,0 +1,335 @@
+package com.testgen.evaluation;
+
+import com.testgen.model.testcase.AssertRule;
+import com.testgen.model.testcase.BackEndStep;
+import com.testgen.model.testcase.FrontEndStep;
+import com.testgen.model.testcase.SceneType;
+import com.testgen.model.testcase.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 单条用例的评估特征
+ * 一次遍历用例的标题、步骤、预期结果、断言和标签得到全部计数与关键词命中，
+ * 各评估维度只根据特征计分，不再扫描文本。
+ */
+final class CaseFeatures {
+
+    // 高质量断言类型（可自动化执行）
+    private static final Set<String> HIGH_QUALITY_ASSERT_TYPES = new HashSet<>(Arrays.asList(
+            "statusEquals", "status_code", "fieldEquals", "fieldContains",
+            "textEquals", "textContains", "elementVisible", "elementEnabled",
+            "schemaValidate", "schema", "urlEquals", "urlContains",
+            "contains", "equals", "exists", "responseTime", "dbRecordExists"));
+
+    private static final Pattern CASE_ID_PATTERN = Pattern.compile("TC_\\d{4}");
+
+    // 缺陷发现
+    final boolean boundary;
+    final boolean exception;
+    final int boundaryHits;        // 命中边界关键词的字段数
+    final int exceptionHits;       // 命中异常关键词的字段数
+    final int boundaryKeywords;    // 边界关键词出现次数
+    final int exceptionKeywords;   // 异常关键词出现次数
+    final int vagueKeywords;       // 步骤中笼统关键词出现次数
+    final int actionKeywords;      // 步骤中动作关键词出现次数
+
+    // 业务覆盖
+    final SceneType sceneType;
+    final String module;
+    final List<String> actions;    // 步骤动作（前端在前，不含null）
+
+    // 可执行性
+    final int totalSteps;
+    final int vagueSteps;          // 含笼统关键词的步骤数
+    final int specificItems;       // 定位符、具体输入值、API路径、请求方法
+    final int frontStepsWithValue; // 有动作且有输入值的前端步骤
+    final int plainSteps;          // 有动作但无输入值的步骤（含后端步骤）
+    final int expectedCount;
+
+    // 断言完整性
+    final int assertRuleCount;
+    final int highQualityAsserts;
+    final int completeAsserts;
+
+    // 规范性
+    final boolean validCaseId;
+    final boolean requiredFields;
+
+    private CaseFeatures(TestCase tc) {
+        Scan scan = new Scan();
+        scan.text(tc.getTitle());
+
+        List<String> actionList = new ArrayList<>();
+        int steps = 0;
+        int vague = 0;
+        int specific = 0;
+        int withValue = 0;
+        int plain = 0;
+        if (tc.getFrontEndSteps() != null) {
+            for (FrontEndStep step : tc.getFrontEndSteps()) {
+                steps++;
+                String action = step.getAction();
+                String value = step.getValue();
+                boolean actionVague = scan.step(action);
+                boolean valueVague = scan.step(value);
+                boolean elementVague = scan.vague(step.getElement());
+                if (actionVague || valueVague || elementVague) {
+                    vague++;
+                }
+                if (step.getLocator() != null && !step.getLocator().isEmpty()) {
+                    specific++;
+                }
+                if (value != null && !value.isEmpty() && !valueVague) {
+                    specific++;
+                }
+                if (action != null) {
+                    actionList.add(action);
+                    if (!action.isEmpty()) {
+                        if (value != null && !value.isEmpty()) {
+                            withValue++;
+                        } else {
+                            plain++;
+                        }
+                    }
+                }
+            }
+        }
+        if (tc.getBackEndSteps() != null) {
+            for (BackEndStep step : tc.getBackEndSteps()) {
+                steps++;
+                String action = step.getAction();
+                if (scan.step(action)) {
+                    vague++;
+                }
+                if (step.getApiPath() != null && !step.getApiPath().isEmpty()) {
+                    specific++;
+                }
+                if (step.getMethod() != null && !step.getMethod().isEmpty()) {
+                    specific++;
+                }
+                if (action != null) {
+                    actionList.add(action);
+                    if (!action.isEmpty()) {
+                        plain++;
+                    }
+                }
+            }
+        }
+
+        int expected = 0;
+        if (tc.getFrontEndExpected() != null) {
+            expected += tc.getFrontEndExpected().size();
+            for (String s : tc.getFrontEndExpected()) {
+                scan.text(s);
+            }
+        }
+        if (tc.getBackEndExpected() != null) {
+            expected += tc.getBackEndExpected().size();
+            for (String s : tc.getBackEndExpected()) {
+                scan.text(s);
+            }
+        }
+        if (tc.getTags() != null) {
+            for (String tag : tc.getTags()) {
+                scan.text(tag);
+            }
+        }
+
+        int asserts = 0;
+        int highQuality = 0;
+        int complete = 0;
+        if (tc.getAssertRules() != null) {
+            for (AssertRule rule : tc.getAssertRules()) {
+                asserts++;
+                String assertType = rule.getAssertType();
+                if (assertType != null && HIGH_QUALITY_ASSERT_TYPES.contains(assertType.toLowerCase())) {
+                    highQuality++;
+                }
+                if (rule.getTarget() != null && !rule.getTarget().isEmpty() && rule.getExpectedValue() != null) {
+                    complete++;
+                }
+            }
+        }
+
+        this.boundaryHits = scan.boundaryHits;
+        this.exceptionHits = scan.exceptionHits;
+        this.boundaryKeywords = scan.boundaryKeywords;
+        this.exceptionKeywords = scan.exceptionKeywords;
+        this.vagueKeywords = scan.vagueKeywords;
+        this.actionKeywords = scan.actionKeywords;
+        this.boundary = boundaryHits > 0;
+        this.exception = tc.getSceneType() == SceneType.EXCEPTION || exceptionHits > 0;
+        this.sceneType = tc.getSceneType();
+        this.module = tc.getModule();
+        this.actions = actionList.isEmpty() ? Collections.emptyList() : actionList;
+        this.totalSteps = steps;
+        this.vagueSteps = vague;
+        this.specificItems = specific;
+        this.frontStepsWithValue = withValue;
+        this.plainSteps = plain;
+        this.expectedCount = expected;
+        this.assertRuleCount = asserts;
+        this.highQualityAsserts = highQuality;
+        this.completeAsserts = complete;
+        this.validCaseId = tc.getCaseId() != null && CASE_ID_PATTERN.matcher(tc.getCaseId()).matches();
+        this.requiredFields = tc.getTitle() != null && tc.getPriority() != null && tc.getModule() != null;
+    }
+
+    /**
+     * 提取用例特征
+     */
+    static CaseFeatures of(TestCase tc) {
+        return new CaseFeatures(tc);
+    }
+
+    /**
+     * 可执行性得分（0-100）：步骤数量25 + 步骤具体性30 + 步骤内容完整性20 + 预期结果明确性25
+     */
+    double executabilityScore() {
+        double caseScore = 0.0;
+
+        // 3-8步为最佳区间
+        if (totalSteps >= 3 && totalSteps <= 8) {
+            caseScore += 25;
+        } else if (totalSteps >= 2 && totalSteps <= 10) {
+            caseScore += 20;
+        } else if (totalSteps >= 1) {
+            caseScore += 10;
+        }
+
+        // 每个笼统步骤扣5分，具体项占比加分（每步最多2个具体项）
+        double stepSpecificityScore = 30.0 - 5.0 * vagueSteps;
+        if (totalSteps > 0) {
+            double specificRatio = (double) specificItems / (totalSteps * 2);
+            stepSpecificityScore = Math.max(0, stepSpecificityScore) + (specificRatio * 10);
+        }
+        caseScore += Math.min(30, Math.max(0, stepSpecificityScore));
+
+        // 有输入值的前端步骤记1.5，其余有效步骤记1.0
+        int validStepCount = frontStepsWithValue + plainSteps;
+        if (validStepCount > 0) {
+            double stepContentScore = 1.5 * frontStepsWithValue + 1.0 * plainSteps;
+            caseScore += Math.min(20.0, (stepContentScore / validStepCount) * 20.0);
+        }
+
+        if (expectedCount >= 3) {
+            caseScore += 25;
+        } else if (expectedCount >= 2) {
+            caseScore += 22;
+        } else if (expectedCount == 1) {
+            caseScore += 18;
+        } else if (assertRuleCount > 0) {
+            caseScore += 20;
+        }
+
+        return Math.min(100.0, caseScore);
+    }
+
+    /**
+     * 断言完整性得分（0-100）：断言数量40 + 断言质量30 + 预期结果30，断言少但预期结果丰富时补偿15
+     */
+    double assertionScore() {
+        double caseScore = 0.0;
+
+        if (assertRuleCount >= 3) {
+            caseScore += 40;
+        } else if (assertRuleCount == 2) {
+            caseScore += 32;
+        } else if (assertRuleCount == 1) {
+            caseScore += 20;
+        }
+
+        if (assertRuleCount > 0) {
+            double qualityRatio = (double) highQualityAsserts / assertRuleCount;
+            double completenessRatio = (double) completeAsserts / assertRuleCount;
+            caseScore += (qualityRatio * 15 + completenessRatio * 15);
+        }
+
+        if (expectedCount >= 3) {
+            caseScore += 30;
+        } else if (expectedCount == 2) {
+            caseScore += 24;
+        } else if (expectedCount == 1) {
+            caseScore += 15;
+        }
+
+        if (assertRuleCount < 2 && expectedCount >= 3) {
+            caseScore = Math.min(100.0, caseScore + 15);
+        }
+
+        return Math.min(100.0, caseScore);
+    }
+
+    /**
+     * 规范性得分：ID格式（TC_XXXX）50 + 标题/优先级/模块齐全50
+     */
+    double standardScore() {
+        return (validCaseId ? 50.0 : 0.0) + (requiredFields ? 50.0 : 0.0);
+    }
+
+    /**
+     * 单次遍历中的关键词统计；每个字段只经 {@link KeywordMatcher} 扫描一次
+     */
+    private static final class Scan {
+        int boundaryHits;
+        int exceptionHits;
+        int boundaryKeywords;
+        int exceptionKeywords;
+        int vagueKeywords;
+        int actionKeywords;
+
+        /**
+         * 标题、预期结果、标签：统计边界和异常关键词
+         */
+        void text(String text) {
+            if (text != null) {
+                count(TestCaseEvaluator.KEYWORDS.match(text));
+            }
+        }
+
+        /**
+         * 步骤动作、输入值：另外统计笼统关键词和动作关键词
+         *
+         * @return 是否含笼统关键词
+         */
+        boolean step(String text) {
+            if (text == null) {
+                return false;
+            }
+            KeywordMatcher.Hits hits = TestCaseEvaluator.KEYWORDS.match(text);
+            count(hits);
+            actionKeywords += hits.count(TestCaseEvaluator.ACTION);
+            return vague(hits);
+        }
+
+        /**
+         * 前端元素名：只统计笼统关键词
+         */
+        boolean vague(String text) {
+            return text != null && vague(TestCaseEvaluator.KEYWORDS.match(text));
+        }
+
+        private boolean vague(KeywordMatcher.Hits hits) {
+            vagueKeywords += hits.count(TestCaseEvaluator.VAGUE_STEP);
+            return hits.matched(TestCaseEvaluator.VAGUE_STEP);
+        }
+
+        private void count(KeywordMatcher.Hits hits) {
+            if (hits.matched(TestCaseEvaluator.BOUNDARY)) {
+                boundaryHits++;
+                boundaryKeywords += hits.count(TestCaseEvaluator.BOUNDARY);
+            }
+            if (hits.matched(TestCaseEvaluator.EXCEPTION)) {
+                exceptionHits++;
+                exceptionKeywords += hits.count(TestCaseEvaluator.EXCEPTION);
+            }
+        }
+    }
+}
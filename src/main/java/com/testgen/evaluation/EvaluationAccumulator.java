@@ -0,0 +1,154 @@
+package com.testgen.evaluation;
+
+import com.testgen.model.testcase.SceneType;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 评估维度的统计量
+ * 由 {@link CaseFeatures} 逐条累加，两个累加器可合并（各项计数相加），
+ * 合并满足结合律和交换律，因此可以分段并行累加后再合并。
+ * 场景类型、模块和步骤动作按出现次数计数而不是只记集合，因此也可以减去一条用例，
+ * 用于编辑单条用例后增量更新得分（见 {@link EvaluationSession}）。
+ *
+ * 得分之和使用 {@link BigDecimal} 精确累加：double相加的结果依赖顺序，
+ * 精确求和后无论分段方式、增删顺序如何，最终得分都与顺序累加完全一致。
+ */
+final class EvaluationAccumulator {
+
+    long cases;
+
+    // 缺陷发现
+    long boundaryCount;
+    long exceptionCount;
+    long boundaryKeywords;
+    long exceptionKeywords;
+
+    // 业务覆盖：场景类型/模块/步骤动作 → 出现次数（只保留大于0的项）
+    private final long[] sceneTypeCounts = new long[SceneType.values().length];
+    private final Map<String, Long> moduleCounts = new HashMap<>();
+    private final Map<String, Long> actionCounts = new HashMap<>();
+
+    // 可执行性
+    BigDecimal executabilitySum = BigDecimal.ZERO;
+    long vagueStepCases;
+    long vagueKeywords;
+    long actionKeywords;
+
+    // 断言完整性、规范性
+    BigDecimal assertionSum = BigDecimal.ZERO;
+    BigDecimal standardSum = BigDecimal.ZERO;
+
+    /**
+     * 累加一条用例
+     */
+    EvaluationAccumulator add(CaseFeatures f) {
+        apply(f, 1);
+        return this;
+    }
+
+    /**
+     * 减去一条之前累加过的用例
+     */
+    EvaluationAccumulator remove(CaseFeatures f) {
+        apply(f, -1);
+        return this;
+    }
+
+    private void apply(CaseFeatures f, int sign) {
+        cases += sign;
+        if (f.boundary) {
+            boundaryCount += sign;
+        }
+        if (f.exception) {
+            exceptionCount += sign;
+        }
+        boundaryKeywords += sign * f.boundaryKeywords;
+        exceptionKeywords += sign * f.exceptionKeywords;
+
+        if (f.sceneType != null) {
+            sceneTypeCounts[f.sceneType.ordinal()] += sign;
+        }
+        if (f.module != null) {
+            count(moduleCounts, f.module, sign);
+        }
+        for (String action : f.actions) {
+            count(actionCounts, action, sign);
+        }
+
+        BigDecimal executability = new BigDecimal(f.executabilityScore());
+        BigDecimal assertion = new BigDecimal(f.assertionScore());
+        BigDecimal standard = new BigDecimal(f.standardScore());
+        if (sign > 0) {
+            executabilitySum = executabilitySum.add(executability);
+            assertionSum = assertionSum.add(assertion);
+            standardSum = standardSum.add(standard);
+        } else {
+            executabilitySum = executabilitySum.subtract(executability);
+            assertionSum = assertionSum.subtract(assertion);
+            standardSum = standardSum.subtract(standard);
+        }
+        if (f.vagueSteps > 0) {
+            vagueStepCases += sign;
+        }
+        vagueKeywords += sign * f.vagueKeywords;
+        actionKeywords += sign * f.actionKeywords;
+    }
+
+    /**
+     * 合并另一个累加器（合并到当前对象）
+     */
+    EvaluationAccumulator merge(EvaluationAccumulator other) {
+        cases += other.cases;
+        boundaryCount += other.boundaryCount;
+        exceptionCount += other.exceptionCount;
+        boundaryKeywords += other.boundaryKeywords;
+        exceptionKeywords += other.exceptionKeywords;
+        for (int i = 0; i < sceneTypeCounts.length; i++) {
+            sceneTypeCounts[i] += other.sceneTypeCounts[i];
+        }
+        other.moduleCounts.forEach((module, n) -> count(moduleCounts, module, n));
+        other.actionCounts.forEach((action, n) -> count(actionCounts, action, n));
+        executabilitySum = executabilitySum.add(other.executabilitySum);
+        vagueStepCases += other.vagueStepCases;
+        vagueKeywords += other.vagueKeywords;
+        actionKeywords += other.actionKeywords;
+        assertionSum = assertionSum.add(other.assertionSum);
+        standardSum = standardSum.add(other.standardSum);
+        return this;
+    }
+
+    private static void count(Map<String, Long> counts, String key, long delta) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * 是否有该场景类型的用例
+     */
+    boolean covers(SceneType sceneType) {
+        return sceneTypeCounts[sceneType.ordinal()] > 0;
+    }
+
+    /**
+     * 不同模块数
+     */
+    int moduleCount() {
+        return moduleCounts.size();
+    }
+
+    /**
+     * 不同步骤动作数
+     */
+    int actionCount() {
+        return actionCounts.size();
+    }
+
+    /**
+     * 平均分：精确和除以用例数，只在最后舍入一次
+     */
+    double average(BigDecimal sum) {
+        return cases == 0 ? 0.0 : sum.doubleValue() / cases;
+    }
+}
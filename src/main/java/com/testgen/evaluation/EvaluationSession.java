@@ -0,0 +1,136 @@
+package com.testgen.evaluation;
+
+import com.testgen.evaluation.TestCaseEvaluator.EvaluationResult;
+import com.testgen.model.testcase.TestCase;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 增量评估会话
+ * 保存每条用例的评估特征和全量统计量；新增、修改、删除单条用例时只从统计量中
+ * 减去旧特征、加上新特征，再由统计量直接计算得分，与用例总数无关。
+ * 统计量的得分之和为精确值，因此增量结果与对当前用例重新调用 {@link TestCaseEvaluator#evaluate} 完全一致。
+ *
+ * 用例以 caseId 标识；caseId 为空或重复时分配 "#序号" 形式的标识，这类用例只能随会话重建更新。
+ */
+public final class EvaluationSession {
+
+    public final String id = UUID.randomUUID().toString();
+    public final long createdAt = System.currentTimeMillis();
+    private volatile long lastAccess = createdAt;
+
+    private final TestCaseEvaluator evaluator = new TestCaseEvaluator();
+    // caseId → 特征（按加入顺序）
+    private final Map<String, CaseFeatures> features = new LinkedHashMap<>();
+    private final EvaluationAccumulator acc = new EvaluationAccumulator();
+    private long version;
+    private int generatedKeys;
+
+    public EvaluationSession(List<TestCase> testCases) {
+        if (testCases != null) {
+            for (TestCase tc : testCases) {
+                String key = tc.getCaseId();
+                if (key == null || key.isEmpty() || features.containsKey(key)) {
+                    key = "#" + (++generatedKeys);
+                }
+                CaseFeatures f = CaseFeatures.of(tc);
+                features.put(key, f);
+                acc.add(f);
+            }
+        }
+    }
+
+    /**
+     * 新增或替换一条用例
+     *
+     * @param caseId 用例标识；修改了caseId的用例应先删除旧标识
+     */
+    public synchronized void upsert(String caseId, TestCase tc) {
+        CaseFeatures f = CaseFeatures.of(tc);
+        CaseFeatures old = features.put(caseId, f);
+        if (old != null) {
+            acc.remove(old);
+        }
+        acc.add(f);
+        version++;
+    }
+
+    /**
+     * 删除一条用例
+     *
+     * @return 用例是否存在
+     */
+    public synchronized boolean remove(String caseId) {
+        CaseFeatures old = features.remove(caseId);
+        if (old == null) {
+            return false;
+        }
+        acc.remove(old);
+        version++;
+        return true;
+    }
+
+    /**
+     * 应用一批变更：先删除再新增/替换，用例的caseId不能为空
+     * 先校验全部变更再修改，校验失败时会话保持不变
+     *
+     * @return 实际删除的用例数
+     */
+    public synchronized int apply(Collection<String> deletes, Collection<TestCase> upserts) {
+        if (upserts != null) {
+            for (TestCase tc : upserts) {
+                if (tc == null || tc.getCaseId() == null || tc.getCaseId().isEmpty()) {
+                    throw new IllegalArgumentException("变更的用例缺少caseId: " + (tc != null ? tc.getTitle() : null));
+                }
+            }
+        }
+        int removed = 0;
+        if (deletes != null) {
+            for (String caseId : deletes) {
+                if (caseId != null && remove(caseId)) {
+                    removed++;
+                }
+            }
+        }
+        if (upserts != null) {
+            for (TestCase tc : upserts) {
+                upsert(tc.getCaseId(), tc);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前用例集的评估结果
+     */
+    public synchronized EvaluationResult result() {
+        EvaluationResult result = new EvaluationResult();
+        if (acc.cases > 0) {
+            evaluator.score(acc, result);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return features.size();
+    }
+
+    /**
+     * 变更次数，每次新增、替换、删除加1
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    public long lastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+}
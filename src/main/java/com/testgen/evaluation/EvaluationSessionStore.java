@@ -0,0 +1,94 @@
+package com.testgen.evaluation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 增量评估会话存储
+ * 前端展示用例时创建会话，之后编辑、删除单条用例只提交变更，无需回传整套用例重新评估。
+ *
+ * 按会话数做LRU淘汰，超过空闲时间（TTL，按最后一次访问计算）的会话失效，前端需重新创建。
+ */
+public final class EvaluationSessionStore {
+
+    private static final EvaluationSessionStore INSTANCE = new EvaluationSessionStore(
+            parseIntEnv("EVALUATION_SESSION_MAX", 100),
+            TimeUnit.MINUTES.toMillis(parseIntEnv("EVALUATION_SESSION_TTL_MINUTES", 60)));
+
+    private final int maxSessions;
+    private final long ttlMillis;
+    // LRU顺序（accessOrder=true），key为会话ID
+    private final LinkedHashMap<String, EvaluationSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder creates = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private EvaluationSessionStore(int maxSessions, long ttlMillis) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static EvaluationSessionStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return 会话；不存在或已过期时返回null
+     */
+    public synchronized EvaluationSession get(String sessionId) {
+        EvaluationSession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null && System.currentTimeMillis() - session.lastAccess() > ttlMillis) {
+            sessions.remove(sessionId);
+            expired.increment();
+            session = null;
+        }
+        if (session != null) {
+            session.touch();
+            updates.increment();
+        }
+        return session;
+    }
+
+    public synchronized void put(EvaluationSession session) {
+        sessions.put(session.id, session);
+        creates.increment();
+        Iterator<EvaluationSession> it = sessions.values().iterator();
+        while (sessions.size() > maxSessions && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sessions", sessions.size());
+        m.put("maxSessions", maxSessions);
+        m.put("ttlMinutes", TimeUnit.MILLISECONDS.toMinutes(ttlMillis));
+        m.put("creates", creates.sum());
+        m.put("updates", updates.sum());
+        m.put("expired", expired.sum());
+        m.put("evictions", evictions.sum());
+        return m;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.testgen.evaluation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多关键词集合匹配（Aho-Corasick自动机）
+ * 所有关键词集合编译进同一个自动机，对一段文本只扫描一次即可得到每个集合命中的关键词及次数，
+ * 代替逐个关键词调用 String.contains。
+ *
+ * 匹配不区分大小写：关键词和文本按字符转小写后比较；按UTF-16字符转移，中文关键词无需分词。
+ * 构建后只读，可在多线程间共享。
+ */
+public final class KeywordMatcher {
+
+    // 最多支持的关键词集合数（命中集合用int位掩码表示）
+    public static final int MAX_SETS = 32;
+
+    private final String[] keywords;     // 关键词ID → 关键词（小写）
+    private final int[] keywordSets;     // 关键词ID → 所属集合掩码
+    private final char[][] childChars;   // 状态 → 子节点字符（升序）
+    private final int[][] childStates;   // 状态 → 子节点状态
+    private final int[] fail;            // 状态 → 失配转移
+    private final int[] terminal;        // 状态 → 以该状态结尾的关键词ID，无则-1
+    private final int[] outputLink;      // 状态 → 沿失配链最近的终止状态，无则0
+
+    private KeywordMatcher(Builder builder) {
+        int stateCount = builder.children.size();
+        this.keywords = builder.keywords.toArray(new String[0]);
+        this.keywordSets = new int[keywords.length];
+        for (int i = 0; i < keywordSets.length; i++) {
+            keywordSets[i] = builder.keywordSets.get(i);
+        }
+        this.childChars = new char[stateCount][];
+        this.childStates = new int[stateCount][];
+        this.terminal = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            Map<Character, Integer> children = builder.children.get(s);
+            char[] chars = new char[children.size()];
+            int i = 0;
+            for (Character c : children.keySet()) {
+                chars[i++] = c;
+            }
+            Arrays.sort(chars);
+            int[] states = new int[chars.length];
+            for (i = 0; i < chars.length; i++) {
+                states[i] = children.get(chars[i]);
+            }
+            childChars[s] = chars;
+            childStates[s] = states;
+            terminal[s] = builder.terminal.get(s);
+        }
+
+        // 按层（BFS）计算失配转移和输出链
+        this.fail = new int[stateCount];
+        this.outputLink = new int[stateCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : childStates[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < childChars[s].length; i++) {
+                char c = childChars[s][i];
+                int child = childStates[s][i];
+                int f = fail[s];
+                int next = child(f, c);
+                while (f != 0 && next < 0) {
+                    f = fail[f];
+                    next = child(f, c);
+                }
+                fail[child] = next >= 0 ? next : 0;
+                outputLink[child] = terminal[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 扫描文本一次，返回各集合的命中情况
+     *
+     * @param text 文本，可为null
+     */
+    public Hits match(CharSequence text) {
+        Hits hits = new Hits();
+        if (text == null) {
+            return hits;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = child(state, c);
+            while (state != 0 && next < 0) {
+                state = fail[state];
+                next = child(state, c);
+            }
+            state = next >= 0 ? next : 0;
+            for (int o = terminal[state] >= 0 ? state : outputLink[state]; o != 0; o = outputLink[o]) {
+                hits.add(terminal[o]);
+            }
+        }
+        return hits;
+    }
+
+    private int child(int state, char c) {
+        int i = Arrays.binarySearch(childChars[state], c);
+        return i >= 0 ? childStates[state][i] : -1;
+    }
+
+    /**
+     * 关键词数
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * 一次扫描的命中结果
+     */
+    public final class Hits {
+        private int mask;
+        private int[] counts;   // 集合 → 命中次数（同一关键词多次出现计多次）
+        private int[] distinct; // 命中的关键词ID（去重，按首次出现顺序）
+        private int distinctCount;
+
+        private void add(int keywordId) {
+            int sets = keywordSets[keywordId];
+            if (counts == null) {
+                counts = new int[MAX_SETS];
+                distinct = new int[4];
+            }
+            mask |= sets;
+            for (int s = sets; s != 0; s &= s - 1) {
+                counts[Integer.numberOfTrailingZeros(s)]++;
+            }
+            for (int i = 0; i < distinctCount; i++) {
+                if (distinct[i] == keywordId) {
+                    return;
+                }
+            }
+            if (distinctCount == distinct.length) {
+                distinct = Arrays.copyOf(distinct, distinctCount * 2);
+            }
+            distinct[distinctCount++] = keywordId;
+        }
+
+        /**
+         * 是否命中集合中的任一关键词
+         */
+        public boolean matched(int set) {
+            return (mask & (1 << set)) != 0;
+        }
+
+        /**
+         * 命中集合的位掩码
+         */
+        public int mask() {
+            return mask;
+        }
+
+        /**
+         * 集合中关键词的命中次数
+         */
+        public int count(int set) {
+            return counts != null ? counts[set] : 0;
+        }
+
+        /**
+         * 命中的集合中的关键词（去重）
+         */
+        public List<String> keywords(int set) {
+            if (distinctCount == 0) {
+                return Collections.emptyList();
+            }
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < distinctCount; i++) {
+                if ((keywordSets[distinct[i]] & (1 << set)) != 0) {
+                    result.add(keywords[distinct[i]]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 构建器：按集合编号添加关键词，同一关键词可属于多个集合
+     */
+    public static final class Builder {
+        private final List<Map<Character, Integer>> children = new ArrayList<>();
+        private final List<Integer> terminal = new ArrayList<>();
+        private final List<String> keywords = new ArrayList<>();
+        private final List<Integer> keywordSets = new ArrayList<>();
+
+        private Builder() {
+            newState();
+        }
+
+        /**
+         * @param set      集合编号（0 ~ MAX_SETS-1）
+         * @param keywords 关键词，空串忽略
+         */
+        public Builder add(int set, Collection<String> keywords) {
+            if (set < 0 || set >= MAX_SETS) {
+                throw new IllegalArgumentException("集合编号超出范围: " + set);
+            }
+            for (String keyword : keywords) {
+                add(set, keyword);
+            }
+            return this;
+        }
+
+        private void add(int set, String keyword) {
+            if (keyword == null || keyword.isEmpty()) {
+                return;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = newState();
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            int id = terminal.get(state);
+            if (id < 0) {
+                id = keywords.size();
+                keywords.add(keyword.toLowerCase());
+                keywordSets.add(0);
+                terminal.set(state, id);
+            }
+            keywordSets.set(id, keywordSets.get(id) | (1 << set));
+        }
+
+        private int newState() {
+            children.add(new HashMap<>());
+            terminal.add(-1);
+            return children.size() - 1;
+        }
+
+        public KeywordMatcher build() {
+            return new KeywordMatcher(this);
+        }
+    }
+}
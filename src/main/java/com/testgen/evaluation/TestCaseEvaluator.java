@@ -1,11 +1,12 @@
 package com.testgen.evaluation;
 
+import com.testgen.concurrent.SharedExecutors;
 import com.testgen.model.testcase.TestCase;
 import com.testgen.model.testcase.SceneType;
-import com.testgen.model.testcase.FrontEndStep;
-import com.testgen.model.testcase.BackEndStep;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 测试用例质量评估器 (高级测试工程师维度)
@@ -178,8 +179,29 @@ public class TestCaseEvaluator {
     private static final Set<String> ACTION_KEYWORDS = new HashSet<>(Arrays.asList(
             "点击", "输入", "选择", "提交", "上传", "下载", "查看", "校验", "验证", "检查"));
 
+    // 达到该用例数时分段并行累加（EVALUATION_PARALLEL_THRESHOLD，默认2000）
+    private static final int PARALLEL_THRESHOLD = parseIntEnv("EVALUATION_PARALLEL_THRESHOLD", 2000);
+    private static final int PARALLEL_MIN_CHUNK_SIZE = 500;
+    private static final int PARALLEL_MAX_CHUNKS = Runtime.getRuntime().availableProcessors() * 4;
+
+    // 关键词集合编号（KEYWORDS 中的集合）
+    static final int BOUNDARY = 0;
+    static final int EXCEPTION = 1;
+    static final int VAGUE_STEP = 2;
+    static final int ACTION = 3;
+
+    // 全部关键词集合编译成一个自动机，每个字段只扫描一次
+    static final KeywordMatcher KEYWORDS = KeywordMatcher.builder()
+            .add(BOUNDARY, BOUNDARY_KEYWORDS)
+            .add(EXCEPTION, EXCEPTION_KEYWORDS)
+            .add(VAGUE_STEP, VAGUE_STEP_KEYWORDS)
+            .add(ACTION, ACTION_KEYWORDS)
+            .build();
+
     /**
      * 评估生成的测试用例质量
+     * 先逐条提取用例特征（只遍历一次文本）并累加为各维度统计量，再由统计量计算得分。
+     * 用例数达到 EVALUATION_PARALLEL_THRESHOLD 时分段并行累加，结果与顺序累加完全一致。
      * 
      * @param generatedCases LLM生成的测试用例
      * @return 评估结果
@@ -191,20 +213,31 @@ public class TestCaseEvaluator {
             return result;
         }
 
+        EvaluationAccumulator acc = generatedCases.size() >= PARALLEL_THRESHOLD
+                ? accumulateParallel(generatedCases)
+                : accumulate(generatedCases, 0, generatedCases.size());
+        score(acc, result);
+        return result;
+    }
+
+    /**
+     * 由统计量计算各维度得分、总分和总结
+     */
+    void score(EvaluationAccumulator acc, EvaluationResult result) {
         // 1. 缺陷发现能力评估 (25%) - 边界值/异常场景
-        evaluateDefectDetection(generatedCases, result);
+        evaluateDefectDetection(acc, result);
 
         // 2. 业务覆盖度评估 (25%) - 场景/模块/流程
-        evaluateBusinessCoverage(generatedCases, result);
+        evaluateBusinessCoverage(acc, result);
 
         // 3. 可执行性评估 (20%) - 步骤清晰度/预期明确
-        evaluateExecutability(generatedCases, result);
+        evaluateExecutability(acc, result);
 
         // 4. 断言完整性评估 (15%)
-        evaluateAssertion(generatedCases, result);
+        evaluateAssertion(acc, result);
 
         // 5. 规范性评估 (15%)
-        evaluateStandard(generatedCases, result);
+        evaluateStandard(acc, result);
 
         // 计算总分 (高级测试工程师维度权重)
         double totalScore = result.getRobustnessScore() * 0.25 +  // 缺陷发现 25%
@@ -217,8 +250,69 @@ public class TestCaseEvaluator {
 
         // 生成总体评价
         generateSummary(result);
+    }
 
-        return result;
+    private static EvaluationAccumulator accumulate(List<TestCase> cases, int from, int to) {
+        EvaluationAccumulator acc = new EvaluationAccumulator();
+        for (int i = from; i < to; i++) {
+            acc.add(CaseFeatures.of(cases.get(i)));
+        }
+        return acc;
+    }
+
+    /**
+     * 分段并行累加
+     * 各段提交到CPU线程池，调用线程按顺序合并：尚未被线程池取走的段由调用线程直接执行，
+     * 因此即使在CPU线程池内调用、或线程池繁忙，也不会等待排队中的任务。
+     */
+    private static EvaluationAccumulator accumulateParallel(List<TestCase> cases) {
+        int size = cases.size();
+        int chunks = Math.max(2, Math.min(PARALLEL_MAX_CHUNKS, size / PARALLEL_MIN_CHUNK_SIZE));
+        int chunkSize = (size + chunks - 1) / chunks;
+        List<Chunk> tasks = new ArrayList<>(chunks);
+        for (int from = 0; from < size; from += chunkSize) {
+            Chunk chunk = new Chunk(cases, from, Math.min(size, from + chunkSize));
+            tasks.add(chunk);
+            try {
+                SharedExecutors.cpu().execute(chunk::runIfUnclaimed);
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭，由调用线程执行
+            }
+        }
+        EvaluationAccumulator acc = new EvaluationAccumulator();
+        for (Chunk chunk : tasks) {
+            chunk.runIfUnclaimed();
+            acc.merge(chunk.result.join());
+        }
+        return acc;
+    }
+
+    /**
+     * 一段用例的累加任务，只执行一次（线程池或调用线程先认领者执行）
+     */
+    private static final class Chunk {
+        final CompletableFuture<EvaluationAccumulator> result = new CompletableFuture<>();
+        private final List<TestCase> cases;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Chunk(List<TestCase> cases, int from, int to) {
+            this.cases = cases;
+            this.from = from;
+            this.to = to;
+        }
+
+        void runIfUnclaimed() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(accumulate(cases, from, to));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
     }
 
     /**
@@ -226,32 +320,25 @@ public class TestCaseEvaluator {
      * - 边界值覆盖
      * - 异常场景覆盖
      */
-    private void evaluateDefectDetection(List<TestCase> generated, EvaluationResult result) {
+    private void evaluateDefectDetection(EvaluationAccumulator acc, EvaluationResult result) {
         Map<String, Object> details = result.getDetails();
-        int totalCases = generated.size();
+        long totalCases = acc.cases;
 
-        // 1.1 边界值分析
-        long boundaryCount = generated.stream()
-                .filter(this::isBoundaryCase)
-                .count();
+        details.put("boundaryKeywordHits", acc.boundaryKeywords);
+        details.put("exceptionKeywordHits", acc.exceptionKeywords);
 
-        // 期望边界用例占比至少 15%
-        double boundaryRatio = (double) boundaryCount / totalCases;
+        // 1.1 边界值分析：期望边界用例占比至少 15%
+        double boundaryRatio = (double) acc.boundaryCount / totalCases;
         double boundaryScore = Math.min(100.0, (boundaryRatio / 0.15) * 100.0);
         result.setBoundaryScore(boundaryScore);
-        details.put("boundaryCount", boundaryCount);
+        details.put("boundaryCount", acc.boundaryCount);
         details.put("boundaryRatio", String.format("%.1f%%", boundaryRatio * 100));
 
-        // 1.2 异常场景分析
-        long exceptionCount = generated.stream()
-                .filter(this::isExceptionCase)
-                .count();
-
-        // 期望异常用例占比至少 20%
-        double exceptionRatio = (double) exceptionCount / totalCases;
+        // 1.2 异常场景分析：期望异常用例占比至少 20%
+        double exceptionRatio = (double) acc.exceptionCount / totalCases;
         double exceptionScore = Math.min(100.0, (exceptionRatio / 0.20) * 100.0);
         result.setExceptionScore(exceptionScore);
-        details.put("exceptionCount", exceptionCount);
+        details.put("exceptionCount", acc.exceptionCount);
         details.put("exceptionRatio", String.format("%.1f%%", exceptionRatio * 100));
 
         // 综合缺陷发现分
@@ -269,49 +356,26 @@ public class TestCaseEvaluator {
      * - 模块覆盖
      * - 业务动作覆盖
      */
-    private void evaluateBusinessCoverage(List<TestCase> generated, EvaluationResult result) {
+    private void evaluateBusinessCoverage(EvaluationAccumulator acc, EvaluationResult result) {
         Map<String, Object> details = result.getDetails();
 
-        // 1.1 场景类型覆盖
-        Set<SceneType> coveredTypes = generated.stream()
-                .map(TestCase::getSceneType)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        // 期望至少覆盖: FRONTEND, BACKEND, EXCEPTION (如果有)
+        // 2.1 场景类型覆盖，期望至少覆盖: FRONTEND, BACKEND, EXCEPTION (如果有)
         double typeScore = 0.0;
-        if (coveredTypes.contains(SceneType.FRONTEND))
+        if (acc.covers(SceneType.FRONTEND))
             typeScore += 40;
-        if (coveredTypes.contains(SceneType.BACKEND))
+        if (acc.covers(SceneType.BACKEND))
             typeScore += 40;
-        if (coveredTypes.contains(SceneType.INTEGRATION))
+        if (acc.covers(SceneType.INTEGRATION))
             typeScore += 20;
 
         details.put("sceneTypeCoverage", typeScore);
 
-        // 1.2 模块覆盖
-        Set<String> modules = generated.stream()
-                .map(TestCase::getModule)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-        double moduleScore = Math.min(100.0, modules.size() * 20.0); // 假设至少5个模块/功能点算满分
+        // 2.2 模块覆盖
+        double moduleScore = Math.min(100.0, acc.moduleCount() * 20.0); // 假设至少5个模块/功能点算满分
         details.put("moduleCoverage", moduleScore);
 
-        // 1.3 业务动作覆盖
-        long actionCount = generated.stream()
-                .flatMap(tc -> {
-                    List<String> steps = new ArrayList<>();
-                    if (tc.getFrontEndSteps() != null)
-                        tc.getFrontEndSteps().forEach(s -> steps.add(s.getAction()));
-                    if (tc.getBackEndSteps() != null)
-                        tc.getBackEndSteps().forEach(s -> steps.add(s.getAction()));
-                    return steps.stream();
-                })
-                .filter(Objects::nonNull)
-                .distinct()
-                .count();
-
-        double actionScore = Math.min(100.0, actionCount * 10.0); // 10个不同动作算满分
+        // 2.3 业务动作覆盖
+        double actionScore = Math.min(100.0, acc.actionCount() * 10.0); // 10个不同动作算满分
         details.put("actionCoverage", actionScore);
 
         // 综合覆盖分
@@ -329,149 +393,17 @@ public class TestCaseEvaluator {
      * - 步骤内容完整性
      * - 步骤具体性（笼统步骤扣分）
      */
-    private void evaluateExecutability(List<TestCase> generated, EvaluationResult result) {
-        double totalQuality = 0.0;
-        int vagueStepCaseCount = 0;
-
-        for (TestCase tc : generated) {
-            double caseScore = 0.0;
-            boolean hasVagueStep = false;
-
-            // 3.1 步骤数量评估 (25%)
-            int frontSteps = tc.getFrontEndSteps() != null ? tc.getFrontEndSteps().size() : 0;
-            int backSteps = tc.getBackEndSteps() != null ? tc.getBackEndSteps().size() : 0;
-            int totalSteps = frontSteps + backSteps;
-
-            // 3-8步为最佳区间
-            if (totalSteps >= 3 && totalSteps <= 8) {
-                caseScore += 25;
-            } else if (totalSteps >= 2 && totalSteps <= 10) {
-                caseScore += 20;
-            } else if (totalSteps >= 1) {
-                caseScore += 10;
-            }
+    private void evaluateExecutability(EvaluationAccumulator acc, EvaluationResult result) {
+        result.getDetails().put("vagueKeywordHits", acc.vagueKeywords);
+        result.getDetails().put("actionKeywordHits", acc.actionKeywords);
 
-            // 3.2 步骤具体性评估 (30%) - 检查是否有笼统/模糊步骤
-            double stepSpecificityScore = 30.0;
-            int specificStepCount = 0;
-            
-            // 检查前端步骤具体性
-            if (tc.getFrontEndSteps() != null) {
-                for (FrontEndStep step : tc.getFrontEndSteps()) {
-                    String action = step.getAction();
-                    String element = step.getElement();
-                    String value = step.getValue();
-                    
-                    // 检查是否包含笼统关键词
-                    if (containsKeyword(action, VAGUE_STEP_KEYWORDS) || 
-                        containsKeyword(element, VAGUE_STEP_KEYWORDS) ||
-                        containsKeyword(value, VAGUE_STEP_KEYWORDS)) {
-                        hasVagueStep = true;
-                        stepSpecificityScore -= 5;
-                    }
-                    
-                    // 有具体元素定位符加分
-                    if (step.getLocator() != null && !step.getLocator().isEmpty()) {
-                        specificStepCount++;
-                    }
-                    // 有具体输入值加分
-                    if (value != null && !value.isEmpty() && !containsKeyword(value, VAGUE_STEP_KEYWORDS)) {
-                        specificStepCount++;
-                    }
-                }
-            }
-            
-            // 检查后端步骤具体性
-            if (tc.getBackEndSteps() != null) {
-                for (BackEndStep step : tc.getBackEndSteps()) {
-                    String action = step.getAction();
-                    
-                    // 检查是否包含笼统关键词
-                    if (containsKeyword(action, VAGUE_STEP_KEYWORDS)) {
-                        hasVagueStep = true;
-                        stepSpecificityScore -= 5;
-                    }
-                    
-                    // 有完整的API信息加分
-                    if (step.getApiPath() != null && !step.getApiPath().isEmpty()) {
-                        specificStepCount++;
-                    }
-                    if (step.getMethod() != null && !step.getMethod().isEmpty()) {
-                        specificStepCount++;
-                    }
-                }
-            }
-            
-            // 具体步骤占比加分
-            if (totalSteps > 0) {
-                double specificRatio = (double) specificStepCount / (totalSteps * 2); // 每步最多2个具体项
-                stepSpecificityScore = Math.max(0, stepSpecificityScore) + (specificRatio * 10);
-            }
-            caseScore += Math.min(30, Math.max(0, stepSpecificityScore));
-
-            // 3.3 步骤内容完整性 (20%)
-            double stepContentScore = 0.0;
-            int validStepCount = 0;
-            
-            if (tc.getFrontEndSteps() != null) {
-                for (FrontEndStep step : tc.getFrontEndSteps()) {
-                    if (step.getAction() != null && !step.getAction().isEmpty()) {
-                        validStepCount++;
-                        if (step.getValue() != null && !step.getValue().isEmpty()) {
-                            stepContentScore += 1.5;
-                        } else {
-                            stepContentScore += 1.0;
-                        }
-                    }
-                }
-            }
-            
-            if (tc.getBackEndSteps() != null) {
-                for (BackEndStep step : tc.getBackEndSteps()) {
-                    if (step.getAction() != null && !step.getAction().isEmpty()) {
-                        validStepCount++;
-                        stepContentScore += 1.0;
-                    }
-                }
-            }
-            
-            if (validStepCount > 0) {
-                caseScore += Math.min(20.0, (stepContentScore / validStepCount) * 20.0);
-            }
-
-            // 3.4 预期结果明确性 (25%)
-            int expectedCount = 0;
-            if (tc.getFrontEndExpected() != null) {
-                expectedCount += tc.getFrontEndExpected().size();
-            }
-            if (tc.getBackEndExpected() != null) {
-                expectedCount += tc.getBackEndExpected().size();
-            }
-            
-            if (expectedCount >= 3) {
-                caseScore += 25;
-            } else if (expectedCount >= 2) {
-                caseScore += 22;
-            } else if (expectedCount == 1) {
-                caseScore += 18;
-            } else if (tc.getAssertRules() != null && !tc.getAssertRules().isEmpty()) {
-                caseScore += 20;
-            }
-
-            if (hasVagueStep) {
-                vagueStepCaseCount++;
-            }
-            
-            totalQuality += Math.min(100.0, caseScore);
-        }
-
-        result.setQualityScore(totalQuality / generated.size());
+        result.setQualityScore(acc.average(acc.executabilitySum));
 
         // 根据具体问题给出建议
         if (result.getQualityScore() < 60) {
             result.addSuggestion("测试步骤过于简单或缺乏明确的预期结果");
         }
-        if (vagueStepCaseCount > generated.size() * 0.3) {
+        if (acc.vagueStepCases > acc.cases * 0.3) {
             result.addSuggestion("部分用例步骤过于笼统，建议拆分为具体的原子操作，并提供实际测试数据");
         }
     }
@@ -480,73 +412,8 @@ public class TestCaseEvaluator {
      * 4. 评估断言完整性 (15%)
      * 综合考虑断言规则数量、质量和预期结果
      */
-    private void evaluateAssertion(List<TestCase> generated, EvaluationResult result) {
-        double totalAssertion = 0.0;
-
-        // 高质量断言类型（可自动化执行）
-        Set<String> highQualityAssertTypes = new HashSet<>(Arrays.asList(
-            "statusEquals", "status_code", "fieldEquals", "fieldContains",
-            "textEquals", "textContains", "elementVisible", "elementEnabled",
-            "schemaValidate", "schema", "urlEquals", "urlContains",
-            "contains", "equals", "exists", "responseTime", "dbRecordExists"
-        ));
-
-        for (TestCase tc : generated) {
-            double caseScore = 0.0;
-            int assertRuleCount = tc.getAssertRules() != null ? tc.getAssertRules().size() : 0;
-            int frontExpectedCount = tc.getFrontEndExpected() != null ? tc.getFrontEndExpected().size() : 0;
-            int backExpectedCount = tc.getBackEndExpected() != null ? tc.getBackEndExpected().size() : 0;
-            int totalExpectedCount = frontExpectedCount + backExpectedCount;
-
-            // 4.1 断言规则数量评估 (40%)
-            if (assertRuleCount >= 3) {
-                caseScore += 40;
-            } else if (assertRuleCount == 2) {
-                caseScore += 32;  // 2条断言也算较好
-            } else if (assertRuleCount == 1) {
-                caseScore += 20;
-            }
-            
-            // 4.2 断言质量评估 (30%) - 检查断言类型是否为高质量类型
-            if (tc.getAssertRules() != null && !tc.getAssertRules().isEmpty()) {
-                int highQualityCount = 0;
-                int completeCount = 0;
-                for (var assertRule : tc.getAssertRules()) {
-                    String assertType = assertRule.getAssertType();
-                    // 检查是否为高质量断言类型
-                    if (assertType != null && highQualityAssertTypes.contains(assertType.toLowerCase())) {
-                        highQualityCount++;
-                    }
-                    // 检查断言是否完整（有target和expectedValue）
-                    if (assertRule.getTarget() != null && !assertRule.getTarget().isEmpty()
-                            && assertRule.getExpectedValue() != null) {
-                        completeCount++;
-                    }
-                }
-                // 高质量断言占比
-                double qualityRatio = (double) highQualityCount / assertRuleCount;
-                double completenessRatio = (double) completeCount / assertRuleCount;
-                caseScore += (qualityRatio * 15 + completenessRatio * 15);
-            }
-            
-            // 4.3 预期结果评估 (30%) - 预期结果是断言的重要补充
-            if (totalExpectedCount >= 3) {
-                caseScore += 30;
-            } else if (totalExpectedCount == 2) {
-                caseScore += 24;
-            } else if (totalExpectedCount == 1) {
-                caseScore += 15;
-            }
-            
-            // 补偿机制：如果断言规则较少但预期结果丰富，给予额外分数
-            if (assertRuleCount < 2 && totalExpectedCount >= 3) {
-                caseScore = Math.min(100.0, caseScore + 15);
-            }
-
-            totalAssertion += Math.min(100.0, caseScore);
-        }
-
-        result.setAssertionScore(totalAssertion / generated.size());
+    private void evaluateAssertion(EvaluationAccumulator acc, EvaluationResult result) {
+        result.setAssertionScore(acc.average(acc.assertionSum));
 
         if (result.getAssertionScore() < 60)
             result.addSuggestion("断言规则不完整，建议为每个用例添加至少3条明确的验证点");
@@ -555,106 +422,20 @@ public class TestCaseEvaluator {
     /**
      * 5. 评估规范性 (15%)
      */
-    private void evaluateStandard(List<TestCase> generated, EvaluationResult result) {
-        double totalStandard = 0.0;
-
-        for (TestCase tc : generated) {
-            double caseScore = 0.0;
-
-            // ID格式 (TC_XXXX)
-            if (tc.getCaseId() != null && tc.getCaseId().matches("TC_\\d{4}")) {
-                caseScore += 50;
-            }
-
-            // 必填项完整
-            if (tc.getTitle() != null && tc.getPriority() != null && tc.getModule() != null) {
-                caseScore += 50;
-            }
-
-            totalStandard += caseScore;
-        }
-
-        result.setStandardScore(totalStandard / generated.size());
-    }
-
-    // 辅助方法：判断是否为边界测试用例
-    private boolean isBoundaryCase(TestCase tc) {
-        // 1. 检查标题
-        if (containsKeyword(tc.getTitle(), BOUNDARY_KEYWORDS))
-            return true;
-
-        // 2. 检查前端步骤参数
-        if (tc.getFrontEndSteps() != null && tc.getFrontEndSteps().stream()
-                .anyMatch(s -> containsKeyword(s.getValue(), BOUNDARY_KEYWORDS) ||
-                              containsKeyword(s.getAction(), BOUNDARY_KEYWORDS)))
-            return true;
-
-        // 3. 检查后端步骤参数
-        if (tc.getBackEndSteps() != null && tc.getBackEndSteps().stream()
-                .anyMatch(s -> containsKeyword(s.getAction(), BOUNDARY_KEYWORDS)))
-            return true;
-
-        // 4. 检查预期结果中的边界描述
-        if (tc.getFrontEndExpected() != null && tc.getFrontEndExpected().stream()
-                .anyMatch(s -> containsKeyword(s, BOUNDARY_KEYWORDS)))
-            return true;
-
-        if (tc.getBackEndExpected() != null && tc.getBackEndExpected().stream()
-                .anyMatch(s -> containsKeyword(s, BOUNDARY_KEYWORDS)))
-            return true;
-
-        // 5. 检查标签
-        if (tc.getTags() != null && tc.getTags().stream()
-                .anyMatch(tag -> containsKeyword(tag, BOUNDARY_KEYWORDS)))
-            return true;
-
-        return false;
+    private void evaluateStandard(EvaluationAccumulator acc, EvaluationResult result) {
+        result.setStandardScore(acc.average(acc.standardSum));
     }
 
-    // 辅助方法：判断是否为异常测试用例
-    private boolean isExceptionCase(TestCase tc) {
-        // 1. 检查场景类型
-        if (tc.getSceneType() == SceneType.EXCEPTION)
-            return true;
-
-        // 2. 检查标题
-        if (containsKeyword(tc.getTitle(), EXCEPTION_KEYWORDS))
-            return true;
-
-        // 3. 检查前端预期结果
-        if (tc.getFrontEndExpected() != null && tc.getFrontEndExpected().stream()
-                .anyMatch(s -> containsKeyword(s, EXCEPTION_KEYWORDS)))
-            return true;
-
-        // 4. 检查后端预期结果
-        if (tc.getBackEndExpected() != null && tc.getBackEndExpected().stream()
-                .anyMatch(s -> containsKeyword(s, EXCEPTION_KEYWORDS)))
-            return true;
-
-        // 5. 检查前端步骤
-        if (tc.getFrontEndSteps() != null && tc.getFrontEndSteps().stream()
-                .anyMatch(s -> containsKeyword(s.getAction(), EXCEPTION_KEYWORDS) ||
-                              containsKeyword(s.getValue(), EXCEPTION_KEYWORDS)))
-            return true;
-
-        // 6. 检查后端步骤
-        if (tc.getBackEndSteps() != null && tc.getBackEndSteps().stream()
-                .anyMatch(s -> containsKeyword(s.getAction(), EXCEPTION_KEYWORDS)))
-            return true;
-
-        // 7. 检查标签
-        if (tc.getTags() != null && tc.getTags().stream()
-                .anyMatch(tag -> containsKeyword(tag, EXCEPTION_KEYWORDS)))
-            return true;
-
-        return false;
-    }
-
-    private boolean containsKeyword(String text, Set<String> keywords) {
-        if (text == null)
-            return false;
-        String lowerText = text.toLowerCase();
-        return keywords.stream().anyMatch(lowerText::contains);
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     private void generateSummary(EvaluationResult result) {
@@ -0,0 +1,171 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.testgen.parser.StructuredPRD;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 飞书docx文档块 -> 文本内容转换器
+ * 按块顺序逐个接收（可来自多页），追加到内容中；图片块记录为ImageInfo并插入占位符。
+ * 同时把块交给 {@link DocxPRDExtractor} 按块类型提取PRD结构。
+ */
+final class DocxBlockConverter {
+
+    private final StringBuilder contentBuilder = new StringBuilder();
+    private final List<FeishuService.ImageInfo> images = new ArrayList<>();
+    private int imageIndex = 0;
+    private int blockCount = 0;
+    private final DocxPRDExtractor extractor = new DocxPRDExtractor();
+
+    /**
+     * 转换一个文档块
+     */
+    void accept(JsonNode item) {
+        blockCount++;
+        int blockType = item.has("block_type") ? item.get("block_type").asInt() : 0;
+        String text;
+        String line;
+
+        switch (blockType) {
+            case 2: // text 文本块
+                text = extractTextFromBlock(item, "text");
+                line = appendLine("", text);
+                break;
+            case 3: // heading1
+            case 4: // heading2
+            case 5: // heading3
+            case 6: // heading4
+            case 7: // heading5
+            case 8: // heading6
+            case 9: // heading7
+            case 10: // heading8
+            case 11: // heading9
+                int level = blockType - 2;
+                text = extractTextFromBlock(item, "heading" + level);
+                line = appendLine(headingPrefix(level), text);
+                break;
+            case 12: // bullet 无序列表
+                text = extractTextFromBlock(item, "bullet");
+                line = appendLine("• ", text);
+                break;
+            case 13: // ordered 有序列表
+                text = extractTextFromBlock(item, "ordered");
+                line = appendLine("• ", text);
+                break;
+            case 14: // code 代码块
+                text = extractTextFromBlock(item, "code");
+                line = appendLine("", text);
+                break;
+            case 15: // quote 引用
+                text = extractTextFromBlock(item, "quote");
+                line = appendLine("> ", text);
+                break;
+            case 27: // image 图片块
+                text = null;
+                line = null;
+                JsonNode imageBlock = item.get("image");
+                if (imageBlock != null && imageBlock.has("token")) {
+                    String token = imageBlock.get("token").asText();
+                    String blockId = item.has("block_id") ? item.get("block_id").asText() : "";
+                    images.add(new FeishuService.ImageInfo(token, blockId, imageIndex));
+                    // 在内容中插入图片占位符
+                    line = "{{IMAGE_PLACEHOLDER_" + imageIndex + "}}\n";
+                    contentBuilder.append(line);
+                    imageIndex++;
+                }
+                break;
+            default:
+                // 其他类型块尝试提取文本（尝试多个字段）
+                text = extractTextFromBlock(item, "text");
+                if (text == null || text.isEmpty()) {
+                    text = extractTextFromBlock(item, "paragraph");
+                }
+                line = appendLine("", text);
+                break;
+        }
+        extractor.accept(item, blockType, text, line);
+    }
+
+    String content() {
+        return contentBuilder.toString();
+    }
+
+    List<FeishuService.ImageInfo> images() {
+        return images;
+    }
+
+    /**
+     * 按块类型直接提取的PRD骨架，以及需要LLM补充解析的剩余文本
+     */
+    StructuredPRD structure() {
+        return extractor.finish();
+    }
+
+    int blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return 追加的文本行；text为空时不追加，返回null
+     */
+    private String appendLine(String prefix, String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        String line = prefix + text + "\n";
+        contentBuilder.append(line);
+        return line;
+    }
+
+    private static String headingPrefix(int level) {
+        StringBuilder sb = new StringBuilder(level + 1);
+        for (int i = 0; i < level; i++) {
+            sb.append('#');
+        }
+        return sb.append(' ').toString();
+    }
+
+    /**
+     * 从文档块中提取文本内容
+     * @param block 文档块节点
+     * @param fieldName 要提取文本的字段名（如 text, heading1, bullet 等）
+     */
+    static String extractTextFromBlock(JsonNode block, String fieldName) {
+        // 尝试从指定字段提取
+        JsonNode fieldNode = block.get(fieldName);
+        if (fieldNode != null && fieldNode.has("elements")) {
+            StringBuilder sb = new StringBuilder();
+            JsonNode elements = fieldNode.get("elements");
+            for (JsonNode element : elements) {
+                if (element.has("text_run")) {
+                    JsonNode textRun = element.get("text_run");
+                    if (textRun.has("content")) {
+                        sb.append(textRun.get("content").asText());
+                    }
+                } else if (element.has("mention_user")) {
+                    // 处理@用户
+                    JsonNode mentionUser = element.get("mention_user");
+                    if (mentionUser.has("user_id")) {
+                        sb.append("@用户");
+                    }
+                } else if (element.has("mention_doc")) {
+                    // 处理文档引用
+                    JsonNode mentionDoc = element.get("mention_doc");
+                    if (mentionDoc.has("title")) {
+                        sb.append("[").append(mentionDoc.get("title").asText()).append("]");
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        // 如果指定字段不存在，尝试直接从elements提取（某些块类型）
+        if (fieldNode != null && fieldNode.has("content")) {
+            return fieldNode.get("content").asText();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,373 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.testgen.parser.StructuredPRD;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 飞书docx文档块 -> PRD结构骨架
+ * 文档块本身带有类型信息，无需让LLM从拍平的文本中重新识别结构：
+ * <ul>
+ *   <li>标题：划分章节，章节标题即模块名</li>
+ *   <li>表格：表头含字段/参数列的表格，每行一个字段（类型、必填、约束列合并为约束）；
+ *       章节内有接口时作为接口参数，否则作为页面元素。表头含错误码列的表格作为异常场景</li>
+ *   <li>代码块：以 "GET|POST|PUT|DELETE|PATCH /path" 开头的行作为接口定义</li>
+ * </ul>
+ * 已提取的表格和纯接口代码块不再出现在剩余文本中；无法识别的表格按行输出为 "a | b | c" 供LLM阅读。
+ * 由 {@link DocxBlockConverter} 在转换文本的同时逐块调用。
+ */
+final class DocxPRDExtractor {
+
+    private static final Pattern INTERFACE_LINE = Pattern.compile(
+            "^\\s*(GET|POST|PUT|DELETE|PATCH)\\s+(/\\S*)\\s*$", Pattern.MULTILINE);
+    private static final Pattern NAME_HEADER = Pattern.compile("字段|参数|名称|属性|(?i:name|field|param)");
+    private static final Pattern TYPE_HEADER = Pattern.compile("类型|(?i:type)");
+    private static final Pattern REQUIRED_HEADER = Pattern.compile("必填|必须|必选|(?i:required)");
+    private static final Pattern CONSTRAINT_HEADER = Pattern.compile(
+            "约束|限制|长度|范围|格式|校验|规则|默认|说明|描述|备注|(?i:constraint|rule|desc)");
+    // 字段规格列：说明/描述/备注之外的约束列，用于区分字段表和功能列表、角色表等普通表格
+    private static final Pattern SPEC_CONSTRAINT_HEADER = Pattern.compile(
+            "约束|限制|长度|范围|格式|校验|规则|默认|(?i:constraint|rule)");
+    private static final Pattern ERROR_CODE_HEADER = Pattern.compile("错误码|状态码|返回码|(?i:error.?code)");
+    private static final Pattern REQUIRED_VALUE = Pattern.compile("\\s*(是|必填|必须|必选|[√✓✔]|(?i:y|yes|true))\\s*");
+    private static final Pattern PARAM_TABLE_HEADER = Pattern.compile("参数|(?i:param)");
+    private static final String TABLE_MARKER_PREFIX = "\u0000TABLE_";
+
+    private final StringBuilder residual = new StringBuilder();
+    private final List<Section> sections = new ArrayList<>();
+    private final List<Table> tables = new ArrayList<>();
+    // 单元格块ID -> 所属表格
+    private final Map<String, Table> tableByCell = new HashMap<>();
+    // 单元格内的块ID -> 单元格块ID（单元格内容可以嵌套多层块）
+    private final Map<String, String> cellByBlock = new HashMap<>();
+    private Section current = new Section(null);
+    private String title;
+
+    DocxPRDExtractor() {
+        sections.add(current);
+    }
+
+    /**
+     * 接收一个文档块
+     *
+     * @param item      文档块
+     * @param blockType 块类型
+     * @param text      块的文本（无文本时为null）
+     * @param line      转换器为该块输出的文本行（含前缀和换行，无输出时为null）
+     */
+    void accept(JsonNode item, int blockType, String text, String line) {
+        String blockId = item.path("block_id").asText("");
+        String parentId = item.path("parent_id").asText("");
+        String cellId = tableByCell.containsKey(parentId) ? parentId : cellByBlock.get(parentId);
+        if (cellId != null) {
+            // 单元格内容只记入表格
+            cellByBlock.put(blockId, cellId);
+            if (text != null && !text.isEmpty()) {
+                tableByCell.get(cellId).append(cellId, text);
+            }
+            return;
+        }
+
+        switch (blockType) {
+            case 1: // page 文档根块，标题作为首个章节的模块名
+                title = DocxBlockConverter.extractTextFromBlock(item, "page");
+                break;
+            case 3: case 4: case 5: case 6: case 7: case 8: case 9: case 10: case 11:
+                if (text != null && !text.trim().isEmpty()) {
+                    current = new Section(text.trim());
+                    sections.add(current);
+                }
+                appendResidual(line);
+                break;
+            case 14: // code 代码块
+                if (!extractInterfaces(text)) {
+                    appendResidual(line);
+                }
+                break;
+            case 31: // table 表格
+                Table table = new Table(tables.size(), item.path("table"), current);
+                tables.add(table);
+                for (String cell : table.cellIds) {
+                    tableByCell.put(cell, table);
+                }
+                residual.append(TABLE_MARKER_PREFIX).append(table.index).append("\u0000");
+                break;
+            case 32: // table_cell 单元格本身无文本
+                break;
+            default:
+                appendResidual(line);
+                break;
+        }
+    }
+
+    /**
+     * 从代码块提取接口定义
+     *
+     * @return 代码块是否只包含接口定义行（此时不必再交给LLM）
+     */
+    private boolean extractInterfaces(String code) {
+        if (code == null) {
+            return false;
+        }
+        Matcher m = INTERFACE_LINE.matcher(code);
+        int found = 0;
+        while (m.find()) {
+            Map<String, Object> def = new LinkedHashMap<>();
+            def.put("method", m.group(1));
+            def.put("path", m.group(2));
+            def.put("params", new LinkedHashMap<String, String>());
+            current.interfaces.add(def);
+            found++;
+        }
+        return found > 0 && m.replaceAll("").trim().isEmpty();
+    }
+
+    private void appendResidual(String line) {
+        if (line != null) {
+            residual.append(line);
+        }
+    }
+
+    /**
+     * 生成骨架和剩余文本
+     */
+    StructuredPRD finish() {
+        int fieldCount = 0;
+        int tableCount = 0;
+        String text = residual.toString();
+        for (Table table : tables) {
+            int fields = table.extract();
+            String replacement;
+            if (fields >= 0) {
+                fieldCount += fields;
+                tableCount++;
+                replacement = "";
+            } else {
+                replacement = table.render();
+            }
+            text = text.replace(TABLE_MARKER_PREFIX + table.index + "\u0000", replacement);
+        }
+
+        List<Map<String, Object>> frontendModules = new ArrayList<>();
+        List<Map<String, Object>> backendModules = new ArrayList<>();
+        int interfaceCount = 0;
+        for (Section section : sections) {
+            String moduleName = section.heading != null ? section.heading
+                    : (title != null && !title.trim().isEmpty() ? title.trim() : "文档概述");
+            if (!section.pageElements.isEmpty()) {
+                Map<String, Object> module = new LinkedHashMap<>();
+                module.put("moduleName", moduleName);
+                module.put("pageElements", section.pageElements);
+                if (!section.validationRules.isEmpty()) {
+                    module.put("validationRules", section.validationRules);
+                }
+                frontendModules.add(module);
+            }
+            if (!section.interfaces.isEmpty() || !section.exceptionScenarios.isEmpty()) {
+                Map<String, Object> module = new LinkedHashMap<>();
+                module.put("moduleName", moduleName);
+                module.put("interfaces", section.interfaces);
+                if (!section.exceptionScenarios.isEmpty()) {
+                    module.put("exceptionScenarios", section.exceptionScenarios);
+                }
+                backendModules.add(module);
+                interfaceCount += section.interfaces.size();
+            }
+        }
+
+        Map<String, Object> skeleton = new LinkedHashMap<>();
+        skeleton.put("frontendModules", frontendModules);
+        skeleton.put("backendModules", backendModules);
+        skeleton.put("crossModuleLogics", new ArrayList<>());
+        return new StructuredPRD(skeleton, text, fieldCount, interfaceCount, tableCount);
+    }
+
+    /**
+     * 以标题划分的章节
+     */
+    private static final class Section {
+        final String heading;
+        final List<Map<String, Object>> interfaces = new ArrayList<>();
+        final List<Map<String, String>> pageElements = new ArrayList<>();
+        final List<String> validationRules = new ArrayList<>();
+        final List<String> exceptionScenarios = new ArrayList<>();
+
+        Section(String heading) {
+            this.heading = heading;
+        }
+    }
+
+    /**
+     * 表格：单元格按行优先顺序排列，内容在后续块中陆续到达
+     */
+    private static final class Table {
+        final int index;
+        final Section section;
+        final List<String> cellIds = new ArrayList<>();
+        final Map<String, StringBuilder> cellText = new HashMap<>();
+        final int columns;
+        // 表格出现时章节中已有的接口数，参数表归属于它之前最近的接口
+        final int interfacesBefore;
+
+        Table(int index, JsonNode table, Section section) {
+            this.index = index;
+            this.section = section;
+            this.interfacesBefore = section.interfaces.size();
+            for (JsonNode cell : table.path("cells")) {
+                cellIds.add(cell.asText());
+            }
+            this.columns = Math.max(1, table.path("property").path("column_size").asInt(1));
+        }
+
+        void append(String cellId, String text) {
+            StringBuilder sb = cellText.computeIfAbsent(cellId, id -> new StringBuilder());
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(text.trim());
+        }
+
+        List<List<String>> rows() {
+            List<List<String>> rows = new ArrayList<>();
+            for (int i = 0; i < cellIds.size(); i += columns) {
+                List<String> row = new ArrayList<>(columns);
+                for (int j = i; j < i + columns && j < cellIds.size(); j++) {
+                    StringBuilder sb = cellText.get(cellIds.get(j));
+                    row.add(sb != null ? sb.toString() : "");
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        /**
+         * 按表头识别并提取到所属章节
+         *
+         * @return 提取的字段数；无法识别时返回-1
+         */
+        int extract() {
+            List<List<String>> rows = rows();
+            if (rows.size() < 2) {
+                return -1;
+            }
+            List<String> header = rows.get(0);
+            int errorCodeCol = findColumn(header, ERROR_CODE_HEADER, -1);
+            if (errorCodeCol >= 0) {
+                return extractErrorCodes(rows, errorCodeCol);
+            }
+            int nameCol = findColumn(header, NAME_HEADER, -1);
+            if (nameCol < 0) {
+                return -1;
+            }
+            int typeCol = findColumn(header, TYPE_HEADER, nameCol);
+            int requiredCol = findColumn(header, REQUIRED_HEADER, nameCol);
+            if (typeCol < 0 && requiredCol < 0 && findColumn(header, SPEC_CONSTRAINT_HEADER, nameCol) < 0) {
+                // 只有名称列（及说明类列）的表格多为功能列表、角色表、状态表，原样交给LLM
+                return -1;
+            }
+
+            // 表格归属于它之前最近的接口；位于所有接口之前的表格只有表头写明“参数”时才归到其后的第一个接口，
+            // 否则多为页面字段表
+            boolean paramTable = PARAM_TABLE_HEADER.matcher(header.get(nameCol)).find();
+            Map<String, Object> targetInterface = null;
+            if (interfacesBefore > 0) {
+                targetInterface = section.interfaces.get(interfacesBefore - 1);
+            } else if (paramTable && !section.interfaces.isEmpty()) {
+                targetInterface = section.interfaces.get(0);
+            } else if (paramTable) {
+                // 参数表但章节内没有接口代码块：交给LLM结合上下文判断
+                return -1;
+            }
+
+            int count = 0;
+            for (List<String> row : rows.subList(1, rows.size())) {
+                String name = cell(row, nameCol);
+                if (name.isEmpty()) {
+                    continue;
+                }
+                String type = cell(row, typeCol);
+                boolean required = requiredCol >= 0 && REQUIRED_VALUE.matcher(cell(row, requiredCol)).matches();
+                List<String> constraints = new ArrayList<>();
+                if (requiredCol >= 0) {
+                    constraints.add(required ? "必填" : "选填");
+                }
+                for (int c = 0; c < header.size(); c++) {
+                    if (c != nameCol && c != typeCol && c != requiredCol
+                            && CONSTRAINT_HEADER.matcher(header.get(c)).find() && !cell(row, c).isEmpty()) {
+                        constraints.add(cell(row, c));
+                    }
+                }
+                String constraintText = String.join("；", constraints);
+
+                if (targetInterface != null) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, String> params = (Map<String, String>) targetInterface.get("params");
+                    String value = type.isEmpty() ? "string" : type;
+                    params.put(name, constraintText.isEmpty() ? value : value + "(" + constraintText + ")");
+                } else {
+                    Map<String, String> element = new LinkedHashMap<>();
+                    element.put("type", "input");
+                    element.put("id", name);
+                    element.put("label", name);
+                    element.put("constraints", type.isEmpty() ? constraintText
+                            : constraintText.isEmpty() ? type : type + "；" + constraintText);
+                    section.pageElements.add(element);
+                    if (required) {
+                        section.validationRules.add(name + "必填校验");
+                    }
+                }
+                count++;
+            }
+            return count;
+        }
+
+        private int extractErrorCodes(List<List<String>> rows, int codeCol) {
+            int count = 0;
+            for (List<String> row : rows.subList(1, rows.size())) {
+                String code = cell(row, codeCol);
+                StringBuilder desc = new StringBuilder();
+                for (int c = 0; c < row.size(); c++) {
+                    if (c != codeCol && !cell(row, c).isEmpty()) {
+                        desc.append(desc.length() > 0 ? "，" : "").append(cell(row, c));
+                    }
+                }
+                if (!code.isEmpty()) {
+                    section.exceptionScenarios.add(desc.length() > 0 ? code + ": " + desc : code);
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 无法识别的表格按行输出
+         */
+        String render() {
+            StringBuilder sb = new StringBuilder();
+            for (List<String> row : rows()) {
+                sb.append(String.join(" | ", row)).append('\n');
+            }
+            return sb.toString();
+        }
+
+        private static int findColumn(List<String> header, Pattern pattern, int exclude) {
+            for (int i = 0; i < header.size(); i++) {
+                if (i != exclude && pattern.matcher(header.get(i)).find()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String cell(List<String> row, int col) {
+            return col >= 0 && col < row.size() ? row.get(col).trim() : "";
+        }
+    }
+}
@@ -10,12 +10,8 @@ public class FeishuConfig {
     public static final String API_BASE_URL = "https://open.feishu.cn/open-apis";
 
     // 默认凭证（请通过环境变量配置）
-    private static String appId = ""; // 请设置环境变量FEISHU_APP_ID
-    private static String appSecret = ""; // 请设置环境变量FEISHU_APP_SECRET
-
-    // 缓存的访问令牌
-    private static String tenantAccessToken = null;
-    private static long tokenExpireTime = 0;
+    private static volatile String appId = ""; // 请设置环境变量FEISHU_APP_ID
+    private static volatile String appSecret = ""; // 请设置环境变量FEISHU_APP_SECRET
 
     /**
      * 获取App ID
@@ -41,8 +37,7 @@ public class FeishuConfig {
     public static void setAppId(String id) {
         appId = id;
         // 清除token缓存
-        tenantAccessToken = null;
-        tokenExpireTime = 0;
+        FeishuTokenManager.getInstance().invalidate();
     }
 
     /**
@@ -51,8 +46,7 @@ public class FeishuConfig {
     public static void setAppSecret(String secret) {
         appSecret = secret;
         // 清除token缓存
-        tenantAccessToken = null;
-        tokenExpireTime = 0;
+        FeishuTokenManager.getInstance().invalidate();
     }
 
     /**
@@ -68,10 +62,7 @@ public class FeishuConfig {
      * 获取缓存的访问令牌
      */
     public static String getCachedToken() {
-        if (tenantAccessToken != null && System.currentTimeMillis() < tokenExpireTime) {
-            return tenantAccessToken;
-        }
-        return null;
+        return FeishuTokenManager.getInstance().getCachedToken();
     }
 
     /**
@@ -81,16 +72,13 @@ public class FeishuConfig {
      * @param expireSeconds 过期时间（秒）
      */
     public static void cacheToken(String token, int expireSeconds) {
-        tenantAccessToken = token;
-        // 提前5分钟过期，避免边界情况
-        tokenExpireTime = System.currentTimeMillis() + (expireSeconds - 300) * 1000L;
+        FeishuTokenManager.getInstance().install(token, expireSeconds);
     }
 
     /**
      * 清除令牌缓存
      */
     public static void clearTokenCache() {
-        tenantAccessToken = null;
-        tokenExpireTime = 0;
+        FeishuTokenManager.getInstance().invalidate();
     }
 }
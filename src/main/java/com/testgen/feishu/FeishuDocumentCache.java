@@ -0,0 +1,129 @@
+package com.testgen.feishu;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 飞书文档内容缓存
+ * 以文档ID + 修订版本号(revision_id)为键缓存解析后的DocumentContent（含图片描述）。
+ * 文档未修改时直接返回缓存，无需重新读取文档块和识别图片；修订号变化即视为未命中。
+ *
+ * 按条目数做LRU淘汰，并设置最长存活时间（TTL），防止长期持有过期内容。
+ */
+public final class FeishuDocumentCache {
+
+    private static final FeishuDocumentCache INSTANCE = new FeishuDocumentCache(
+            parseIntEnv("FEISHU_DOC_CACHE_MAX_ENTRIES", 50),
+            TimeUnit.MINUTES.toMillis(parseIntEnv("FEISHU_DOC_CACHE_TTL_MINUTES", 60)));
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    // LRU顺序（accessOrder=true），key为文档ID
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revisionChanges = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private FeishuDocumentCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static FeishuDocumentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 查找指定修订版本的文档内容
+     *
+     * @return 缓存内容；不存在、已过期或修订号不一致时返回null
+     */
+    public synchronized FeishuService.DocumentContent get(String documentId, String revisionId) {
+        Entry entry = entries.get(documentId);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            entries.remove(documentId);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        if (!entry.revisionId.equals(revisionId)) {
+            // 文档已修改，旧版本内容不再有用
+            entries.remove(documentId);
+            revisionChanges.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.content;
+    }
+
+    public synchronized void put(String documentId, String revisionId, FeishuService.DocumentContent content) {
+        if (documentId == null || revisionId == null || content == null) {
+            return;
+        }
+        entries.put(documentId, new Entry(revisionId, content));
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized void invalidate(String documentId) {
+        entries.remove(documentId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", entries.size());
+        m.put("maxEntries", maxEntries);
+        m.put("ttlMinutes", TimeUnit.MILLISECONDS.toMinutes(ttlMillis));
+        m.put("hits", hits.sum());
+        m.put("misses", misses.sum());
+        m.put("revisionChanges", revisionChanges.sum());
+        m.put("expirations", expirations.sum());
+        m.put("evictions", evictions.sum());
+        return m;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static final class Entry {
+        final String revisionId;
+        final FeishuService.DocumentContent content;
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(String revisionId, FeishuService.DocumentContent content) {
+            this.revisionId = revisionId;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 飞书事件订阅回调解析
+ * 支持回调地址校验（url_verification）和 2.0 版本事件结构；
+ * 配置了 FEISHU_EVENT_ENCRYPT_KEY 时先解密 {"encrypt": "..."} 载荷，
+ * 配置了 FEISHU_EVENT_VERIFICATION_TOKEN 时校验载荷中的 token。
+ */
+public final class FeishuEventCallback {
+
+    public static final String URL_VERIFICATION = "url_verification";
+    public static final String FILE_EDIT = "drive.file.edit_v1";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FeishuEventCallback() {
+    }
+
+    /**
+     * 解析回调请求体
+     *
+     * @param body 请求体
+     * @return 事件
+     * @throws FeishuException 载荷无法解析、解密失败或token不匹配时
+     */
+    public static Event parse(String body) throws FeishuException {
+        return parse(body, System.getenv("FEISHU_EVENT_ENCRYPT_KEY"),
+                System.getenv("FEISHU_EVENT_VERIFICATION_TOKEN"));
+    }
+
+    static Event parse(String body, String encryptKey, String verificationToken) throws FeishuException {
+        JsonNode json = readTree(body);
+        if (json.has("encrypt")) {
+            if (isBlank(encryptKey)) {
+                throw new FeishuException("事件载荷已加密，但未配置FEISHU_EVENT_ENCRYPT_KEY");
+            }
+            json = readTree(decrypt(json.get("encrypt").asText(), encryptKey));
+        }
+
+        JsonNode header = json.path("header");
+        String token = header.has("token") ? header.path("token").asText() : json.path("token").asText(null);
+        if (!isBlank(verificationToken) && !verificationToken.equals(token)) {
+            throw new FeishuException("事件校验token不匹配");
+        }
+
+        Event event = new Event();
+        if (URL_VERIFICATION.equals(json.path("type").asText())) {
+            event.type = URL_VERIFICATION;
+            event.challenge = json.path("challenge").asText();
+            return event;
+        }
+        // 2.0 结构: {"schema":"2.0","header":{"event_id","event_type",...},"event":{...}}
+        JsonNode payload = json.path("event");
+        event.type = header.has("event_type") ? header.path("event_type").asText() : payload.path("type").asText(null);
+        event.eventId = header.has("event_id") ? header.path("event_id").asText() : json.path("uuid").asText(null);
+        event.fileToken = payload.path("file_token").asText(null);
+        event.fileType = payload.path("file_type").asText(null);
+        return event;
+    }
+
+    /**
+     * 解密事件载荷：AES-256-CBC，密钥为Encrypt Key的SHA-256，密文前16字节为IV
+     */
+    static String decrypt(String encrypted, String encryptKey) throws FeishuException {
+        try {
+            byte[] key = MessageDigest.getInstance("SHA-256").digest(encryptKey.getBytes(StandardCharsets.UTF_8));
+            byte[] data = Base64.getDecoder().decode(encrypted);
+            if (data.length <= 16) {
+                throw new FeishuException("事件载荷解密失败: 密文长度不足");
+            }
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"),
+                    new IvParameterSpec(Arrays.copyOfRange(data, 0, 16)));
+            return new String(cipher.doFinal(data, 16, data.length - 16), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new FeishuException("事件载荷解密失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static JsonNode readTree(String body) throws FeishuException {
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            if (json == null || !json.isObject()) {
+                throw new FeishuException("事件载荷格式错误");
+            }
+            return json;
+        } catch (FeishuException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FeishuException("事件载荷格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * 回调事件
+     */
+    public static final class Event {
+        public String type;       // url_verification 或事件类型，如 drive.file.edit_v1
+        public String challenge;  // 回调地址校验时需原样返回
+        public String eventId;    // 事件ID，飞书重试推送时不变，用于去重
+        public String fileToken;  // 云文档token（docx为文档ID）
+        public String fileType;   // 云文档类型，如 docx
+
+        public boolean isUrlVerification() {
+            return URL_VERIFICATION.equals(type);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.testgen.feishu;
+
+import com.testgen.concurrent.SharedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 飞书文档异步导入作业
+ * 文档文本先返回给前端，图片在后台作业中下载识别；每张图片完成后记录一个事件，
+ * 前端通过SSE或轮询按序号增量获取。作业结束后保留一段时间供前端取回结果，随后清理。
+ */
+public final class FeishuImportJobs {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeishuImportJobs.class);
+
+    private static final long RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(
+            parseIntEnv("FEISHU_IMPORT_JOB_RETENTION_MINUTES", 10));
+    private static final int MAX_JOBS = parseIntEnv("FEISHU_IMPORT_MAX_JOBS", 100);
+
+    private static final FeishuImportJobs INSTANCE = new FeishuImportJobs();
+
+    // 含已结束但仍在保留期内的作业
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    // 尚未结束的作业数，用于限制同时进行的作业
+    private final AtomicInteger running = new AtomicInteger();
+
+    private FeishuImportJobs() {
+    }
+
+    public static FeishuImportJobs getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 启动后台图片识别作业
+     *
+     * @param service 飞书服务
+     * @param content {@link FeishuService#getDocumentText} 返回的文档内容
+     * @return 作业
+     * @throws FeishuException 同时进行的作业过多时
+     */
+    public Job start(FeishuService service, FeishuService.DocumentContent content) throws FeishuException {
+        if (running.incrementAndGet() > MAX_JOBS) {
+            running.decrementAndGet();
+            throw new FeishuException("进行中的文档导入作业过多，请稍后再试");
+        }
+        Job job = new Job(UUID.randomUUID().toString().replace("-", ""), content);
+        jobs.put(job.id, job);
+        try {
+            SharedExecutors.jobs().execute(() -> run(service, job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            running.decrementAndGet();
+            throw new FeishuException("服务正在关闭，无法启动导入作业");
+        }
+        return job;
+    }
+
+    public Job get(String jobId) {
+        return jobId != null ? jobs.get(jobId) : null;
+    }
+
+    private void run(FeishuService service, Job job) {
+        try {
+            service.describeImages(job.content, job::onImageDescribed);
+            job.finish(null);
+        } catch (Exception e) {
+            logger.warn("文档图片识别作业 {} 失败: {}", job.id, e.getMessage());
+            job.finish(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            running.decrementAndGet();
+            try {
+                SharedExecutors.scheduler().schedule(() -> jobs.remove(job.id),
+                        RETENTION_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+            }
+        }
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 单个导入作业
+     * 事件列表只追加；读取方记住已读数量，下次从该序号继续
+     */
+    public static final class Job {
+        public final String id;
+        public final FeishuService.DocumentContent content;
+        // 作业结束（无论成功失败）时完成，供服务端其他流程（如预解析）等待
+        public final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final List<ImageEvent> events = new ArrayList<>();
+        private boolean done;
+        private String error;
+
+        Job(String id, FeishuService.DocumentContent content) {
+            this.id = id;
+            this.content = content;
+        }
+
+        private synchronized void onImageDescribed(int index, String description) {
+            events.add(new ImageEvent(index, description));
+            notifyAll();
+        }
+
+        private void finish(String error) {
+            synchronized (this) {
+                this.done = true;
+                this.error = error;
+                notifyAll();
+            }
+            completion.complete(null);
+        }
+
+        /**
+         * 返回序号from之后的事件；暂无新事件且作业未结束时最多等待timeoutMillis
+         */
+        public synchronized List<ImageEvent> awaitEvents(int from, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (events.size() <= from && !done) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+            return eventsSince(from);
+        }
+
+        public synchronized List<ImageEvent> eventsSince(int from) {
+            if (from >= events.size()) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(events.subList(Math.max(0, from), events.size()));
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        public synchronized String getError() {
+            return error;
+        }
+
+        public int imageCount() {
+            return content.images.size();
+        }
+    }
+
+    /**
+     * 单张图片识别完成事件
+     */
+    public static final class ImageEvent {
+        public final int index;
+        public final String description;
+        // 替换 {{IMAGE_PLACEHOLDER_index}} 的文本，与最终完整内容中的格式一致
+        public final String content;
+
+        ImageEvent(int index, String description) {
+            this.index = index;
+            this.description = description;
+            this.content = FeishuService.DocumentContent.formatImageContent(index, description);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.testgen.feishu;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 飞书接口客户端限流
+ * 飞书开放平台按应用、按接口族限制QPS，超出后返回429或"frequency limit"。
+ * 每个接口族一个令牌桶，进程内所有请求和线程共享；发送请求前先取得许可，
+ * 而不是先发出请求、被拒后再各自睡眠重试。
+ *
+ * 速率可通过环境变量 FEISHU_RATE_&lt;接口族&gt;（每秒请求数，如 FEISHU_RATE_DRIVE_MEDIA=5）调整，
+ * 桶容量为1秒的请求量，允许短时突发。
+ */
+public final class FeishuRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeishuRateLimiter.class);
+
+    /**
+     * 接口族及默认速率（次/秒）
+     */
+    public enum ApiFamily {
+        AUTH(5),          // 获取tenant_access_token
+        DOCX(5),          // 文档元数据、文档块、原始内容
+        DRIVE_MEDIA(5),   // 图片等素材下载
+        DRIVE_FILE(5),    // 云文档事件订阅
+        SHEETS(5),        // 电子表格元数据与单元格读取
+        OCR(5),           // 图片文字识别
+        WIKI(10);         // 知识库节点
+
+        final double defaultRate;
+
+        ApiFamily(double defaultRate) {
+            this.defaultRate = defaultRate;
+        }
+    }
+
+    private static final FeishuRateLimiter INSTANCE = new FeishuRateLimiter();
+
+    private final Map<ApiFamily, Bucket> buckets = new EnumMap<>(ApiFamily.class);
+
+    private FeishuRateLimiter() {
+        for (ApiFamily family : ApiFamily.values()) {
+            buckets.put(family, new Bucket(parseRateEnv("FEISHU_RATE_" + family.name(), family.defaultRate)));
+        }
+    }
+
+    public static FeishuRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 取得一次请求许可，必要时等待
+     * 等待期间线程被中断时恢复中断标记并立即返回，由调用方的后续I/O感知中断
+     */
+    public void acquire(ApiFamily family) {
+        Bucket bucket = buckets.get(family);
+        long waitNanos = bucket.reserve();
+        if (waitNanos <= 0) {
+            return;
+        }
+        bucket.throttled.increment();
+        bucket.waitNanos.add(waitNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 服务端返回频率限制时调用：该接口族暂停发放许可一段时间，所有线程一起退避
+     */
+    public void onRateLimited(ApiFamily family, long pauseMillis) {
+        Bucket bucket = buckets.get(family);
+        bucket.pause(TimeUnit.MILLISECONDS.toNanos(pauseMillis));
+        bucket.rejected.increment();
+        logger.warn("飞书接口频率受限({}), 暂停{}ms", family, pauseMillis);
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<ApiFamily, Bucket> e : buckets.entrySet()) {
+            Bucket bucket = e.getValue();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("ratePerSecond", bucket.rate);
+            m.put("permits", bucket.permits.sum());
+            m.put("throttled", bucket.throttled.sum());
+            m.put("totalWaitMs", bucket.waitNanos.sum() / 1_000_000);
+            m.put("serverRejections", bucket.rejected.sum());
+            result.put(e.getKey().name(), m);
+        }
+        return result;
+    }
+
+    private static double parseRateEnv(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double rate = Double.parseDouble(value.trim());
+            return rate > 0 ? rate : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 令牌桶
+     * 采用预约方式：每次取许可时在锁内计算该许可的可用时刻并推进下一个可用时刻，
+     * 在锁外睡眠到该时刻，多个等待者按到达顺序依次放行。
+     */
+    private static final class Bucket {
+        final double rate;
+        final double maxPermits;
+        final long intervalNanos;
+
+        private double storedPermits;
+        private long nextFreeNanos = System.nanoTime();
+
+        final LongAdder permits = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+
+        Bucket(double rate) {
+            this.rate = rate;
+            this.maxPermits = Math.max(1, rate);
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            this.storedPermits = maxPermits;
+        }
+
+        /**
+         * 预约一个许可
+         *
+         * @return 需要等待的纳秒数
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            if (now > nextFreeNanos) {
+                // 空闲期间累积许可，最多一个桶容量
+                storedPermits = Math.min(maxPermits,
+                        storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+                nextFreeNanos = now;
+            }
+            long availableAt = nextFreeNanos;
+            double fromStored = Math.min(1.0, storedPermits);
+            storedPermits -= fromStored;
+            nextFreeNanos += (long) ((1.0 - fromStored) * intervalNanos);
+            permits.increment();
+            return availableAt - now;
+        }
+
+        synchronized void pause(long pauseNanos) {
+            storedPermits = 0;
+            nextFreeNanos = Math.max(nextFreeNanos, System.nanoTime() + pauseNanos);
+        }
+    }
+}
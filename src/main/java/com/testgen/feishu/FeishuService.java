@@ -1,24 +1,36 @@
 package com.testgen.feishu;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.testgen.concurrent.SharedExecutors;
+import com.testgen.feishu.FeishuRateLimiter.ApiFamily;
+import com.testgen.llm.Base64JsonRequestBody;
+import com.testgen.llm.ImagePreprocessor;
 import com.testgen.llm.VolcanoService;
+import com.testgen.parser.StructuredPRD;
 
 /**
  * 飞书文档服务
@@ -35,8 +47,48 @@ public class FeishuService {
     private static final Pattern DOC_URL_PATTERN = Pattern.compile(
             "https?://[\\w.-]+\\.feishu\\.cn/docs/([\\w-]+)");
 
+    // 文档块分页大小（飞书接口允许的最大值）
+    private static final int BLOCK_PAGE_SIZE = 500;
+    // 流式读取文档块：生产者与转换线程之间的队列容量、单个块的等待超时、队列结束标记
+    private static final int BLOCK_QUEUE_CAPACITY = 256;
+    private static final long BLOCK_STREAM_TIMEOUT_SECONDS = 120;
+    private static final JsonNode END_OF_BLOCKS = MissingNode.getInstance();
+
+    // 批量视觉识别：多张图片打包进一次请求（VISION_BATCH_ENABLED=false 时逐张识别）
+    private static final boolean VISION_BATCH_ENABLED =
+            !"false".equalsIgnoreCase(System.getenv("VISION_BATCH_ENABLED"));
+
+    // 按块类型直接提取PRD结构，LLM只补充其余内容（PRD_STRUCTURED_EXTRACTION=false 时整篇交给LLM）
+    private static final boolean STRUCTURED_EXTRACTION_ENABLED =
+            !"false".equalsIgnoreCase(System.getenv("PRD_STRUCTURED_EXTRACTION"));
+
+    // 图片流水线：单个文档同时进行的识别请求数、容量上限（已下载未识别完的图片数）
+    // 各阶段线程由 SharedExecutors 的共享线程池提供
+    private static final int VISION_CONCURRENCY = parseIntEnv("VISION_CONCURRENCY", 2);
+    private static final int PIPELINE_CAPACITY = parseIntEnv("IMAGE_PIPELINE_CAPACITY", 8);
+    // 单个文档图片处理的最长等待时间，超时未完成的图片按识别失败处理
+    private static final int PIPELINE_TIMEOUT_SECONDS = parseIntEnv("IMAGE_PIPELINE_TIMEOUT_SECONDS", 600);
+
+    // 批量获取临时下载地址：飞书接口单次最多5个file_token
+    private static final int TMP_URL_BATCH_SIZE = 5;
+    // 记住可用extra格式的文档数上限
+    private static final int MEDIA_EXTRA_MEMORY = 200;
+
     private final OkHttpClient httpClient;
     private VolcanoService volcanoService;
+    private final ImagePreprocessor imagePreprocessor = new ImagePreprocessor();
+    private final ImageDescriptionCache descriptionCache = ImageDescriptionCache.getInstance();
+    private final FeishuDocumentCache documentCache = FeishuDocumentCache.getInstance();
+    private final WikiNodeCache wikiNodeCache = WikiNodeCache.getInstance();
+    private final FeishuRateLimiter rateLimiter = FeishuRateLimiter.getInstance();
+    // 文档ID -> 该文档图片下载可用的extra格式（LRU）
+    private final Map<String, MediaExtra> mediaExtraByDocument = Collections.synchronizedMap(
+            new LinkedHashMap<String, MediaExtra>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MediaExtra> eldest) {
+                    return size() > MEDIA_EXTRA_MEMORY;
+                }
+            });
 
     public FeishuService() {
         this.httpClient = new OkHttpClient.Builder()
@@ -60,6 +112,32 @@ public class FeishuService {
      * @return 文档内容（包括图片描述）
      */
     public DocumentContent getDocumentContent(String documentUrl) throws FeishuException {
+        return getDocumentContent(documentUrl, false);
+    }
+
+    /**
+     * 获取飞书文档内容
+     * docx文档先通过元数据接口查询当前修订号，与缓存一致时直接返回缓存内容
+     *
+     * @param documentUrl  飞书文档链接
+     * @param forceRefresh 为true时忽略缓存重新获取
+     * @return 文档内容（包括图片描述）
+     */
+    public DocumentContent getDocumentContent(String documentUrl, boolean forceRefresh) throws FeishuException {
+        DocumentContent content = getDocumentText(documentUrl, forceRefresh);
+        describeImages(content, null);
+        return content;
+    }
+
+    /**
+     * 只获取文档文本（图片位置为 {{IMAGE_PLACEHOLDER_n}} 占位符），不下载和识别图片
+     * 命中文档缓存时图片描述已齐全；否则需要再调用 {@link #describeImages} 补全图片描述
+     *
+     * @param documentUrl  飞书文档链接
+     * @param forceRefresh 为true时忽略缓存重新获取
+     * @return 文档内容
+     */
+    public DocumentContent getDocumentText(String documentUrl, boolean forceRefresh) throws FeishuException {
         // 1. 解析文档URL
         DocumentInfo docInfo = parseDocumentUrl(documentUrl);
         if (docInfo == null) {
@@ -86,157 +164,629 @@ public class FeishuService {
         // 4. 获取文档内容（带图片位置信息）
         String textContent;
         List<ImageInfo> images = new ArrayList<>();
+        String revisionId = null;
+        StructuredPRD structure = null;
 
         if ("docx".equals(docType) || "doc".equals(docType) || "wiki".equals(docType)) {
+            // 文档未修改时直接使用缓存
+            revisionId = getDocumentRevision(accessToken, actualDocId);
+            if (revisionId != null && !forceRefresh) {
+                DocumentContent cached = documentCache.get(actualDocId, revisionId);
+                if (cached != null) {
+                    logger.info("文档 {} 修订号 {} 未变化，使用缓存内容", actualDocId, revisionId);
+                    System.out.println("[Feishu] 文档未修改，使用缓存内容 (revision=" + revisionId + ")");
+                    return cached.asCached();
+                }
+            }
+
             // 新版文档 (docx) 或 wiki - 使用块解析以获取图片位置
             ContentWithImages contentWithImages = getDocxContentWithImages(accessToken, actualDocId);
             textContent = contentWithImages.content;
             images = contentWithImages.images;
+            structure = contentWithImages.structure;
         } else {
             // 旧版文档 (doc)
             textContent = getDocContent(accessToken, actualDocId);
         }
 
-        // 5. 如果有图片，并行下载并使用LLM描述
-        if (!images.isEmpty()) {
-            processImagesParallel(accessToken, images, actualDocId);
+        DocumentContent content = new DocumentContent(textContent, images);
+        content.documentId = actualDocId;
+        content.revisionId = revisionId;
+        content.structure = structure;
+        // 没有待识别的图片时调用方不会再调用describeImages，在此写入缓存
+        if (revisionId != null && allImagesDescribed(images)) {
+            documentCache.put(actualDocId, revisionId, content);
+        }
+        return content;
+    }
+
+    /**
+     * 解析文档链接对应的实际文档ID（wiki链接解析为节点的obj_token）
+     * 与文档变更事件中的file_token、DocumentContent的文档ID一致
+     *
+     * @param documentUrl 飞书文档链接
+     * @return 实际文档ID
+     */
+    public String resolveDocumentId(String documentUrl) throws FeishuException {
+        DocumentInfo docInfo = parseDocumentUrl(documentUrl);
+        if (docInfo == null) {
+            throw new FeishuException("无效的飞书文档链接格式");
+        }
+        if (!"wiki".equals(docInfo.type)) {
+            return docInfo.documentId;
+        }
+        WikiNodeInfo nodeInfo = getWikiNodeInfo(getTenantAccessToken(), docInfo.documentId);
+        return nodeInfo != null ? nodeInfo.objToken : docInfo.documentId;
+    }
+
+    /**
+     * 订阅文档变更事件
+     * POST /drive/v1/files/{file_token}/subscribe?file_type=docx
+     * 订阅后文档被编辑时，飞书向应用配置的事件回调地址推送 drive.file.edit_v1 事件
+     *
+     * @param documentUrl 飞书文档链接
+     * @return 实际文档ID
+     */
+    public String subscribeDocumentEvents(String documentUrl) throws FeishuException {
+        String documentId = resolveDocumentId(documentUrl);
+        String url = FeishuConfig.API_BASE_URL + "/drive/v1/files/" + documentId + "/subscribe?file_type=docx";
+
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", "Bearer " + getTenantAccessToken())
+                .post(RequestBody.create(new byte[0], null))
+                .build();
+
+        rateLimiter.acquire(ApiFamily.DRIVE_FILE);
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            JsonNode json = objectMapper.readTree(responseBody);
+            int code = json.has("code") ? json.get("code").asInt() : -1;
+            if (code != 0) {
+                String msg = json.has("msg") ? json.get("msg").asText() : "未知错误";
+                throw new FeishuException("订阅文档事件失败: " + msg + " (code: " + code + ")");
+            }
+            logger.info("已订阅文档 {} 的变更事件", documentId);
+            return documentId;
+        } catch (IOException e) {
+            throw new FeishuException("订阅文档事件请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 下载并识别文档中尚未描述的图片，完成后写入文档缓存
+     * 每张图片处理结束（含命中描述缓存、识别失败）时通知listener，调用方可据此逐张推送结果
+     *
+     * @param content  {@link #getDocumentText} 返回的文档内容
+     * @param listener 图片进度回调，可为null
+     */
+    public void describeImages(DocumentContent content, ImageProgressListener listener) throws FeishuException {
+        if (!content.hasPendingImages()) {
+            return;
+        }
+        // 5. 并行下载图片并使用LLM描述
+        processImagesParallel(getTenantAccessToken(), content.images, content.documentId, listener);
+
+        // 有图片识别失败时不缓存，下次请求重新识别
+        if (content.revisionId != null && allImagesDescribed(content.images)) {
+            documentCache.put(content.documentId, content.revisionId, content);
+        }
+    }
+
+    /**
+     * 查询docx文档当前修订号
+     * GET /docx/v1/documents/{document_id}，只返回文档元数据，开销远小于读取全部文档块
+     *
+     * @return 修订号；查询失败时返回null（此时不使用缓存）
+     */
+    private String getDocumentRevision(String accessToken, String documentId) {
+        String url = FeishuConfig.API_BASE_URL + "/docx/v1/documents/" + documentId;
+
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", "Bearer " + accessToken)
+                .get()
+                .build();
+
+        rateLimiter.acquire(ApiFamily.DOCX);
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            JsonNode json = objectMapper.readTree(responseBody);
+            int code = json.has("code") ? json.get("code").asInt() : -1;
+            if (code != 0) {
+                logger.debug("获取文档修订号失败: code={}", code);
+                return null;
+            }
+            JsonNode revision = json.path("data").path("document").path("revision_id");
+            return revision.isMissingNode() || revision.isNull() ? null : revision.asText();
+        } catch (Exception e) {
+            logger.debug("获取文档修订号异常: {}", e.getMessage());
+            return null;
         }
+    }
 
-        return new DocumentContent(textContent, images);
+    private static boolean allImagesDescribed(List<ImageInfo> images) {
+        for (ImageInfo img : images) {
+            if (img.description == null || img.description.startsWith("【文档图片")) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * 并行处理图片：下载并使用LLM生成描述
-     * 优化：使用并行下载 + 控制LLM调用并发度以避免速率限制
+     * 下载 → 预处理（感知哈希/缓存/压缩）→ 识别 三个阶段流水线执行，
+     * 分别运行在共享的io/cpu/llm线程池上，第1张图片识别时后面的图片仍可继续下载。
+     * 已下载但未识别完的图片数量受容量上限约束（背压），避免图片数据同时堆积在内存中。
+     * 识别前先查图片描述缓存：按文件token命中时跳过下载，按感知哈希命中时跳过视觉模型调用
+     * 需要下载的图片每5张一组批量获取临时下载地址，再由io线程并行下载
+     * 默认按token预算把多张图片打包进一次视觉请求，减少往返次数
      */
-    private void processImagesParallel(String accessToken, List<ImageInfo> images, String documentId) {
+    private void processImagesParallel(String accessToken, List<ImageInfo> images, String documentId,
+                                       ImageProgressListener listener) {
         int imageCount = images.size();
         logger.info("开始并行处理文档中的 {} 张图片", imageCount);
         System.out.println("[图片处理] 开始并行处理 " + imageCount + " 张图片...");
-        
-        // 创建线程池：下载使用较多线程，识别使用有限线程避免429
-        ExecutorService downloadExecutor = Executors.newFixedThreadPool(Math.min(imageCount, 5));
-        // LLM识别使用信号量控制并发，最多2个并发避免429错误
-        Semaphore llmSemaphore = new Semaphore(2);
-        
-        AtomicInteger completedCount = new AtomicInteger(0);
-        
-        // 第一阶段：并行下载所有图片
-        List<CompletableFuture<Void>> downloadFutures = new ArrayList<>();
-        for (int i = 0; i < imageCount; i++) {
-            final int index = i;
-            final ImageInfo img = images.get(i);
-            
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+
+        ImagePipeline pipeline = new ImagePipeline(accessToken, images, documentId, listener);
+        try {
+            pipeline.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("图片处理被中断");
+        }
+
+        descriptionCache.flush();
+
+        logger.info("所有图片处理完成");
+        System.out.println("[图片处理] 全部完成！共处理 " + imageCount + " 张图片");
+    }
+
+    /**
+     * 单个文档的图片处理流水线
+     * 下载阶段由调用线程按容量上限逐张提交；预处理完成的图片进入识别缓冲区，
+     * 识别线程空闲时立即发出，忙碌时继续累积直到凑满一批（按token预算）。
+     */
+    private final class ImagePipeline {
+        private final String accessToken;
+        private final List<ImageInfo> images;
+        private final String documentId;
+        private final ImageProgressListener listener;
+        private final int imageCount;
+
+        private final ExecutorService downloadExecutor;
+        private final ExecutorService preprocessExecutor;
+        private final ExecutorService recognizeExecutor;
+        private final int recognizeConcurrency;
+
+        // 背压：已开始下载但尚未完成识别的图片数上限
+        private final Semaphore capacity;
+        private final CountDownLatch finished;
+        private final AtomicInteger completedCount = new AtomicInteger(0);
+        // 尚未离开预处理阶段的图片数，归零后把识别缓冲区剩余图片全部发出
+        private final AtomicInteger upstreamRemaining;
+        // 每张图片是否已离开预处理阶段/已结束（1为是），保证异常和超时路径下只计一次
+        private final AtomicIntegerArray leftUpstream;
+        private final AtomicIntegerArray finishedImages;
+
+        // 需要下载的图片按顺序每5张一组批量获取临时下载地址；由该组第一个开始下载的线程获取，其余线程等待
+        private final int[] downloadBatchOf;
+        private List<List<String>> downloadBatchTokens;
+        private AtomicReferenceArray<CompletableFuture<Map<String, String>>> tmpUrlBatches;
+
+        // 识别缓冲区（受this锁保护）
+        private final List<Integer> pending = new ArrayList<>();
+        private int activeRecognitions;
+
+        ImagePipeline(String accessToken, List<ImageInfo> images, String documentId,
+                      ImageProgressListener listener) {
+            this.accessToken = accessToken;
+            this.images = images;
+            this.documentId = documentId;
+            this.listener = listener;
+            this.imageCount = images.size();
+            this.recognizeConcurrency = VISION_CONCURRENCY;
+            this.downloadExecutor = SharedExecutors.io();
+            this.preprocessExecutor = SharedExecutors.cpu();
+            this.recognizeExecutor = SharedExecutors.llm();
+            this.capacity = new Semaphore(PIPELINE_CAPACITY);
+            this.finished = new CountDownLatch(imageCount);
+            this.upstreamRemaining = new AtomicInteger(imageCount);
+            this.leftUpstream = new AtomicIntegerArray(imageCount);
+            this.finishedImages = new AtomicIntegerArray(imageCount);
+            this.downloadBatchOf = new int[imageCount];
+        }
+
+        void run() throws InterruptedException {
+            // 先按token查缓存，只为未命中的图片获取下载地址
+            boolean[] cachedByToken = new boolean[imageCount];
+            downloadBatchTokens = new ArrayList<>();
+            for (int i = 0; i < imageCount; i++) {
+                ImageInfo img = images.get(i);
+                String cached = descriptionCache.findByToken(img.token);
+                if (cached != null) {
+                    logger.info("图片 {}/{} 命中描述缓存(token)，跳过下载", i + 1, imageCount);
+                    img.description = cached;
+                    cachedByToken[i] = true;
+                    continue;
+                }
+                if (downloadBatchTokens.isEmpty()
+                        || downloadBatchTokens.get(downloadBatchTokens.size() - 1).size() == TMP_URL_BATCH_SIZE) {
+                    downloadBatchTokens.add(new ArrayList<>(TMP_URL_BATCH_SIZE));
+                }
+                downloadBatchTokens.get(downloadBatchTokens.size() - 1).add(img.token);
+                downloadBatchOf[i] = downloadBatchTokens.size() - 1;
+            }
+            tmpUrlBatches = new AtomicReferenceArray<>(downloadBatchTokens.size());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(PIPELINE_TIMEOUT_SECONDS);
+            boolean completed = true;
+            for (int i = 0; i < imageCount; i++) {
+                final int index = i;
+                if (!capacity.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    completed = false;
+                    break;
+                }
+                if (cachedByToken[index]) {
+                    leaveUpstream(index);
+                    finish(index, true);
+                    continue;
+                }
                 try {
-                    logger.info("并行下载图片 {}/{}: token={}", index + 1, imageCount, img.token);
-                    img.base64Data = downloadImageAsBase64(accessToken, img.token, documentId);
-                } catch (Exception e) {
-                    logger.warn("下载图片 {} 失败: {}", index + 1, e.getMessage());
-                    img.base64Data = null;
+                    downloadExecutor.execute(() -> download(index));
+                } catch (RejectedExecutionException e) {
+                    fail(index, "提交下载任务被拒绝", e);
                 }
-            }, downloadExecutor);
-            
-            downloadFutures.add(future);
+            }
+            if (completed) {
+                completed = finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            if (!completed) {
+                logger.warn("图片处理超过 {} 秒未完成，剩余图片按识别失败处理", PIPELINE_TIMEOUT_SECONDS);
+                for (int index = 0; index < imageCount; index++) {
+                    ImageInfo img = images.get(index);
+                    if (finishedImages.get(index) == 0 && img.description == null) {
+                        img.description = "【文档图片 " + (index + 1) + "】识别超时，请在原始飞书文档中查看此图片内容";
+                    }
+                    finish(index, false);
+                }
+            }
         }
-        
-        // 等待所有下载完成
-        try {
-            CompletableFuture.allOf(downloadFutures.toArray(new CompletableFuture[0])).join();
-            logger.info("所有图片下载完成，开始并行识别");
-            System.out.println("[图片处理] 下载完成，开始并行识别...");
-        } catch (Exception e) {
-            logger.warn("部分图片下载失败: {}", e.getMessage());
+
+        /**
+         * 某个阶段异常结束：标记图片处理失败，保证该图片计入完成数
+         * Error 在标记后继续抛出
+         */
+        private void fail(int index, String stage, Throwable t) {
+            logger.warn("图片 {} {}: {}", index + 1, stage, t.toString());
+            ImageInfo img = images.get(index);
+            if (img.description == null) {
+                img.description = "【文档图片 " + (index + 1) + "】识别失败";
+            }
+            leaveUpstream(index);
+            finish(index, false);
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
         }
-        
-        // 第二阶段：并行识别图片内容（带并发控制）
-        List<CompletableFuture<Void>> recognizeFutures = new ArrayList<>();
-        for (int i = 0; i < imageCount; i++) {
-            final int index = i;
-            final ImageInfo img = images.get(i);
-            
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                try {
-                    if (img.base64Data != null && !img.base64Data.isEmpty()) {
-                        // 获取信号量，控制LLM并发
-                        llmSemaphore.acquire();
-                        try {
-                            // 1. 尝试使用LLM描述图片
-                            if (volcanoService != null) {
-                                logger.info("并行识别图片 {}/{}", index + 1, imageCount);
-                                String description = volcanoService.describeImage(img.base64Data, "飞书PRD文档中的图片");
-
-                                if (description != null && !description.contains("模型暂不支持")
-                                        && !description.contains("无法识别") && !description.contains("识别失败")) {
-                                    img.description = description;
-                                    int done = completedCount.incrementAndGet();
-                                    System.out.println("[图片处理] 识别进度: " + done + "/" + imageCount);
-                                    return;
-                                }
-                            }
-
-                            // 2. 如果LLM不可用或不支持，尝试使用飞书OCR
-                            logger.info("使用飞书OCR识别图片 {}/{}", index + 1, imageCount);
-                            String ocrText = recognizeImageText(accessToken, img.base64Data);
-                            if (ocrText != null && !ocrText.isEmpty()) {
-                                img.description = "图片包含的文字内容：\n" + ocrText;
-                            } else {
-                                img.description = "【文档图片 " + (index + 1) + "】(OCR未识别到文字)";
-                            }
-                        } finally {
-                            llmSemaphore.release();
-                            // 释放后短暂延迟，避免请求过于密集
-                            Thread.sleep(200);
-                        }
-                    } else {
-                        img.description = "【文档图片 " + (index + 1) + "】请在原始飞书文档中查看此图片内容";
+
+        /**
+         * 阶段1：下载图片
+         * 优先使用批量获取的临时下载地址，获取不到时回退到逐个尝试素材下载接口
+         */
+        private void download(int index) {
+            try {
+                downloadAndSubmit(index);
+            } catch (Throwable t) {
+                fail(index, "下载阶段异常", t);
+            }
+        }
+
+        private void downloadAndSubmit(int index) {
+            ImageInfo img = images.get(index);
+            try {
+                logger.info("并行下载图片 {}/{}: token={}", index + 1, imageCount, img.token);
+                String tmpUrl = tmpDownloadUrls(downloadBatchOf[index]).get(img.token);
+                if (tmpUrl != null) {
+                    img.data = tryDownload(accessToken, tmpUrl);
+                }
+                if (img.data == null || img.data.length == 0) {
+                    img.data = downloadImage(accessToken, img.token, documentId);
+                }
+            } catch (Exception e) {
+                logger.warn("下载图片 {} 失败: {}", index + 1, e.getMessage());
+                img.data = null;
+            }
+
+            if (img.data == null || img.data.length == 0) {
+                img.description = "【文档图片 " + (index + 1) + "】请在原始飞书文档中查看此图片内容";
+                leaveUpstream(index);
+                finish(index, false);
+                return;
+            }
+            preprocessExecutor.execute(() -> preprocess(index));
+        }
+
+        /**
+         * 获取一组图片的临时下载地址（同组只请求一次）
+         * 下载线程只会等待正在执行中的请求，不会等待排队中的任务
+         */
+        private Map<String, String> tmpDownloadUrls(int batch) {
+            CompletableFuture<Map<String, String>> future = tmpUrlBatches.get(batch);
+            if (future == null) {
+                CompletableFuture<Map<String, String>> mine = new CompletableFuture<>();
+                if (tmpUrlBatches.compareAndSet(batch, null, mine)) {
+                    Map<String, String> urls = Collections.emptyMap();
+                    try {
+                        urls = getTmpDownloadUrls(accessToken, downloadBatchTokens.get(batch), documentId);
+                    } catch (Exception e) {
+                        logger.warn("批量获取临时下载地址失败: {}", e.getMessage());
+                    } finally {
+                        mine.complete(urls);
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    img.description = "【文档图片 " + (index + 1) + "】处理被中断";
-                } catch (Exception e) {
-                    logger.warn("识别图片 {} 失败: {}", index + 1, e.getMessage());
-                    img.description = "【文档图片 " + (index + 1) + "】识别失败: " + e.getMessage();
+                    return urls;
                 }
-                completedCount.incrementAndGet();
-            }, downloadExecutor);
-            
-            recognizeFutures.add(future);
+                future = tmpUrlBatches.get(batch);
+            }
+            return future.join();
         }
-        
-        // 等待所有识别完成
-        try {
-            CompletableFuture.allOf(recognizeFutures.toArray(new CompletableFuture[0])).join();
-        } catch (Exception e) {
-            logger.warn("部分图片识别失败: {}", e.getMessage());
+
+        /**
+         * 阶段2：计算感知哈希查缓存，未命中则压缩后进入识别缓冲区
+         */
+        private void preprocess(int index) {
+            try {
+                preprocessAndEnqueue(index);
+            } catch (Throwable t) {
+                fail(index, "预处理阶段异常", t);
+            }
         }
-        
-        // 关闭线程池
-        downloadExecutor.shutdown();
+
+        private void preprocessAndEnqueue(int index) {
+            ImageInfo img = images.get(index);
+            try {
+                img.perceptualHash = imagePreprocessor.perceptualHash(img.data);
+                String cached = descriptionCache.findByHash(img.token, img.perceptualHash);
+                if (cached != null) {
+                    logger.info("图片 {}/{} 命中描述缓存(感知哈希)，跳过识别", index + 1, imageCount);
+                    img.description = cached;
+                    leaveUpstream(index);
+                    finish(index, true);
+                    return;
+                }
+                if (volcanoService != null) {
+                    img.preparedImage = volcanoService.prepareImage(img.data);
+                }
+            } catch (Exception e) {
+                logger.warn("预处理图片 {} 失败: {}", index + 1, e.getMessage());
+            }
+            enqueueRecognition(index);
+            leaveUpstream(index);
+        }
+
+        /**
+         * 阶段3入口：加入识别缓冲区
+         * 识别线程有空闲时立即发出；否则累积，凑满一批时发出
+         */
+        private synchronized void enqueueRecognition(int index) {
+            if (!canBatch(index)) {
+                // 无法批量识别的图片单独发出
+                dispatch(Collections.singletonList(index));
+                return;
+            }
+            if (!pending.isEmpty() && !fitsPendingBatch(index)) {
+                dispatch(drainPending());
+            }
+            pending.add(index);
+            if (activeRecognitions < recognizeConcurrency) {
+                dispatch(drainPending());
+            }
+        }
+
+        private boolean canBatch(int index) {
+            return VISION_BATCH_ENABLED && volcanoService != null && images.get(index).preparedImage != null;
+        }
+
+        /**
+         * 加入该图片后缓冲区是否仍在一批的token预算内
+         */
+        private boolean fitsPendingBatch(int index) {
+            List<ImagePreprocessor.ProcessedImage> candidate = new ArrayList<>();
+            for (int i : pending) {
+                candidate.add(images.get(i).preparedImage);
+            }
+            candidate.add(images.get(index).preparedImage);
+            return volcanoService.planVisionBatches(candidate).size() == 1;
+        }
+
+        private List<Integer> drainPending() {
+            List<Integer> batch = new ArrayList<>(pending);
+            pending.clear();
+            return batch;
+        }
+
+        private synchronized void dispatch(List<Integer> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            activeRecognitions++;
+            try {
+                recognizeExecutor.execute(() -> {
+                    try {
+                        recognize(batch);
+                    } finally {
+                        onRecognitionComplete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                activeRecognitions--;
+                for (int index : batch) {
+                    fail(index, "提交识别任务被拒绝", e);
+                }
+            }
+        }
+
+        private synchronized void onRecognitionComplete() {
+            activeRecognitions--;
+            if (!pending.isEmpty()) {
+                dispatch(drainPending());
+            }
+        }
+
+        /**
+         * 所有图片都离开预处理阶段后，不会再有新图片进入缓冲区，剩余的直接发出
+         */
+        private void leaveUpstream(int index) {
+            if (leftUpstream.compareAndSet(index, 0, 1) && upstreamRemaining.decrementAndGet() == 0) {
+                synchronized (this) {
+                    if (!pending.isEmpty()) {
+                        dispatch(drainPending());
+                    }
+                }
+            }
+        }
+
+        /**
+         * 阶段3：识别一批（或单张）图片
+         */
+        private void recognize(List<Integer> batch) {
+            try {
+                if (batch.size() > 1) {
+                    recognizeBatch(accessToken, images, batch);
+                } else {
+                    int index = batch.get(0);
+                    recognizeImage(accessToken, images.get(index), index, imageCount, true);
+                }
+            } catch (Exception e) {
+                logger.warn("识别图片失败: {}", e.getMessage());
+            } finally {
+                for (int index : batch) {
+                    ImageInfo img = images.get(index);
+                    if (img.description == null) {
+                        img.description = "【文档图片 " + (index + 1) + "】识别失败";
+                    }
+                    finish(index, false);
+                }
+            }
+        }
+
+        /**
+         * 单张图片处理结束：释放数据与容量许可，更新进度（每张图片只生效一次）
+         */
+        private void finish(int index, boolean fromCache) {
+            if (!finishedImages.compareAndSet(index, 0, 1)) {
+                return;
+            }
+            ImageInfo img = images.get(index);
+            try {
+                releaseImageData(img);
+                int done = completedCount.incrementAndGet();
+                System.out.println("[图片处理] 识别进度: " + done + "/" + imageCount + (fromCache ? "（缓存）" : ""));
+                if (listener != null) {
+                    try {
+                        listener.onImageDescribed(index, img.description);
+                    } catch (RuntimeException e) {
+                        logger.warn("图片进度回调失败: {}", e.getMessage());
+                    }
+                }
+            } finally {
+                capacity.release();
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * 一次请求识别一批图片，拆分失败的图片单张重试，请求失败的图片回退OCR
+     */
+    private void recognizeBatch(String accessToken, List<ImageInfo> images, List<Integer> batchIndexes) {
+        int imageCount = images.size();
+        List<ImagePreprocessor.ProcessedImage> batchImages = new ArrayList<>();
+        for (int index : batchIndexes) {
+            batchImages.add(images.get(index).preparedImage);
+        }
+        logger.info("批量识别图片 {} 张: {}", batchIndexes.size(), batchIndexes);
+        List<String> results = volcanoService.describeImageBatch(batchImages, "飞书PRD文档中的图片");
+
+        for (int k = 0; k < batchIndexes.size(); k++) {
+            int index = batchIndexes.get(k);
+            ImageInfo img = images.get(index);
+            String description = results.get(k);
+            if (description == null) {
+                // 模型输出中缺少该图片的分段，单张重试
+                logger.info("图片 {} 未能从批量结果中拆分，单张重试", index + 1);
+                recognizeImage(accessToken, img, index, imageCount, true);
+            } else if (isUsableDescription(description)) {
+                img.description = description;
+                descriptionCache.put(img.token, img.perceptualHash, description);
+            } else {
+                recognizeImage(accessToken, img, index, imageCount, false);
+            }
+        }
+    }
+
+    /**
+     * 识别单张图片：优先使用视觉模型，不可用或失败时回退飞书OCR
+     *
+     * @param useVision 是否调用视觉模型（批量请求已失败时直接走OCR）
+     */
+    private void recognizeImage(String accessToken, ImageInfo img, int index, int imageCount, boolean useVision) {
         try {
-            if (!downloadExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
-                downloadExecutor.shutdownNow();
+            // 1. 尝试使用LLM描述图片
+            if (useVision && volcanoService != null) {
+                logger.info("并行识别图片 {}/{}", index + 1, imageCount);
+                String description = img.preparedImage != null
+                        ? volcanoService.describePreparedImage(img.preparedImage, "飞书PRD文档中的图片")
+                        : volcanoService.describeImage(img.data, "飞书PRD文档中的图片");
+
+                if (isUsableDescription(description)) {
+                    img.description = description;
+                    descriptionCache.put(img.token, img.perceptualHash, description);
+                    return;
+                }
             }
-        } catch (InterruptedException e) {
-            downloadExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+
+            // 2. 如果LLM不可用或不支持，尝试使用飞书OCR
+            logger.info("使用飞书OCR识别图片 {}/{}", index + 1, imageCount);
+            String ocrText = recognizeImageText(accessToken, img.data);
+            if (ocrText != null && !ocrText.isEmpty()) {
+                img.description = "图片包含的文字内容：\n" + ocrText;
+                descriptionCache.put(img.token, img.perceptualHash, img.description);
+            } else {
+                img.description = "【文档图片 " + (index + 1) + "】(OCR未识别到文字)";
+            }
+        } catch (Exception e) {
+            logger.warn("识别图片 {} 失败: {}", index + 1, e.getMessage());
+            img.description = "【文档图片 " + (index + 1) + "】识别失败: " + e.getMessage();
         }
-        
-        logger.info("所有图片处理完成");
-        System.out.println("[图片处理] 全部完成！共处理 " + imageCount + " 张图片");
+    }
+
+    /**
+     * 识别完成后释放图片字节，避免整篇文档的图片数据同时驻留内存
+     */
+    private static void releaseImageData(ImageInfo img) {
+        img.data = null;
+        img.preparedImage = null;
+    }
+
+    private static boolean isUsableDescription(String description) {
+        return description != null && !description.contains("模型暂不支持")
+                && !description.contains("无法识别") && !description.contains("识别失败");
     }
 
     /**
      * 使用飞书OCR识别图片文字
      */
-    private String recognizeImageText(String accessToken, String imageBase64) {
+    private String recognizeImageText(String accessToken, byte[] imageBytes) {
         String url = FeishuConfig.API_BASE_URL + "/optical_char_recognition/v1/image/basic_recognize";
 
-        String jsonBody = "{\"image\":\"" + imageBase64 + "\"}";
-
-        RequestBody body = RequestBody.create(
-                jsonBody,
-                MediaType.parse("application/json; charset=utf-8"));
+        // 图片字节在写出请求体时才编码为Base64
+        RequestBody body = Base64JsonRequestBody.builder()
+                .text("{\"image\":\"")
+                .base64(imageBytes)
+                .text("\"}")
+                .build();
 
         Request request = new Request.Builder()
                 .url(url)
@@ -244,6 +794,7 @@ public class FeishuService {
                 .post(body)
                 .build();
 
+        rateLimiter.acquire(ApiFamily.OCR);
         try (Response response = httpClient.newCall(request).execute()) {
             String responseBody = response.body() != null ? response.body().string() : "";
 
@@ -301,6 +852,11 @@ public class FeishuService {
      * Wiki节点的obj_token才是真正的文档ID
      */
     private WikiNodeInfo getWikiNodeInfo(String accessToken, String nodeToken) {
+        // 节点映射几乎不变，优先使用进程内共享缓存
+        return wikiNodeCache.resolve(nodeToken, token -> loadWikiNodeInfo(accessToken, token));
+    }
+
+    private WikiNodeInfo loadWikiNodeInfo(String accessToken, String nodeToken) {
         // Wiki节点API: GET /wiki/v2/spaces/get_node?token={node_token}
         String url = FeishuConfig.API_BASE_URL + "/wiki/v2/spaces/get_node?token=" + nodeToken;
 
@@ -310,6 +866,7 @@ public class FeishuService {
                 .get()
                 .build();
 
+        rateLimiter.acquire(ApiFamily.WIKI);
         try (Response response = httpClient.newCall(request).execute()) {
             String responseBody = response.body() != null ? response.body().string() : "";
 
@@ -344,7 +901,7 @@ public class FeishuService {
     /**
      * Wiki节点信息
      */
-    private static class WikiNodeInfo {
+    static class WikiNodeInfo {
         public final String objToken;
         public final String objType;
 
@@ -356,58 +913,10 @@ public class FeishuService {
 
     /**
      * 获取 tenant_access_token
+     * 由FeishuTokenManager统一管理：有效期内直接返回，到期前后台刷新，并发请求只发起一次刷新
      */
     public String getTenantAccessToken() throws FeishuException {
-        // 检查缓存
-        String cachedToken = FeishuConfig.getCachedToken();
-        if (cachedToken != null) {
-            return cachedToken;
-        }
-
-        // 检查配置
-        if (!FeishuConfig.isConfigured()) {
-            throw new FeishuException("飞书应用未配置，请设置 App ID 和 App Secret");
-        }
-
-        String url = FeishuConfig.API_BASE_URL + "/auth/v3/tenant_access_token/internal";
-
-        String jsonBody = String.format(
-                "{\"app_id\":\"%s\",\"app_secret\":\"%s\"}",
-                FeishuConfig.getAppId(),
-                FeishuConfig.getAppSecret());
-
-        RequestBody body = RequestBody.create(
-                jsonBody,
-                MediaType.parse("application/json; charset=utf-8"));
-
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            String responseBody = response.body() != null ? response.body().string() : "";
-
-            JsonNode json = objectMapper.readTree(responseBody);
-            int code = json.has("code") ? json.get("code").asInt() : -1;
-
-            if (code != 0) {
-                String msg = json.has("msg") ? json.get("msg").asText() : "未知错误";
-                throw new FeishuException("获取访问令牌失败: " + msg + " (code: " + code + ")");
-            }
-
-            String token = json.get("tenant_access_token").asText();
-            int expire = json.get("expire").asInt();
-
-            // 缓存令牌
-            FeishuConfig.cacheToken(token, expire);
-
-            logger.info("获取飞书访问令牌成功，有效期: {}秒", expire);
-            return token;
-
-        } catch (IOException e) {
-            throw new FeishuException("网络请求失败: " + e.getMessage(), e);
-        }
+        return FeishuTokenManager.getInstance().getToken();
     }
 
     /**
@@ -422,6 +931,7 @@ public class FeishuService {
                 .get()
                 .build();
 
+        rateLimiter.acquire(ApiFamily.DOCX);
         try (Response response = httpClient.newCall(request).execute()) {
             String responseBody = response.body() != null ? response.body().string() : "";
 
@@ -448,201 +958,196 @@ public class FeishuService {
     /**
      * 获取文档内容和图片信息（按块顺序解析）
      * 图片会以占位符形式插入到文本中对应位置
+     * 按 has_more/page_token 读取全部分页：io线程池中的生产者流式解析响应并逐块放入有界队列，
+     * 调用线程同时逐块转换，生产者读完一页后立即请求下一页
      */
     private ContentWithImages getDocxContentWithImages(String accessToken, String documentId) throws FeishuException {
-        StringBuilder contentBuilder = new StringBuilder();
-        List<ImageInfo> images = new ArrayList<>();
-        int imageIndex = 0;
-        
-        String url = FeishuConfig.API_BASE_URL + "/docx/v1/documents/" + documentId + "/blocks";
+        DocxBlockConverter converter = new DocxBlockConverter();
+        BlockStream stream = new BlockStream();
 
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", "Bearer " + accessToken)
-                .get()
-                .build();
+        // 生产者：在io线程池中逐页流式解析，块逐个放入有界队列；队列满时阻塞，形成背压
+        SharedExecutors.io().execute(() -> stream.produce(accessToken, documentId));
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            String responseBody = response.body() != null ? response.body().string() : "";
-
-            JsonNode json = objectMapper.readTree(responseBody);
-            int code = json.has("code") ? json.get("code").asInt() : -1;
+        try {
+            while (true) {
+                JsonNode block = stream.queue.poll(BLOCK_STREAM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (block == null) {
+                    stream.failure = new IOException("读取文档块超时");
+                    break;
+                }
+                if (block == END_OF_BLOCKS) {
+                    break;
+                }
+                converter.accept(block);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FeishuException("读取文档块被中断", e);
+        } finally {
+            stream.cancelled = true;
+        }
 
-            if (code != 0) {
-                logger.warn("获取文档块信息失败: code={}", code);
-                // 降级到raw_content API
-                String rawContent = getDocxContent(accessToken, documentId);
-                return new ContentWithImages(rawContent, images);
+        if (stream.failure != null || stream.errorCode != 0) {
+            if (stream.failure != null) {
+                logger.warn("获取文档块信息失败: {}", stream.failure.getMessage());
+            } else {
+                logger.warn("获取文档块信息失败: code={}, msg={}, page={}",
+                        stream.errorCode, stream.errorMsg, stream.pageCount);
             }
+            // 降级到raw_content API（中途失败也降级，避免返回被截断的内容）
+            String rawContent = getDocxContent(accessToken, documentId);
+            return new ContentWithImages(rawContent, new ArrayList<>(), null);
+        }
 
-            JsonNode data = json.get("data");
-            if (data != null && data.has("items")) {
-                JsonNode items = data.get("items");
-                for (JsonNode item : items) {
-                    int blockType = item.has("block_type") ? item.get("block_type").asInt() : 0;
-                    
-                    switch (blockType) {
-                        case 2: // text 文本块
-                            String text = extractTextFromBlock(item, "text");
-                            if (text != null && !text.isEmpty()) {
-                                contentBuilder.append(text).append("\n");
-                            }
-                            break;
-                        case 3: // heading1
-                            String h1 = extractTextFromBlock(item, "heading1");
-                            if (h1 != null && !h1.isEmpty()) {
-                                contentBuilder.append("# ").append(h1).append("\n");
-                            }
-                            break;
-                        case 4: // heading2
-                            String h2 = extractTextFromBlock(item, "heading2");
-                            if (h2 != null && !h2.isEmpty()) {
-                                contentBuilder.append("## ").append(h2).append("\n");
-                            }
-                            break;
-                        case 5: // heading3
-                            String h3 = extractTextFromBlock(item, "heading3");
-                            if (h3 != null && !h3.isEmpty()) {
-                                contentBuilder.append("### ").append(h3).append("\n");
-                            }
-                            break;
-                        case 6: // heading4
-                            String h4 = extractTextFromBlock(item, "heading4");
-                            if (h4 != null && !h4.isEmpty()) {
-                                contentBuilder.append("#### ").append(h4).append("\n");
-                            }
-                            break;
-                        case 7: // heading5
-                            String h5 = extractTextFromBlock(item, "heading5");
-                            if (h5 != null && !h5.isEmpty()) {
-                                contentBuilder.append("##### ").append(h5).append("\n");
-                            }
-                            break;
-                        case 8: // heading6
-                            String h6 = extractTextFromBlock(item, "heading6");
-                            if (h6 != null && !h6.isEmpty()) {
-                                contentBuilder.append("###### ").append(h6).append("\n");
-                            }
-                            break;
-                        case 9: // heading7
-                            String h7 = extractTextFromBlock(item, "heading7");
-                            if (h7 != null && !h7.isEmpty()) {
-                                contentBuilder.append("####### ").append(h7).append("\n");
-                            }
-                            break;
-                        case 10: // heading8
-                            String h8 = extractTextFromBlock(item, "heading8");
-                            if (h8 != null && !h8.isEmpty()) {
-                                contentBuilder.append("######## ").append(h8).append("\n");
-                            }
-                            break;
-                        case 11: // heading9
-                            String h9 = extractTextFromBlock(item, "heading9");
-                            if (h9 != null && !h9.isEmpty()) {
-                                contentBuilder.append("######### ").append(h9).append("\n");
-                            }
-                            break;
-                        case 12: // bullet 无序列表
-                            String bullet = extractTextFromBlock(item, "bullet");
-                            if (bullet != null && !bullet.isEmpty()) {
-                                contentBuilder.append("• ").append(bullet).append("\n");
-                            }
-                            break;
-                        case 13: // ordered 有序列表
-                            String ordered = extractTextFromBlock(item, "ordered");
-                            if (ordered != null && !ordered.isEmpty()) {
-                                contentBuilder.append("• ").append(ordered).append("\n");
-                            }
-                            break;
-                        case 14: // code 代码块
-                            String codeBlock = extractTextFromBlock(item, "code");
-                            if (codeBlock != null && !codeBlock.isEmpty()) {
-                                contentBuilder.append(codeBlock).append("\n");
-                            }
-                            break;
-                        case 15: // quote 引用
-                            String quote = extractTextFromBlock(item, "quote");
-                            if (quote != null && !quote.isEmpty()) {
-                                contentBuilder.append("> ").append(quote).append("\n");
-                            }
-                            break;
-                        case 27: // image 图片块
-                            JsonNode imageBlock = item.get("image");
-                            if (imageBlock != null && imageBlock.has("token")) {
-                                String token = imageBlock.get("token").asText();
-                                String blockId = item.has("block_id") ? item.get("block_id").asText() : "";
-                                images.add(new ImageInfo(token, blockId, imageIndex));
-                                // 在内容中插入图片占位符
-                                contentBuilder.append("{{IMAGE_PLACEHOLDER_").append(imageIndex).append("}}\n");
-                                imageIndex++;
-                            }
-                            break;
-                        default:
-                            // 其他类型块尝试提取文本（尝试多个字段）
-                            String otherText = extractTextFromBlock(item, "text");
-                            if (otherText == null || otherText.isEmpty()) {
-                                otherText = extractTextFromBlock(item, "paragraph");
-                            }
-                            if (otherText != null && !otherText.isEmpty()) {
-                                contentBuilder.append(otherText).append("\n");
-                            }
-                            break;
+        logger.info("文档解析完成: {} 页, {} 个块, {} 张图片",
+                stream.pageCount, converter.blockCount(), converter.images().size());
+        StructuredPRD structure = STRUCTURED_EXTRACTION_ENABLED ? converter.structure() : null;
+        if (structure != null) {
+            logger.info("按块结构提取: {} 个字段, {} 个接口, 剩余文本 {}/{} 字符",
+                    structure.fieldCount, structure.interfaceCount,
+                    structure.residualText.length(), converter.content().length());
+        }
+        return new ContentWithImages(converter.content(), converter.images(), structure);
+    }
+
+    /**
+     * 文档块流：生产者逐页流式读取，消费者（调用线程）逐块转换
+     * 内存中同时存在的只有队列里的若干个块，而不是整页的字符串和JsonNode树
+     */
+    private final class BlockStream {
+        final BlockingQueue<JsonNode> queue = new ArrayBlockingQueue<>(BLOCK_QUEUE_CAPACITY);
+        volatile boolean cancelled;
+        volatile IOException failure;
+        volatile int errorCode;
+        volatile String errorMsg;
+        volatile int pageCount;
+
+        void produce(String accessToken, String documentId) {
+            try {
+                String pageToken = null;
+                do {
+                    PageInfo page = streamBlockPage(accessToken, documentId, pageToken, this::offer);
+                    pageCount++;
+                    if (page.code != 0) {
+                        errorCode = page.code;
+                        errorMsg = page.msg;
+                        return;
                     }
+                    pageToken = page.hasMore ? page.pageToken : null;
+                } while (pageToken != null && !pageToken.isEmpty() && !cancelled);
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("读取文档块被中断");
+            } catch (RuntimeException e) {
+                failure = new IOException(e.getMessage(), e);
+            } finally {
+                try {
+                    offer(END_OF_BLOCKS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
+        }
 
-            logger.info("文档解析完成: {} 个文本块, {} 张图片", 
-                contentBuilder.length() > 0 ? "有" : "无", images.size());
-            return new ContentWithImages(contentBuilder.toString(), images);
-
-        } catch (IOException e) {
-            logger.warn("获取文档块信息失败: {}", e.getMessage());
-            // 降级到raw_content API
-            String rawContent = getDocxContent(accessToken, documentId);
-            return new ContentWithImages(rawContent, images);
+        /**
+         * 放入队列；消费者已放弃时直接丢弃，避免生产者永久阻塞
+         */
+        void offer(JsonNode block) throws InterruptedException {
+            while (!cancelled) {
+                if (queue.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
         }
     }
-    
+
     /**
-     * 从文档块中提取文本内容
-     * @param block 文档块节点
-     * @param fieldName 要提取文本的字段名（如 text, heading1, bullet 等）
-     */
-    private String extractTextFromBlock(JsonNode block, String fieldName) {
-        // 尝试从指定字段提取
-        JsonNode fieldNode = block.get(fieldName);
-        if (fieldNode != null && fieldNode.has("elements")) {
-            StringBuilder sb = new StringBuilder();
-            JsonNode elements = fieldNode.get("elements");
-            for (JsonNode element : elements) {
-                if (element.has("text_run")) {
-                    JsonNode textRun = element.get("text_run");
-                    if (textRun.has("content")) {
-                        sb.append(textRun.get("content").asText());
-                    }
-                } else if (element.has("mention_user")) {
-                    // 处理@用户
-                    JsonNode mentionUser = element.get("mention_user");
-                    if (mentionUser.has("user_id")) {
-                        sb.append("@用户");
-                    }
-                } else if (element.has("mention_doc")) {
-                    // 处理文档引用
-                    JsonNode mentionDoc = element.get("mention_doc");
-                    if (mentionDoc.has("title")) {
-                        sb.append("[").append(mentionDoc.get("title").asText()).append("]");
+     * 接收流式解析出的文档块
+     */
+    private interface BlockSink {
+        void accept(JsonNode block) throws InterruptedException;
+    }
+
+    /**
+     * 流式读取一页文档块（每页最多 BLOCK_PAGE_SIZE 个）
+     * 使用JsonParser逐个token读取响应体，items中的每个块单独读成树交给sink，
+     * 其余字段只保留code/msg/has_more/page_token。
+     *
+     * @param pageToken 分页标记，第一页传null
+     */
+    private PageInfo streamBlockPage(String accessToken, String documentId, String pageToken, BlockSink sink)
+            throws IOException, InterruptedException {
+        HttpUrl.Builder urlBuilder = HttpUrl.get(FeishuConfig.API_BASE_URL + "/docx/v1/documents/" + documentId + "/blocks")
+                .newBuilder()
+                .addQueryParameter("page_size", String.valueOf(BLOCK_PAGE_SIZE));
+        if (pageToken != null) {
+            urlBuilder.addQueryParameter("page_token", pageToken);
+        }
+
+        Request request = new Request.Builder()
+                .url(urlBuilder.build())
+                .addHeader("Authorization", "Bearer " + accessToken)
+                .get()
+                .build();
+
+        PageInfo page = new PageInfo();
+        rateLimiter.acquire(ApiFamily.DOCX);
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.body() == null) {
+                throw new IOException("响应体为空: HTTP " + response.code());
+            }
+            try (JsonParser parser = objectMapper.createParser(response.body().byteStream())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("响应不是JSON对象: HTTP " + response.code());
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("code".equals(field)) {
+                        page.code = parser.getValueAsInt(-1);
+                    } else if ("msg".equals(field)) {
+                        page.msg = parser.getValueAsString();
+                    } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                        readBlockData(parser, page, sink);
+                    } else {
+                        parser.skipChildren();
                     }
                 }
             }
-            return sb.toString();
         }
-            
-        // 如果指定字段不存在，尝试直接从elements提取（某些块类型）
-        if (fieldNode != null && fieldNode.has("content")) {
-            return fieldNode.get("content").asText();
+        return page;
+    }
+
+    private void readBlockData(JsonParser parser, PageInfo page, BlockSink sink)
+            throws IOException, InterruptedException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    JsonNode block = parser.readValueAsTree();
+                    sink.accept(block);
+                }
+            } else if ("has_more".equals(field)) {
+                page.hasMore = parser.getValueAsBoolean(false);
+            } else if ("page_token".equals(field)) {
+                page.pageToken = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
         }
-            
-        return null;
+    }
+
+    /**
+     * 一页文档块的分页信息（块本身已流式交给sink）
+     */
+    private static class PageInfo {
+        int code = -1;
+        String msg;
+        boolean hasMore;
+        String pageToken;
     }
     
     /**
@@ -651,10 +1156,12 @@ public class FeishuService {
     private static class ContentWithImages {
         final String content;
         final List<ImageInfo> images;
-        
-        ContentWithImages(String content, List<ImageInfo> images) {
+        final StructuredPRD structure;
+
+        ContentWithImages(String content, List<ImageInfo> images, StructuredPRD structure) {
             this.content = content;
             this.images = images;
+            this.structure = structure;
         }
     }
 
@@ -670,6 +1177,7 @@ public class FeishuService {
                 .get()
                 .build();
 
+        rateLimiter.acquire(ApiFamily.DOCX);
         try (Response response = httpClient.newCall(request).execute()) {
             String responseBody = response.body() != null ? response.body().string() : "";
 
@@ -694,51 +1202,136 @@ public class FeishuService {
     }
 
     /**
-     * 下载图片并转换为Base64
-     * 飞书docx文档图片需要正确的API调用方式
+     * 下载图片原始字节
+     * 飞书docx文档图片需要正确的API调用方式：依次尝试不带extra参数和两种extra格式，
+     * 成功的格式按文档记住，同一文档后续图片直接使用
      */
-    public String downloadImageAsBase64(String accessToken, String fileToken, String documentId)
+    public byte[] downloadImage(String accessToken, String fileToken, String documentId)
             throws FeishuException {
 
-        // 方法1: 直接使用 file_token 下载（标准方式）
         String baseUrl = FeishuConfig.API_BASE_URL + "/drive/v1/medias/" + fileToken + "/download";
 
         logger.info("尝试下载图片, token: {}", fileToken);
 
-        // 首先尝试不带extra参数
-        byte[] imageData = tryDownload(accessToken, baseUrl);
+        for (MediaExtra extra : mediaExtraOrder(documentId)) {
+            HttpUrl.Builder urlBuilder = HttpUrl.get(baseUrl).newBuilder();
+            String extraJson = extra.toJson(documentId);
+            if (extraJson != null) {
+                urlBuilder.addQueryParameter("extra", extraJson);
+                logger.info("尝试带extra参数下载({})", extra);
+            }
+            byte[] imageData = tryDownload(accessToken, urlBuilder.build().toString());
+            if (imageData != null && imageData.length > 0) {
+                rememberMediaExtra(documentId, extra);
+                logger.info("图片下载成功，大小: {} bytes", imageData.length);
+                return imageData;
+            }
+        }
 
-        // 如果失败，尝试带extra参数
-        if (imageData == null && documentId != null && !documentId.isEmpty()) {
-            try {
-                // 尝试格式1: 使用 obj_type 和 obj_token
-                String extra1 = String.format("{\"obj_type\":\"docx\",\"obj_token\":\"%s\"}", documentId);
-                String url1 = baseUrl + "?extra=" + java.net.URLEncoder.encode(extra1, "UTF-8");
-                logger.info("尝试带extra参数下载(格式1)");
-                imageData = tryDownload(accessToken, url1);
-
-                // 如果格式1失败，尝试格式2
-                if (imageData == null) {
-                    String extra2 = String.format("{\"doc_token\":\"%s\"}", documentId);
-                    String url2 = baseUrl + "?extra=" + java.net.URLEncoder.encode(extra2, "UTF-8");
-                    logger.info("尝试带extra参数下载(格式2)");
-                    imageData = tryDownload(accessToken, url2);
+        throw new FeishuException("下载图片失败: 所有尝试均失败");
+    }
+
+    /**
+     * 批量获取图片临时下载地址
+     * GET /drive/v1/medias/batch_get_tmp_download_url，一次最多5个file_token；
+     * 按文档记住的extra格式优先，未解析出的token再用其他格式重试
+     *
+     * @return file_token -> 临时下载地址；解析失败的token不在结果中
+     */
+    Map<String, String> getTmpDownloadUrls(String accessToken, List<String> fileTokens, String documentId) {
+        Map<String, String> result = new HashMap<>();
+        List<String> remaining = new ArrayList<>(fileTokens);
+        for (MediaExtra extra : mediaExtraOrder(documentId)) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            Map<String, String> urls = requestTmpDownloadUrls(accessToken, remaining, extra, documentId);
+            if (!urls.isEmpty()) {
+                rememberMediaExtra(documentId, extra);
+                result.putAll(urls);
+                remaining.removeAll(urls.keySet());
+            }
+        }
+        if (!remaining.isEmpty()) {
+            logger.info("{} 个图片未获取到临时下载地址，将逐个下载", remaining.size());
+        }
+        return result;
+    }
+
+    private Map<String, String> requestTmpDownloadUrls(String accessToken, List<String> fileTokens,
+                                                       MediaExtra extra, String documentId) {
+        HttpUrl.Builder urlBuilder = HttpUrl.get(FeishuConfig.API_BASE_URL
+                + "/drive/v1/medias/batch_get_tmp_download_url").newBuilder();
+        for (String token : fileTokens) {
+            urlBuilder.addQueryParameter("file_tokens", token);
+        }
+        String extraJson = extra.toJson(documentId);
+        if (extraJson != null) {
+            urlBuilder.addQueryParameter("extra", extraJson);
+        }
+
+        Request request = new Request.Builder()
+                .url(urlBuilder.build())
+                .addHeader("Authorization", "Bearer " + accessToken)
+                .get()
+                .build();
+
+        Map<String, String> urls = new HashMap<>();
+        rateLimiter.acquire(ApiFamily.DRIVE_MEDIA);
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            if (response.code() == 429) {
+                rateLimiter.onRateLimited(ApiFamily.DRIVE_MEDIA, 1000);
+                return urls;
+            }
+
+            JsonNode json = objectMapper.readTree(responseBody);
+            int code = json.has("code") ? json.get("code").asInt() : -1;
+            if (code != 0) {
+                logger.debug("批量获取临时下载地址失败({}): code={}", extra, code);
+                return urls;
+            }
+
+            JsonNode items = json.path("data").path("tmp_download_urls");
+            for (JsonNode item : items) {
+                String token = item.path("file_token").asText(null);
+                String url = item.path("tmp_download_url").asText(null);
+                if (token != null && url != null && !url.isEmpty()) {
+                    urls.put(token, url);
                 }
-            } catch (Exception e) {
-                logger.warn("构建extra参数失败: {}", e.getMessage());
             }
+            logger.info("批量获取临时下载地址: {}/{} 个 ({})", urls.size(), fileTokens.size(), extra);
+        } catch (IOException e) {
+            logger.debug("批量获取临时下载地址异常: {}", e.getMessage());
         }
+        return urls;
+    }
 
-        if (imageData != null && imageData.length > 0) {
-            logger.info("图片下载成功，大小: {} bytes", imageData.length);
-            return Base64.getEncoder().encodeToString(imageData);
+    /**
+     * extra格式尝试顺序：该文档上次成功的格式排在最前
+     */
+    private List<MediaExtra> mediaExtraOrder(String documentId) {
+        if (documentId == null || documentId.isEmpty()) {
+            return Collections.singletonList(MediaExtra.NONE);
+        }
+        List<MediaExtra> order = new ArrayList<>(Arrays.asList(MediaExtra.values()));
+        MediaExtra preferred = mediaExtraByDocument.get(documentId);
+        if (preferred != null) {
+            order.remove(preferred);
+            order.add(0, preferred);
         }
+        return order;
+    }
 
-        throw new FeishuException("下载图片失败: 所有尝试均失败");
+    private void rememberMediaExtra(String documentId, MediaExtra extra) {
+        if (documentId != null && !documentId.isEmpty()) {
+            mediaExtraByDocument.put(documentId, extra);
+        }
     }
 
     /**
      * 尝试下载图片，包含重试机制和频率控制
+     * 发送前从限流器取得许可；服务端仍返回频率限制时暂停整个DRIVE_MEDIA接口族，下一次取许可时统一等待
      * 
      * @return 图片数据，失败返回null
      */
@@ -753,6 +1346,10 @@ public class FeishuService {
                     .get()
                     .build();
 
+            rateLimiter.acquire(ApiFamily.DRIVE_MEDIA);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
             try (Response response = httpClient.newCall(request).execute()) {
                 if (response.isSuccessful()) {
                     byte[] data = response.body() != null ? response.body().bytes() : new byte[0];
@@ -768,11 +1365,13 @@ public class FeishuService {
                     // 检查是否是频率限制错误
                     if (response.code() == 429 || (response.code() == 400 && errorBody.contains("frequency limit"))) {
                         if (attempt < maxRetries) {
-                            // 指数退避
-                            long sleepTime = retryDelayMs * (long)Math.pow(2, attempt - 1);
-                            logger.warn("请求频率受限，{}秒后重试 (第{}次尝试)", sleepTime / 1000.0, attempt + 1);
-                            Thread.sleep(sleepTime);
+                            // 指数退避：暂停该接口族，所有下载线程一起等待
+                            long pauseMs = retryDelayMs * (long) Math.pow(2, attempt - 1);
+                            rateLimiter.onRateLimited(ApiFamily.DRIVE_MEDIA, pauseMs);
                         }
+                    } else if (response.code() >= 400 && response.code() < 500) {
+                        // 非频率限制的4xx（如参数格式不对）重试无意义，交给调用方换参数
+                        break;
                     }
                 }
             } catch (IOException e) {
@@ -787,16 +1386,45 @@ public class FeishuService {
                         break;
                     }
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
             }
         }
         return null;
     }
 
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     // ========== 内部类 ==========
 
+    /**
+     * 素材下载的extra参数格式
+     */
+    private enum MediaExtra {
+        NONE,       // 不带extra参数（标准方式）
+        OBJ_TOKEN,  // {"obj_type":"docx","obj_token":...}
+        DOC_TOKEN;  // {"doc_token":...}
+
+        String toJson(String documentId) {
+            switch (this) {
+                case OBJ_TOKEN:
+                    return String.format("{\"obj_type\":\"docx\",\"obj_token\":\"%s\"}", documentId);
+                case DOC_TOKEN:
+                    return String.format("{\"doc_token\":\"%s\"}", documentId);
+                default:
+                    return null;
+            }
+        }
+    }
+
     /**
      * 文档信息
      */
@@ -817,7 +1445,9 @@ public class FeishuService {
         public final String token;
         public final String blockId;
         public final int position; // 图片在文档中的位置索引
-        public String base64Data;
+        public byte[] data; // 图片原始字节，识别完成后释放
+        public Long perceptualHash; // 解码后像素的dHash，用于近似图片去重
+        public ImagePreprocessor.ProcessedImage preparedImage; // 压缩后用于视觉模型的图片
         public String description;
 
         public ImageInfo(String token, String blockId, int position) {
@@ -827,46 +1457,131 @@ public class FeishuService {
         }
     }
 
+    /**
+     * 图片识别进度回调
+     */
+    public interface ImageProgressListener {
+        /**
+         * 一张图片处理完毕（在流水线线程中调用，应尽快返回）
+         *
+         * @param index       图片索引（对应 {{IMAGE_PLACEHOLDER_index}}）
+         * @param description 图片描述
+         */
+        void onImageDescribed(int index, String description);
+    }
+
     /**
      * 文档内容
      */
     public static class DocumentContent {
+        private static final String PLACEHOLDER_PREFIX = "{{IMAGE_PLACEHOLDER_";
+        private static final String PLACEHOLDER_SUFFIX = "}}";
+
         public final String textContent;
         public final List<ImageInfo> images;
-        // 图片占位符映射：占位符 -> 图片索引
-        private final Map<String, Integer> imagePlaceholders;
+        // 占位符索引：按出现顺序记录每个占位符在文本中的起止位置和对应图片索引
+        private final int[] placeholderStarts;
+        private final int[] placeholderEnds;
+        private final int[] placeholderImages;
+        String documentId; // 实际文档ID（wiki已解析为obj_token）
+        public String revisionId; // 文档修订号（docx文档）
+        public boolean fromCache; // 是否来自文档缓存
+        public StructuredPRD structure; // 按块类型直接提取的PRD骨架（docx文档），可为null
 
         public DocumentContent(String textContent, List<ImageInfo> images) {
             this.textContent = textContent;
             this.images = images;
-            this.imagePlaceholders = new HashMap<>();
-            // 构建占位符映射
-            for (int i = 0; i < images.size(); i++) {
-                imagePlaceholders.put("{{IMAGE_PLACEHOLDER_" + i + "}}", i);
+            // 扫描一遍文本，建立占位符索引
+            List<int[]> found = new ArrayList<>();
+            int from = 0;
+            while (textContent != null) {
+                int start = textContent.indexOf(PLACEHOLDER_PREFIX, from);
+                if (start < 0) {
+                    break;
+                }
+                int digitsStart = start + PLACEHOLDER_PREFIX.length();
+                int digitsEnd = digitsStart;
+                while (digitsEnd < textContent.length() && Character.isDigit(textContent.charAt(digitsEnd))) {
+                    digitsEnd++;
+                }
+                if (digitsEnd > digitsStart && digitsEnd - digitsStart < 10
+                        && textContent.startsWith(PLACEHOLDER_SUFFIX, digitsEnd)) {
+                    int imageIndex = Integer.parseInt(textContent.substring(digitsStart, digitsEnd));
+                    if (imageIndex < images.size()) {
+                        found.add(new int[] { start, digitsEnd + PLACEHOLDER_SUFFIX.length(), imageIndex });
+                    }
+                }
+                from = digitsStart;
             }
+            this.placeholderStarts = new int[found.size()];
+            this.placeholderEnds = new int[found.size()];
+            this.placeholderImages = new int[found.size()];
+            for (int i = 0; i < found.size(); i++) {
+                placeholderStarts[i] = found.get(i)[0];
+                placeholderEnds[i] = found.get(i)[1];
+                placeholderImages[i] = found.get(i)[2];
+            }
+        }
+
+        /**
+         * 返回标记为缓存命中的副本（共享文本和图片信息）
+         */
+        DocumentContent asCached() {
+            DocumentContent copy = new DocumentContent(textContent, images);
+            copy.documentId = documentId;
+            copy.revisionId = revisionId;
+            copy.structure = structure;
+            copy.fromCache = true;
+            return copy;
+        }
+
+        /**
+         * 实际文档ID（wiki已解析为obj_token）
+         */
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        /**
+         * 是否还有未描述的图片
+         */
+        public boolean hasPendingImages() {
+            for (ImageInfo img : images) {
+                if (img.description == null) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
          * 获取完整内容（包含图片描述）
-         * 图片描述会被插入到PRD原文中对应的位置
+         * 图片描述会被插入到PRD原文中对应的位置；按占位符索引一次拼接完成
          */
         public String getFullContent() {
-            String result = textContent;
-            
-            // 替换所有图片占位符为实际的图片描述
-            for (int i = 0; i < images.size(); i++) {
-                ImageInfo img = images.get(i);
-                String placeholder = "{{IMAGE_PLACEHOLDER_" + i + "}}";
-                String imageContent;
-                if (img.description != null && !img.description.isEmpty()) {
-                    imageContent = String.format("\n\n--- 图片内容 %d ---\n%s\n--- 图片内容结束 ---\n\n", i + 1, img.description);
-                } else {
-                    imageContent = String.format("\n\n[图片 %d]: (图片内容待识别)\n\n", i + 1);
-                }
-                result = result.replace(placeholder, imageContent);
+            if (placeholderStarts.length == 0) {
+                return textContent;
+            }
+            StringBuilder result = new StringBuilder(textContent.length() + images.size() * 256);
+            int last = 0;
+            for (int i = 0; i < placeholderStarts.length; i++) {
+                result.append(textContent, last, placeholderStarts[i]);
+                int imageIndex = placeholderImages[i];
+                result.append(formatImageContent(imageIndex, images.get(imageIndex).description));
+                last = placeholderEnds[i];
             }
+            result.append(textContent, last, textContent.length());
+            return result.toString();
+        }
 
-            return result;
+        /**
+         * 图片占位符替换后的文本
+         */
+        public static String formatImageContent(int index, String description) {
+            if (description != null && !description.isEmpty()) {
+                return String.format("\n\n--- 图片内容 %d ---\n%s\n--- 图片内容结束 ---\n\n", index + 1, description);
+            }
+            return String.format("\n\n[图片 %d]: (图片内容待识别)\n\n", index + 1);
         }
     }
 }
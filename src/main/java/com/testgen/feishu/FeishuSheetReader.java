@@ -0,0 +1,316 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testgen.concurrent.SharedExecutors;
+import com.testgen.feishu.FeishuRateLimiter.ApiFamily;
+import com.testgen.reference.RowReader;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 飞书电子表格分页读取
+ * 按 FEISHU_SHEET_PAGE_ROWS 行一页读取单元格，调用方消费当前页时在IO线程池中预取下一页，
+ * 内存中最多保留两页。
+ *
+ * 表格链接形如 https://xxx.feishu.cn/sheets/{spreadsheetToken}?sheet={sheetId}，未指定sheet时读取第一个工作表；
+ * range 可选，格式为 [sheetId!]A1:H 或 [sheetId!]A1:H20000，省略结束行时读到工作表末尾。
+ */
+public class FeishuSheetReader implements RowReader {
+    private static final Logger logger = LoggerFactory.getLogger(FeishuSheetReader.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int PAGE_ROWS = parseIntEnv("FEISHU_SHEET_PAGE_ROWS", 500);
+    // 单次读取的单元格上限（飞书接口限制返回数据不超过10MB，按列数收缩每页行数）
+    private static final int MAX_CELLS_PER_PAGE = 50000;
+
+    private static final Pattern SHEET_URL_PATTERN = Pattern.compile(
+            "https?://[\\w.-]+\\.feishu\\.cn/sheets/([\\w-]+)");
+    private static final Pattern RANGE_PATTERN = Pattern.compile(
+            "^(?:([\\w-]+)!)?([A-Za-z]+)(\\d+)(?::([A-Za-z]+)(\\d+)?)?$");
+
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+
+    private final FeishuRateLimiter rateLimiter = FeishuRateLimiter.getInstance();
+    private final String spreadsheetToken;
+    private final String sheetId;
+    private final int firstColumn;  // 0起始
+    private final int lastColumn;   // 含
+    private final int lastRow;      // 1起始，含
+    private final int pageRows;
+
+    private List<List<String>> page = Collections.emptyList();
+    private int pageIndex;
+    private int nextPageStart;      // 下一页的起始行（1起始）
+    private CompletableFuture<List<List<String>>> prefetch;
+    private int pagesRead;
+
+    /**
+     * 打开表格：查询工作表信息，并开始读取第一页
+     *
+     * @param url   电子表格链接
+     * @param range 读取范围，可为null
+     */
+    public FeishuSheetReader(String url, String range) throws FeishuException {
+        Matcher m = url != null ? SHEET_URL_PATTERN.matcher(url) : null;
+        if (m == null || !m.find()) {
+            throw new FeishuException("无法识别的飞书表格链接: " + url);
+        }
+        this.spreadsheetToken = m.group(1);
+
+        HttpUrl parsedUrl = HttpUrl.parse(url);
+        String requestedSheet = parsedUrl != null ? parsedUrl.queryParameter("sheet") : null;
+        int startColumn = 0;
+        int startRow = 1;
+        int endColumn = -1;
+        int endRow = -1;
+        if (range != null && !range.trim().isEmpty()) {
+            Matcher r = RANGE_PATTERN.matcher(range.trim());
+            if (!r.matches()) {
+                throw new FeishuException("无法识别的表格范围: " + range + "（示例: A1:H 或 A1:H20000）");
+            }
+            if (r.group(1) != null) {
+                requestedSheet = r.group(1);
+            }
+            startColumn = columnIndex(r.group(2));
+            startRow = Math.max(1, Integer.parseInt(r.group(3)));
+            if (r.group(4) != null) {
+                endColumn = columnIndex(r.group(4));
+            }
+            if (r.group(5) != null) {
+                endRow = Integer.parseInt(r.group(5));
+            }
+        }
+
+        JsonNode sheet = findSheet(requestedSheet);
+        this.sheetId = sheet.path("sheet_id").asText();
+        JsonNode grid = sheet.path("grid_properties");
+        int columnCount = Math.max(1, grid.path("column_count").asInt(26));
+        int rowCount = grid.path("row_count").asInt(0);
+
+        this.firstColumn = startColumn;
+        this.lastColumn = endColumn >= 0 ? endColumn : columnCount - 1;
+        this.lastRow = endRow >= 0 ? Math.min(endRow, rowCount) : rowCount;
+        if (lastColumn < firstColumn) {
+            throw new FeishuException("表格范围的结束列不能在起始列之前: " + range);
+        }
+        int columns = lastColumn - firstColumn + 1;
+        this.pageRows = Math.max(1, Math.min(PAGE_ROWS, MAX_CELLS_PER_PAGE / columns));
+        this.nextPageStart = startRow;
+
+        System.out.println("[飞书表格] 读取 " + spreadsheetToken + " 工作表 " + sheetId + " 第" + startRow + "-"
+                + lastRow + "行，" + columnName(firstColumn) + "-" + columnName(lastColumn) + "列，每页 " + pageRows + " 行");
+        prefetchNextPage();
+    }
+
+    @Override
+    public List<String> nextRow() throws IOException {
+        while (pageIndex >= page.size()) {
+            if (prefetch == null) {
+                return null;
+            }
+            try {
+                page = prefetch.join();
+            } catch (CompletionException e) {
+                prefetch = null;
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("读取飞书表格失败: " + cause.getMessage(), cause);
+            }
+            pageIndex = 0;
+            pagesRead++;
+            // 返回行数不足一页或整页为空行，说明后面已没有数据
+            prefetch = null;
+            if (page.size() >= pageRows && !isBlank(page)) {
+                prefetchNextPage();
+            }
+        }
+        return page.get(pageIndex++);
+    }
+
+    private static boolean isBlank(List<List<String>> rows) {
+        for (List<String> row : rows) {
+            for (String cell : row) {
+                if (!cell.trim().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在IO线程池中读取下一页
+     */
+    private void prefetchNextPage() {
+        if (nextPageStart > lastRow) {
+            prefetch = null;
+            return;
+        }
+        int start = nextPageStart;
+        int end = Math.min(lastRow, start + pageRows - 1);
+        nextPageStart = end + 1;
+        prefetch = CompletableFuture.supplyAsync(() -> {
+            try {
+                return readPage(start, end);
+            } catch (FeishuException e) {
+                throw new CompletionException(e);
+            }
+        }, SharedExecutors.io());
+    }
+
+    /**
+     * GET /sheets/v2/spreadsheets/{token}/values/{sheetId}!A1:H500
+     */
+    private List<List<String>> readPage(int startRow, int endRow) throws FeishuException {
+        String range = sheetId + "!" + columnName(firstColumn) + startRow + ":" + columnName(lastColumn) + endRow;
+        HttpUrl url = HttpUrl.parse(FeishuConfig.API_BASE_URL).newBuilder()
+                .addPathSegments("sheets/v2/spreadsheets")
+                .addPathSegment(spreadsheetToken)
+                .addPathSegment("values")
+                .addPathSegment(range)
+                .addQueryParameter("valueRenderOption", "ToString")
+                .build();
+        JsonNode data = get(url, "读取表格数据");
+        JsonNode values = data.path("valueRange").path("values");
+        List<List<String>> rows = new ArrayList<>(values.size());
+        for (JsonNode rowNode : values) {
+            List<String> row = new ArrayList<>(rowNode.size());
+            for (JsonNode cell : rowNode) {
+                row.add(cellText(cell));
+            }
+            rows.add(row);
+        }
+        logger.debug("飞书表格 {} 读取第{}-{}行，返回 {} 行", spreadsheetToken, startRow, endRow, rows.size());
+        return rows;
+    }
+
+    /**
+     * GET /sheets/v3/spreadsheets/{token}/sheets/query，按sheetId查找工作表，未指定时取第一个
+     */
+    private JsonNode findSheet(String requestedSheet) throws FeishuException {
+        HttpUrl url = HttpUrl.parse(FeishuConfig.API_BASE_URL).newBuilder()
+                .addPathSegments("sheets/v3/spreadsheets")
+                .addPathSegment(spreadsheetToken)
+                .addPathSegments("sheets/query")
+                .build();
+        JsonNode sheets = get(url, "查询工作表").path("sheets");
+        if (!sheets.isArray() || sheets.size() == 0) {
+            throw new FeishuException("飞书表格中没有工作表");
+        }
+        if (requestedSheet == null || requestedSheet.isEmpty()) {
+            return sheets.get(0);
+        }
+        for (JsonNode sheet : sheets) {
+            if (requestedSheet.equals(sheet.path("sheet_id").asText())
+                    || requestedSheet.equals(sheet.path("title").asText())) {
+                return sheet;
+            }
+        }
+        throw new FeishuException("飞书表格中未找到工作表: " + requestedSheet);
+    }
+
+    private JsonNode get(HttpUrl url, String action) throws FeishuException {
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", "Bearer " + FeishuTokenManager.getInstance().getToken())
+                .get()
+                .build();
+        rateLimiter.acquire(ApiFamily.SHEETS);
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            JsonNode json = objectMapper.readTree(responseBody);
+            int code = json.has("code") ? json.get("code").asInt() : -1;
+            if (code != 0) {
+                String msg = json.has("msg") ? json.get("msg").asText() : "未知错误";
+                throw new FeishuException(action + "失败: " + msg + " (code: " + code + ")");
+            }
+            return json.path("data");
+        } catch (IOException e) {
+            throw new FeishuException(action + "请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 单元格值转文本：字符串/数字直接取值，富文本（链接、@人等分段数组）拼接各段text
+     */
+    static String cellText(JsonNode cell) {
+        if (cell == null || cell.isNull() || cell.isMissingNode()) {
+            return "";
+        }
+        if (cell.isValueNode()) {
+            return cell.asText();
+        }
+        if (cell.isArray()) {
+            StringBuilder sb = new StringBuilder();
+            for (JsonNode segment : cell) {
+                sb.append(cellText(segment));
+            }
+            return sb.toString();
+        }
+        JsonNode text = cell.has("text") ? cell.get("text") : cell.get("link");
+        return text != null ? text.asText() : "";
+    }
+
+    /**
+     * 列名转0起始列号，如 "AB" → 27
+     */
+    static int columnIndex(String letters) {
+        int column = 0;
+        for (char c : letters.toUpperCase().toCharArray()) {
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * 0起始列号转列名，如 27 → "AB"
+     */
+    static String columnName(int index) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = index + 1; n > 0; n = (n - 1) / 26) {
+            sb.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return sb.toString();
+    }
+
+    public int getPagesRead() {
+        return pagesRead;
+    }
+
+    @Override
+    public void close() {
+        if (prefetch != null) {
+            prefetch.cancel(false);
+            prefetch = null;
+        }
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.testgen.concurrent.SharedExecutors;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 飞书 tenant_access_token 管理
+ * <ul>
+ *   <li>当前令牌保存为不可变快照（AtomicReference），读取有效令牌时不加锁、不阻塞</li>
+ *   <li>到期前 REFRESH_AHEAD 进入刷新窗口，由定时任务或第一个读到该快照的请求在后台刷新</li>
+ *   <li>同一时刻只有一个刷新请求在进行，其余需要等待新令牌的调用方共享同一个结果</li>
+ *   <li>修改App ID/Secret时使当前令牌失效，旧凭证的刷新结果不会被采用</li>
+ * </ul>
+ */
+public final class FeishuTokenManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeishuTokenManager.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 到期前5分钟开始刷新；到期前30秒起不再使用旧令牌
+    private static final long REFRESH_AHEAD_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long EXPIRY_SAFETY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // 后台刷新失败后的重试间隔
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long REFRESH_WAIT_SECONDS = 30;
+
+    private static final FeishuTokenManager INSTANCE = new FeishuTokenManager();
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(15, TimeUnit.SECONDS)
+            .build();
+
+    private final AtomicReference<TokenSnapshot> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<TokenSnapshot>> inFlight = new AtomicReference<>();
+    // 凭证版本号，修改凭证或清除缓存时递增
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+
+    private FeishuTokenManager() {
+    }
+
+    public static FeishuTokenManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取有效的访问令牌
+     * 当前令牌有效时立即返回（处于刷新窗口时顺带触发后台刷新）；
+     * 没有可用令牌时等待刷新完成，并发调用只会发出一次请求。
+     */
+    public String getToken() throws FeishuException {
+        TokenSnapshot snapshot = validSnapshot();
+        if (snapshot != null) {
+            if (System.currentTimeMillis() >= snapshot.refreshAt) {
+                refreshInBackground();
+            }
+            return snapshot.token;
+        }
+        waits.increment();
+        return refreshAndWait().token;
+    }
+
+    /**
+     * 返回当前有效令牌，不触发刷新；没有时返回null
+     */
+    public String getCachedToken() {
+        TokenSnapshot snapshot = validSnapshot();
+        return snapshot != null ? snapshot.token : null;
+    }
+
+    /**
+     * 使用外部获取的令牌
+     */
+    public void install(String token, int expireSeconds) {
+        TokenSnapshot snapshot = new TokenSnapshot(token, expireSeconds, generation.get());
+        current.set(snapshot);
+        scheduleRefresh(snapshot, snapshot.refreshAt - System.currentTimeMillis());
+    }
+
+    /**
+     * 使当前令牌失效（凭证变更时调用）
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        current.set(null);
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        TokenSnapshot snapshot = current.get();
+        m.put("hasToken", snapshot != null);
+        m.put("expiresInSeconds", snapshot != null
+                ? Math.max(0, (snapshot.expiresAt - System.currentTimeMillis()) / 1000) : 0);
+        m.put("refreshes", refreshes.sum());
+        m.put("backgroundRefreshes", backgroundRefreshes.sum());
+        m.put("refreshFailures", refreshFailures.sum());
+        m.put("waitsForRefresh", waits.sum());
+        m.put("refreshInFlight", inFlight.get() != null);
+        return m;
+    }
+
+    private TokenSnapshot validSnapshot() {
+        TokenSnapshot snapshot = current.get();
+        if (snapshot != null && snapshot.generation == generation.get()
+                && System.currentTimeMillis() < snapshot.usableUntil) {
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * 发起（或加入进行中的）刷新并等待结果；发起方在当前线程执行请求
+     */
+    private TokenSnapshot refreshAndWait() throws FeishuException {
+        while (true) {
+            CompletableFuture<TokenSnapshot> existing = inFlight.get();
+            if (existing != null) {
+                return await(existing);
+            }
+            CompletableFuture<TokenSnapshot> mine = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, mine)) {
+                doRefresh(mine);
+                return await(mine);
+            }
+        }
+    }
+
+    /**
+     * 后台刷新；已有刷新在进行时不重复发起
+     * 令牌请求可能因限流和网络超时阻塞数十秒，在IO线程池中执行，不占用单线程的定时线程
+     */
+    private void refreshInBackground() {
+        CompletableFuture<TokenSnapshot> mine = new CompletableFuture<>();
+        if (inFlight.compareAndSet(null, mine)) {
+            backgroundRefreshes.increment();
+            try {
+                SharedExecutors.io().execute(() -> doRefresh(mine));
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭，直接在当前线程刷新
+                doRefresh(mine);
+            }
+        }
+    }
+
+    private void doRefresh(CompletableFuture<TokenSnapshot> future) {
+        long gen = generation.get();
+        try {
+            TokenSnapshot snapshot = fetchToken(gen);
+            refreshes.increment();
+            // 刷新期间凭证被修改时丢弃结果
+            if (gen == generation.get()) {
+                current.set(snapshot);
+                scheduleRefresh(snapshot, snapshot.refreshAt - System.currentTimeMillis());
+            }
+            future.complete(snapshot);
+        } catch (Throwable e) {
+            refreshFailures.increment();
+            logger.warn("刷新飞书访问令牌失败: {}", e.getMessage());
+            // 旧令牌仍可用时稍后重试
+            TokenSnapshot old = validSnapshot();
+            if (old != null) {
+                scheduleRefresh(old, RETRY_DELAY_MILLIS);
+            }
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.compareAndSet(future, null);
+        }
+    }
+
+    /**
+     * 到期前定时刷新；定时线程只负责发起，请求本身在IO线程池中执行。届时快照已被替换则什么也不做
+     */
+    private void scheduleRefresh(TokenSnapshot snapshot, long delayMillis) {
+        try {
+            SharedExecutors.scheduler().schedule(() -> {
+                if (current.get() == snapshot) {
+                    refreshInBackground();
+                }
+            }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 服务关闭中，不再预约刷新
+        }
+    }
+
+    private TokenSnapshot await(CompletableFuture<TokenSnapshot> future) throws FeishuException {
+        try {
+            return future.get(REFRESH_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof FeishuException) {
+                throw (FeishuException) cause;
+            }
+            throw new FeishuException("获取访问令牌失败: " + cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new FeishuException("获取访问令牌超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FeishuException("获取访问令牌被中断", e);
+        }
+    }
+
+    /**
+     * 调用 /auth/v3/tenant_access_token/internal 获取新令牌
+     */
+    private TokenSnapshot fetchToken(long gen) throws FeishuException {
+        // 检查配置
+        if (!FeishuConfig.isConfigured()) {
+            throw new FeishuException("飞书应用未配置，请设置 App ID 和 App Secret");
+        }
+
+        String url = FeishuConfig.API_BASE_URL + "/auth/v3/tenant_access_token/internal";
+
+        String jsonBody;
+        try {
+            Map<String, String> credentials = new LinkedHashMap<>();
+            credentials.put("app_id", FeishuConfig.getAppId());
+            credentials.put("app_secret", FeishuConfig.getAppSecret());
+            jsonBody = objectMapper.writeValueAsString(credentials);
+        } catch (IOException e) {
+            throw new FeishuException("构建令牌请求失败: " + e.getMessage(), e);
+        }
+
+        RequestBody body = RequestBody.create(
+                jsonBody,
+                MediaType.parse("application/json; charset=utf-8"));
+
+        Request request = new Request.Builder()
+                .url(url)
+                .post(body)
+                .build();
+
+        FeishuRateLimiter.getInstance().acquire(FeishuRateLimiter.ApiFamily.AUTH);
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+
+            JsonNode json = objectMapper.readTree(responseBody);
+            int code = json.has("code") ? json.get("code").asInt() : -1;
+
+            if (code != 0) {
+                String msg = json.has("msg") ? json.get("msg").asText() : "未知错误";
+                throw new FeishuException("获取访问令牌失败: " + msg + " (code: " + code + ")");
+            }
+
+            String token = json.get("tenant_access_token").asText();
+            int expire = json.get("expire").asInt();
+
+            logger.info("获取飞书访问令牌成功，有效期: {}秒", expire);
+            return new TokenSnapshot(token, expire, gen);
+
+        } catch (IOException e) {
+            throw new FeishuException("网络请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 令牌快照（不可变）
+     */
+    private static final class TokenSnapshot {
+        final String token;
+        final long expiresAt;
+        final long usableUntil;
+        final long refreshAt;
+        final long generation;
+
+        TokenSnapshot(String token, int expireSeconds, long generation) {
+            long now = System.currentTimeMillis();
+            this.token = token;
+            this.expiresAt = now + expireSeconds * 1000L;
+            this.usableUntil = expiresAt - EXPIRY_SAFETY_MILLIS;
+            this.refreshAt = Math.max(now, expiresAt - REFRESH_AHEAD_MILLIS);
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 图片描述缓存
+ * 同一张图片在文档多次修订之间、不同文档之间经常被重复使用，
+ * 这里按飞书文件token和解码后像素的感知哈希(dHash)缓存视觉模型给出的描述，
+ * 命中时跳过下载和/或视觉模型调用。
+ *
+ * 缓存持久化到磁盘（JSON），按条目数和描述总字节数做LRU淘汰。
+ */
+public final class ImageDescriptionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDescriptionCache.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int FILE_VERSION = 1;
+
+    private static final ImageDescriptionCache INSTANCE = new ImageDescriptionCache();
+
+    private final boolean enabled;
+    private final Path cacheFile;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxHashDistance;
+
+    // LRU顺序（accessOrder=true），key为条目ID
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // 文件token -> 条目ID（一个条目可以有多个token别名）
+    private final Map<String, String> tokenIndex = new HashMap<>();
+    private final Object fileLock = new Object();
+    private long totalBytes;
+    private boolean dirty;
+    private boolean loaded;
+
+    private final LongAdder tokenHits = new LongAdder();
+    private final LongAdder hashHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ImageDescriptionCache() {
+        this.enabled = !"false".equalsIgnoreCase(System.getenv("IMAGE_CACHE_ENABLED"));
+        String file = System.getenv("IMAGE_CACHE_FILE");
+        this.cacheFile = file != null && !file.isEmpty()
+                ? Paths.get(file)
+                : Paths.get(System.getProperty("user.home"), ".prd-testgen", "image-description-cache.json");
+        this.maxEntries = parseIntEnv("IMAGE_CACHE_MAX_ENTRIES", 2000);
+        this.maxBytes = parseIntEnv("IMAGE_CACHE_MAX_BYTES", 8 * 1024 * 1024);
+        this.maxHashDistance = parseIntEnv("IMAGE_CACHE_HASH_DISTANCE", 5);
+    }
+
+    public static ImageDescriptionCache getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 按飞书文件token查找描述（命中时无需下载图片）
+     */
+    public synchronized String findByToken(String fileToken) {
+        if (!enabled || fileToken == null) {
+            return null;
+        }
+        ensureLoaded();
+        String id = tokenIndex.get(fileToken);
+        Entry entry = id != null ? entries.get(id) : null;
+        if (entry == null) {
+            return null;
+        }
+        touch(entry);
+        tokenHits.increment();
+        return entry.description;
+    }
+
+    /**
+     * 按感知哈希查找近似图片的描述（汉明距离不超过阈值），
+     * 命中时把新token登记为该条目的别名，下次可以直接按token命中
+     */
+    public synchronized String findByHash(String fileToken, Long hash) {
+        if (!enabled || hash == null) {
+            if (enabled) {
+                misses.increment();
+            }
+            return null;
+        }
+        ensureLoaded();
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            if (entry.hash == null) {
+                continue;
+            }
+            int distance = Long.bitCount(entry.hash ^ hash);
+            if (distance <= maxHashDistance && distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+                if (distance == 0) {
+                    break;
+                }
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        // 通过get刷新LRU顺序
+        entries.get(best.id);
+        touch(best);
+        if (fileToken != null && best.tokens.add(fileToken)) {
+            tokenIndex.put(fileToken, best.id);
+            totalBytes += fileToken.length() * 2L;
+        }
+        hashHits.increment();
+        logger.debug("图片感知哈希命中: token={}, distance={}", fileToken, bestDistance);
+        return best.description;
+    }
+
+    /**
+     * 写入一条识别结果
+     */
+    public synchronized void put(String fileToken, Long hash, String description) {
+        if (!enabled || description == null || description.isEmpty()
+                || (fileToken == null && hash == null)) {
+            return;
+        }
+        ensureLoaded();
+        String id = fileToken != null ? tokenIndex.get(fileToken) : Long.toHexString(hash);
+        Entry entry = id != null ? entries.get(id) : null;
+        if (entry == null) {
+            entry = new Entry(fileToken != null ? fileToken : id, hash);
+            entries.put(entry.id, entry);
+        } else {
+            totalBytes -= entry.sizeBytes();
+            if (hash != null) {
+                entry.hash = hash;
+            }
+        }
+        if (fileToken != null) {
+            entry.tokens.add(fileToken);
+            tokenIndex.put(fileToken, entry.id);
+        }
+        entry.description = description;
+        entry.lastAccess = System.currentTimeMillis();
+        totalBytes += entry.sizeBytes();
+        puts.increment();
+        dirty = true;
+        evictIfNeeded();
+    }
+
+    /**
+     * 将缓存写回磁盘（先写临时文件再原子替换）
+     */
+    public void flush() {
+        String json;
+        synchronized (this) {
+            if (!enabled || !dirty) {
+                return;
+            }
+            List<Map<String, Object>> list = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("hash", entry.hash != null ? Long.toHexString(entry.hash) : null);
+                m.put("tokens", new ArrayList<>(entry.tokens));
+                m.put("description", entry.description);
+                m.put("lastAccess", entry.lastAccess);
+                m.put("hits", entry.hits);
+                list.add(m);
+            }
+            Map<String, Object> root = new LinkedHashMap<>();
+            root.put("version", FILE_VERSION);
+            root.put("entries", list);
+            try {
+                json = objectMapper.writeValueAsString(root);
+            } catch (IOException e) {
+                logger.warn("序列化图片描述缓存失败: {}", e.getMessage());
+                return;
+            }
+            dirty = false;
+        }
+
+        synchronized (fileLock) {
+            writeFile(json);
+        }
+    }
+
+    private void writeFile(String json) {
+        try {
+            Path dir = cacheFile.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("写入图片描述缓存失败: {}", e.getMessage());
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 统计信息（用于指标接口输出）
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("entries", entries.size());
+        m.put("tokens", tokenIndex.size());
+        m.put("bytes", totalBytes);
+        m.put("maxEntries", maxEntries);
+        m.put("maxBytes", maxBytes);
+        m.put("tokenHits", tokenHits.sum());
+        m.put("hashHits", hashHits.sum());
+        m.put("misses", misses.sum());
+        m.put("puts", puts.sum());
+        m.put("evictions", evictions.sum());
+        m.put("visionCallsAvoided", tokenHits.sum() + hashHits.sum());
+        return m;
+    }
+
+    private void touch(Entry entry) {
+        entry.lastAccess = System.currentTimeMillis();
+        entry.hits++;
+        dirty = true;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && (entries.size() > maxEntries || totalBytes > maxBytes)) {
+            Entry eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.sizeBytes();
+            for (String token : eldest.tokens) {
+                tokenIndex.remove(token, eldest.id);
+            }
+            evictions.increment();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(cacheFile.toFile());
+            JsonNode list = root.path("entries");
+            // 文件按LRU顺序写出（最久未使用在前），按原顺序载入即可保持淘汰顺序
+            for (JsonNode node : list) {
+                String description = node.path("description").asText(null);
+                JsonNode tokensNode = node.path("tokens");
+                String hashHex = node.path("hash").isTextual() ? node.path("hash").asText() : null;
+                if (description == null || (tokensNode.size() == 0 && hashHex == null)) {
+                    continue;
+                }
+                Long hash = hashHex != null ? Long.parseUnsignedLong(hashHex, 16) : null;
+                String id = tokensNode.size() > 0 ? tokensNode.get(0).asText() : hashHex;
+                Entry entry = new Entry(id, hash);
+                for (JsonNode token : tokensNode) {
+                    entry.tokens.add(token.asText());
+                    tokenIndex.put(token.asText(), id);
+                }
+                entry.description = description;
+                entry.lastAccess = node.path("lastAccess").asLong(0);
+                entry.hits = node.path("hits").asLong(0);
+                entries.put(id, entry);
+                totalBytes += entry.sizeBytes();
+            }
+            evictIfNeeded();
+            logger.info("已加载图片描述缓存: {} 条, 文件={}", entries.size(), cacheFile);
+        } catch (Exception e) {
+            logger.warn("读取图片描述缓存失败，将重新建立: {}", e.getMessage());
+            entries.clear();
+            tokenIndex.clear();
+            totalBytes = 0;
+        }
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class Entry {
+        final String id;
+        final Set<String> tokens = new LinkedHashSet<>();
+        Long hash;
+        String description;
+        long lastAccess;
+        long hits;
+
+        Entry(String id, Long hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        long sizeBytes() {
+            long size = description != null ? description.length() * 2L : 0;
+            for (String token : tokens) {
+                size += token.length() * 2L;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.testgen.feishu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * 本地模拟飞书事件推送
+ * 无需在飞书开放平台配置公网回调地址即可验证事件回调、去抖和后台预生成：
+ * 先发送回调地址校验请求，再连续发送若干个 drive.file.edit_v1 事件模拟一次连续编辑。
+ * 环境变量 FEISHU_EVENT_ENCRYPT_KEY / FEISHU_EVENT_VERIFICATION_TOKEN 与服务端一致时按相同方式加密和签入token。
+ *
+ * 用法: java com.testgen.feishu.LocalFeishuEventSender &lt;文档token&gt; [事件数=5] [间隔毫秒=200]
+ *       [回调地址=http://localhost:8080/api/feishu/events]
+ */
+public final class LocalFeishuEventSender {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final OkHttpClient httpClient = new OkHttpClient();
+    private final String callbackUrl;
+    private final String encryptKey = System.getenv("FEISHU_EVENT_ENCRYPT_KEY");
+    private final String verificationToken = System.getenv("FEISHU_EVENT_VERIFICATION_TOKEN");
+
+    public LocalFeishuEventSender(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("用法: LocalFeishuEventSender <文档token> [事件数] [间隔毫秒] [回调地址]");
+            System.exit(1);
+        }
+        String fileToken = args[0];
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long intervalMillis = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        String url = args.length > 3 ? args[3] : "http://localhost:8080/api/feishu/events";
+
+        LocalFeishuEventSender sender = new LocalFeishuEventSender(url);
+        System.out.println("[事件模拟] 回调地址校验: " + sender.sendUrlVerification("local-challenge"));
+        for (int i = 0; i < count; i++) {
+            System.out.println("[事件模拟] 编辑事件 " + (i + 1) + "/" + count + ": " + sender.sendFileEdit(fileToken));
+            if (i < count - 1) {
+                Thread.sleep(intervalMillis);
+            }
+        }
+    }
+
+    /**
+     * 发送回调地址校验请求
+     *
+     * @return 服务端响应
+     */
+    public String sendUrlVerification(String challenge) throws Exception {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("type", FeishuEventCallback.URL_VERIFICATION);
+        body.put("challenge", challenge);
+        body.put("token", verificationToken != null ? verificationToken : "");
+        return post(body);
+    }
+
+    /**
+     * 发送一个文档编辑事件（2.0结构，每次使用新的event_id）
+     *
+     * @return 服务端响应
+     */
+    public String sendFileEdit(String fileToken) throws Exception {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("schema", "2.0");
+        ObjectNode header = body.putObject("header");
+        header.put("event_id", UUID.randomUUID().toString());
+        header.put("event_type", FeishuEventCallback.FILE_EDIT);
+        header.put("create_time", String.valueOf(System.currentTimeMillis()));
+        header.put("token", verificationToken != null ? verificationToken : "");
+        ObjectNode event = body.putObject("event");
+        event.put("file_token", fileToken);
+        event.put("file_type", "docx");
+        return post(body);
+    }
+
+    private String post(ObjectNode body) throws Exception {
+        String json = objectMapper.writeValueAsString(body);
+        if (encryptKey != null && !encryptKey.trim().isEmpty()) {
+            ObjectNode wrapper = objectMapper.createObjectNode();
+            wrapper.put("encrypt", encrypt(json, encryptKey));
+            json = objectMapper.writeValueAsString(wrapper);
+        }
+        Request request = new Request.Builder()
+                .url(callbackUrl)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            return response.code() + " " + (response.body() != null ? response.body().string() : "");
+        }
+    }
+
+    /**
+     * 与飞书相同的加密方式：AES-256-CBC，密钥为Encrypt Key的SHA-256，随机IV放在密文前
+     */
+    static String encrypt(String plain, String encryptKey) throws Exception {
+        byte[] key = MessageDigest.getInstance("SHA-256").digest(encryptKey.getBytes(StandardCharsets.UTF_8));
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+        byte[] data = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, data, 0, iv.length);
+        System.arraycopy(encrypted, 0, data, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(data);
+    }
+}
@@ -0,0 +1,180 @@
+package com.testgen.feishu;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Wiki节点解析缓存
+ * Wiki节点token -> 实际文档(obj_token/obj_type)的映射几乎不会变化，进程内所有请求共享。
+ * <ul>
+ *   <li>同一节点并发解析时只发起一次请求，其余调用方等待同一个结果</li>
+ *   <li>解析失败也会缓存（较短的TTL），避免对无权限/不存在的节点反复请求</li>
+ *   <li>超过条目上限时先清理过期条目，再淘汰最早创建的条目</li>
+ * </ul>
+ */
+public final class WikiNodeCache {
+
+    private static final WikiNodeCache INSTANCE = new WikiNodeCache(
+            parseIntEnv("FEISHU_WIKI_CACHE_MAX_ENTRIES", 1000),
+            TimeUnit.MINUTES.toMillis(parseIntEnv("FEISHU_WIKI_CACHE_TTL_MINUTES", 60)),
+            TimeUnit.SECONDS.toMillis(parseIntEnv("FEISHU_WIKI_CACHE_NEGATIVE_TTL_SECONDS", 60)));
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private WikiNodeCache(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    public static WikiNodeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 解析Wiki节点
+     *
+     * @param nodeToken Wiki节点token
+     * @param loader    未命中时调用的解析函数，失败时返回null
+     * @return 节点信息；解析失败（含缓存的失败结果）时返回null
+     */
+    FeishuService.WikiNodeInfo resolve(String nodeToken,
+                                       Function<String, FeishuService.WikiNodeInfo> loader) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry existing = entries.get(nodeToken);
+            if (existing != null && !existing.isExpired(now)) {
+                if (!existing.future.isDone()) {
+                    // 其他请求正在解析同一节点
+                    sharedLoads.increment();
+                    return existing.future.join();
+                }
+                FeishuService.WikiNodeInfo info = existing.future.join();
+                if (info != null) {
+                    hits.increment();
+                } else {
+                    negativeHits.increment();
+                }
+                return info;
+            }
+
+            Entry mine = new Entry();
+            boolean installed = existing == null
+                    ? entries.putIfAbsent(nodeToken, mine) == null
+                    : entries.replace(nodeToken, existing, mine);
+            if (!installed) {
+                // 其他线程抢先插入，重新读取
+                continue;
+            }
+
+            misses.increment();
+            FeishuService.WikiNodeInfo info = null;
+            try {
+                info = loader.apply(nodeToken);
+            } finally {
+                mine.complete(info, info != null ? ttlMillis : negativeTtlMillis);
+            }
+            trim();
+            return info;
+        }
+    }
+
+    public void invalidate(String nodeToken) {
+        entries.remove(nodeToken);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", entries.size());
+        m.put("maxEntries", maxEntries);
+        m.put("ttlMinutes", TimeUnit.MILLISECONDS.toMinutes(ttlMillis));
+        m.put("negativeTtlSeconds", TimeUnit.MILLISECONDS.toSeconds(negativeTtlMillis));
+        m.put("hits", hits.sum());
+        m.put("negativeHits", negativeHits.sum());
+        m.put("misses", misses.sum());
+        m.put("sharedLoads", sharedLoads.sum());
+        m.put("evictions", evictions.sum());
+        return m;
+    }
+
+    /**
+     * 控制条目数量：先清理过期条目，仍超出时按创建时间淘汰（不淘汰正在解析的条目）
+     */
+    private void trim() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> completed = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().future.isDone()) {
+                completed.add(e);
+            }
+        }
+        completed.sort(Comparator.comparingLong(e -> e.getValue().createdAt));
+        for (int i = 0; i < excess && i < completed.size(); i++) {
+            Map.Entry<String, Entry> e = completed.get(i);
+            if (entries.remove(e.getKey(), e.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<FeishuService.WikiNodeInfo> future = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+        // 解析完成前不过期
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        void complete(FeishuService.WikiNodeInfo info, long ttl) {
+            expiresAt = System.currentTimeMillis() + ttl;
+            future.complete(info);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
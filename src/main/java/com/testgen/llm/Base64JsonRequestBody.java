@@ -0,0 +1,130 @@
+package com.testgen.llm;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 内嵌Base64图片数据的JSON请求体
+ * 图片在内存中只保留原始字节，写出请求体时才流式编码为Base64，
+ * 避免为每张图片额外持有膨胀约33%的Base64字符串和拼接后的整段JSON。
+ *
+ * 由若干段组成：JSON文本段原样写出，二进制段写出为Base64（不含引号，引号由前后文本段提供）。
+ * 请求体可重复写出（重试时复用），长度在构建时即可确定。
+ */
+public final class Base64JsonRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final List<Object> parts;
+    private final long contentLength;
+
+    private Base64JsonRequestBody(List<Object> parts, long contentLength) {
+        this.parts = parts;
+        this.contentLength = contentLength;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        OutputStream sinkStream = null;
+        for (Object part : parts) {
+            if (part instanceof TextPart) {
+                sink.write(((TextPart) part).bytes);
+            } else {
+                if (sinkStream == null) {
+                    sinkStream = new NonClosingOutputStream(sink.outputStream());
+                }
+                // 关闭编码流只会写出末尾的填充字符，不会关闭sink
+                try (OutputStream encoder = Base64.getEncoder().wrap(sinkStream)) {
+                    encoder.write((byte[]) part);
+                }
+            }
+        }
+    }
+
+    /**
+     * 文本段（包装一层以便与二进制段区分）
+     */
+    private static final class TextPart {
+        final byte[] bytes;
+
+        TextPart(String text) {
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 构建器
+     */
+    public static final class Builder {
+        private final List<Object> parts = new ArrayList<>();
+        private long length;
+
+        private Builder() {
+        }
+
+        /**
+         * 追加JSON文本（调用方负责转义）
+         */
+        public Builder text(String json) {
+            TextPart part = new TextPart(json);
+            parts.add(part);
+            length += part.bytes.length;
+            return this;
+        }
+
+        /**
+         * 追加二进制数据，写出时编码为Base64
+         */
+        public Builder base64(byte[] data) {
+            parts.add(data);
+            length += 4L * ((data.length + 2) / 3);
+            return this;
+        }
+
+        public Base64JsonRequestBody build() {
+            return new Base64JsonRequestBody(new ArrayList<>(parts), length);
+        }
+    }
+
+    /**
+     * close时只flush的输出流，批量写直接透传
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
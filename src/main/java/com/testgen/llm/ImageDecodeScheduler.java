@@ -0,0 +1,208 @@
+package com.testgen.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 图片解码调度器
+ * 解码一张大尺寸PNG设计稿会分配完整的BufferedImage（宽×高×4字节），多个文档同时导入时容易撑爆堆内存。
+ * 所有解码都先从全局内存预算中申请额度，额度不足时排队等待，处理完成后归还。
+ *
+ * 解码前先通过ImageReader读取文件头中的尺寸：
+ * 超过单张像素上限的图片使用行列跳采样读取，按降采样后的尺寸计算占用。
+ */
+public final class ImageDecodeScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDecodeScheduler.class);
+
+    // 预算以KB为单位计入信号量
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final ImageDecodeScheduler INSTANCE = new ImageDecodeScheduler(
+            parseLongEnv("IMAGE_DECODE_BUDGET_MB", 256) * 1024,
+            parseLongEnv("IMAGE_DECODE_MAX_PIXELS", 16L * 1024 * 1024));
+
+    private final int budgetKb;
+    private final long maxPixelsPerImage;
+    // 公平信号量：大图排在队首时，后来的小图不会插队，避免大图饿死
+    private final Semaphore budget;
+
+    private final AtomicLong inUseKb = new AtomicLong();
+    private final LongAccumulator peakKb = new LongAccumulator(Long::max, 0);
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder subsampled = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private ImageDecodeScheduler(long budgetKb, long maxPixelsPerImage) {
+        this.budgetKb = (int) Math.max(1024, Math.min(Integer.MAX_VALUE, budgetKb));
+        this.maxPixelsPerImage = Math.max(1024 * 1024, maxPixelsPerImage);
+        this.budget = new Semaphore(this.budgetKb, true);
+    }
+
+    public static ImageDecodeScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 在内存预算内解码图片
+     * 返回的DecodedImage必须在图片处理完毕后关闭以归还额度（建议使用try-with-resources）。
+     *
+     * @param imageBytes 图片原始字节
+     * @param maxPixels  调用方需要的最大像素数（实际上限取它与全局单张上限的较小值）
+     * @param minSide    降采样后短边不小于该值
+     * @return 解码结果，无法识别格式时返回null
+     */
+    public DecodedImage decode(byte[] imageBytes, long maxPixels, int minSide)
+            throws IOException, InterruptedException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // 只读取文件头中的尺寸，不解码像素
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                int subsampling = subsamplingFor(width, height, Math.min(maxPixels, maxPixelsPerImage), minSide);
+                int decodedWidth = (width + subsampling - 1) / subsampling;
+                int decodedHeight = (height + subsampling - 1) / subsampling;
+                int costKb = costKb(decodedWidth, decodedHeight);
+
+                acquire(costKb);
+                boolean success = false;
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    if (subsampling > 1) {
+                        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                        subsampled.increment();
+                        logger.debug("大图降采样解码: {}x{} -> {}x{} (1/{})",
+                                width, height, decodedWidth, decodedHeight, subsampling);
+                    }
+                    BufferedImage image = reader.read(0, param);
+                    decodes.increment();
+                    success = true;
+                    return new DecodedImage(image, width, height, costKb);
+                } finally {
+                    if (!success) {
+                        release(costKb);
+                    }
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 统计信息（用于指标接口输出）
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("budgetMb", budgetKb / 1024.0);
+        m.put("inUseMb", inUseKb.get() / 1024.0);
+        m.put("peakMb", peakKb.get() / 1024.0);
+        m.put("queued", budget.getQueueLength());
+        m.put("maxPixelsPerImage", maxPixelsPerImage);
+        m.put("decodes", decodes.sum());
+        m.put("subsampled", subsampled.sum());
+        m.put("waits", waits.sum());
+        m.put("totalWaitMs", waitNanos.sum() / 1_000_000);
+        return m;
+    }
+
+    /**
+     * 计算跳采样倍数：使解码后的像素数不超过上限，同时短边不小于minSide
+     */
+    static int subsamplingFor(int width, int height, long maxPixels, int minSide) {
+        long pixels = (long) width * height;
+        if (pixels <= maxPixels) {
+            return 1;
+        }
+        int factor = (int) Math.ceil(Math.sqrt((double) pixels / maxPixels));
+        int limit = Math.max(1, Math.min(width, height) / Math.max(1, minSide));
+        return Math.max(1, Math.min(factor, limit));
+    }
+
+    private int costKb(int width, int height) {
+        long kb = ((long) width * height * BYTES_PER_PIXEL + 1023) / 1024;
+        // 单张超过总预算时按总预算计，独占全部额度而不是永远等待
+        return (int) Math.max(1, Math.min(kb, budgetKb));
+    }
+
+    private void acquire(int costKb) throws InterruptedException {
+        // 无参tryAcquire会无视公平性直接插队，带超时的版本才按FIFO排队
+        if (!budget.tryAcquire(costKb, 0, TimeUnit.NANOSECONDS)) {
+            waits.increment();
+            long start = System.nanoTime();
+            budget.acquire(costKb);
+            waitNanos.add(System.nanoTime() - start);
+        }
+        peakKb.accumulate(inUseKb.addAndGet(costKb));
+    }
+
+    private void release(int costKb) {
+        inUseKb.addAndGet(-costKb);
+        budget.release(costKb);
+    }
+
+    private static long parseLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 解码结果，关闭时归还内存额度
+     */
+    public final class DecodedImage implements AutoCloseable {
+        public final BufferedImage image;
+        public final int originalWidth;
+        public final int originalHeight;
+        private final int costKb;
+        private boolean closed;
+
+        private DecodedImage(BufferedImage image, int originalWidth, int originalHeight, int costKb) {
+            this.image = image;
+            this.originalWidth = originalWidth;
+            this.originalHeight = originalHeight;
+            this.costKb = costKb;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(costKb);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.testgen.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 视觉模型调用前的图片预处理
+ * 全程基于字节数组：解码 -> 内容识别 -> 分步缩放 -> JPEG编码，
+ * 根据图片内容（文字/流程图 vs 照片）自适应选择分辨率和压缩质量。
+ * ImageWriter按线程复用，避免每张图片重复查找和创建编码器。
+ * 解码通过 {@link ImageDecodeScheduler} 申请内存预算。
+ */
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    /**
+     * 图片内容类型
+     */
+    public enum ContentKind {
+        /** 文字密集型（流程图、UI稿、截图），需保留分辨率以保证OCR准确率 */
+        TEXT,
+        /** 照片/图形类，可更激进地压缩 */
+        PHOTO
+    }
+
+    // 文字类图片：保留较高分辨率，质量适中；灰度图单独编码可显著减小体积
+    private static final int TEXT_MAX_WIDTH = 1024;
+    private static final long TEXT_MAX_PIXELS = 1024L * 1280L;
+    private static final float TEXT_QUALITY = 0.7f;
+    // 照片类图片：沿用原先512px + 50%质量的压缩策略
+    private static final int PHOTO_MAX_WIDTH = 512;
+    private static final long PHOTO_MAX_PIXELS = 512L * 512L;
+    private static final float PHOTO_QUALITY = 0.5f;
+
+    // 内容识别参数
+    private static final int SAMPLE_GRID = 96;
+    private static final int LIGHT_LUMA = 225;
+    private static final int EDGE_DELTA = 64;
+    private static final int GRAY_SATURATION = 12;
+
+    // 每个线程复用一个JPEG编码器和输出缓冲
+    private static final ThreadLocal<ImageWriter> JPEG_WRITER = ThreadLocal.withInitial(() -> {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        return writers.hasNext() ? writers.next() : null;
+    });
+    private static final ThreadLocal<ByteArrayOutputStream> OUTPUT_BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(64 * 1024));
+
+    // 感知哈希解码的像素上限（过小会丢失细笔画，导致文字不同、布局相同的截图哈希相同）
+    private static final long HASH_DECODE_PIXELS = 512L * 512L;
+
+    // 所有解码都经过全局内存预算调度
+    private final ImageDecodeScheduler decodeScheduler = ImageDecodeScheduler.getInstance();
+
+    /**
+     * 预处理结果
+     */
+    public static class ProcessedImage {
+        public final byte[] data;
+        public final String mimeType;
+        public final int width;
+        public final int height;
+        public final int originalWidth;
+        public final int originalHeight;
+        public final ContentKind kind;
+
+        public ProcessedImage(byte[] data, String mimeType, int width, int height,
+                int originalWidth, int originalHeight, ContentKind kind) {
+            this.data = data;
+            this.mimeType = mimeType;
+            this.width = width;
+            this.height = height;
+            this.originalWidth = originalWidth;
+            this.originalHeight = originalHeight;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * 预处理图片
+     * 无法解码时原样返回（按文件头判断MIME类型）
+     *
+     * @param imageBytes 原始图片字节
+     * @return 预处理后的图片
+     */
+    public ProcessedImage process(byte[] imageBytes) {
+        // 解码在全局内存预算内进行，超大图按降采样尺寸解码；处理完毕后归还额度
+        try (ImageDecodeScheduler.DecodedImage decoded =
+                decodeScheduler.decode(imageBytes, Long.MAX_VALUE, TEXT_MAX_WIDTH)) {
+            if (decoded == null || decoded.image == null) {
+                logger.warn("无法解析图片，使用原始数据");
+                return passthrough(imageBytes);
+            }
+
+            BufferedImage original = decoded.image;
+            int originalWidth = decoded.originalWidth;
+            int originalHeight = decoded.originalHeight;
+
+            // 1. 识别内容类型，决定目标分辨率与压缩质量
+            ContentAnalysis analysis = analyze(original);
+            ContentKind kind = analysis.textHeavy ? ContentKind.TEXT : ContentKind.PHOTO;
+            int maxWidth = kind == ContentKind.TEXT ? TEXT_MAX_WIDTH : PHOTO_MAX_WIDTH;
+            long maxPixels = kind == ContentKind.TEXT ? TEXT_MAX_PIXELS : PHOTO_MAX_PIXELS;
+            float quality = kind == ContentKind.TEXT ? TEXT_QUALITY : PHOTO_QUALITY;
+
+            double scale = Math.min(1.0, (double) maxWidth / originalWidth);
+            scale = Math.min(scale, Math.sqrt((double) maxPixels / ((long) originalWidth * originalHeight)));
+            int targetWidth = Math.max(1, (int) (originalWidth * scale));
+            int targetHeight = Math.max(1, (int) (originalHeight * scale));
+
+            // 2. 分步缩放（每步最多缩小一半，避免单次双线性插值的锯齿和文字糊化）
+            BufferedImage resized = progressiveResize(original, targetWidth, targetHeight, analysis.grayscale);
+
+            // 3. JPEG编码
+            byte[] encoded = encodeJpeg(resized, quality);
+
+            logger.info("图片预处理: {}x{} -> {}x{}, 类型={}, 灰度={}, {} -> {} bytes",
+                    originalWidth, originalHeight, targetWidth, targetHeight, kind, analysis.grayscale,
+                    imageBytes.length, encoded.length);
+
+            // 原图本身已足够小且无需缩放时，保留原图
+            if (scale >= 1.0 && encoded.length >= imageBytes.length && isJpeg(imageBytes)) {
+                return new ProcessedImage(imageBytes, "image/jpeg", originalWidth, originalHeight,
+                        originalWidth, originalHeight, kind);
+            }
+            // 没有JPEG编码器时encodeJpeg回退为PNG，按实际编码标注类型
+            String mimeType = isPng(encoded) ? "image/png" : "image/jpeg";
+            return new ProcessedImage(encoded, mimeType, targetWidth, targetHeight,
+                    originalWidth, originalHeight, kind);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return passthrough(imageBytes);
+        } catch (Exception e) {
+            logger.warn("图片预处理失败，使用原始图片: {}", e.getMessage());
+            return passthrough(imageBytes);
+        }
+    }
+
+    /**
+     * 计算图片的感知哈希（dHash，64位）
+     * 以降采样方式解码后按区域平均缩到9x8灰度网格，比较相邻格亮度得到位串。
+     * 内容几乎相同的图片（重新截图、轻微压缩差异）哈希的汉明距离很小。
+     *
+     * @param imageBytes 原始图片字节
+     * @return 64位哈希，无法解码时返回null
+     */
+    public Long perceptualHash(byte[] imageBytes) {
+        // 按行列跳采样解码到约512x512，既避免完整解码大图，又保留足够的文字笔画密度供区域平均
+        try (ImageDecodeScheduler.DecodedImage decoded = decodeScheduler.decode(imageBytes, HASH_DECODE_PIXELS, 256)) {
+            if (decoded == null || decoded.image == null) {
+                return null;
+            }
+            BufferedImage sampled = decoded.image;
+
+            // 按区域平均亮度缩到9x8（透明像素视为白色）
+            int[][] cells = new int[8][9];
+            int sw = sampled.getWidth();
+            int sh = sampled.getHeight();
+            for (int cy = 0; cy < 8; cy++) {
+                int y0 = cy * sh / 8;
+                int y1 = Math.max(y0 + 1, (cy + 1) * sh / 8);
+                for (int cx = 0; cx < 9; cx++) {
+                    int x0 = cx * sw / 9;
+                    int x1 = Math.max(x0 + 1, (cx + 1) * sw / 9);
+                    long sum = 0;
+                    int count = 0;
+                    for (int y = y0; y < y1 && y < sh; y++) {
+                        for (int x = x0; x < x1 && x < sw; x++) {
+                            int argb = sampled.getRGB(x, y);
+                            if (((argb >>> 24) & 0xFF) < 128) {
+                                sum += 255;
+                            } else {
+                                sum += (((argb >> 16) & 0xFF) * 299 + ((argb >> 8) & 0xFF) * 587
+                                        + (argb & 0xFF) * 114) / 1000;
+                            }
+                            count++;
+                        }
+                    }
+                    cells[cy][cx] = count > 0 ? (int) (sum / count) : 255;
+                }
+            }
+
+            long hash = 0L;
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    hash = (hash << 1) | (cells[y][x] > cells[y][x + 1] ? 1L : 0L);
+                }
+            }
+            return hash;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.debug("计算感知哈希失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 内容识别结果
+     */
+    private static class ContentAnalysis {
+        boolean textHeavy;
+        boolean grayscale;
+    }
+
+    /**
+     * 基于网格采样识别图片内容
+     * 文字类图片特征：大面积浅色背景 + 高边缘密度；照片特征：色彩丰富、背景不统一
+     */
+    private ContentAnalysis analyze(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stepX = Math.max(1, width / SAMPLE_GRID);
+        int stepY = Math.max(1, height / SAMPLE_GRID);
+
+        long samples = 0;
+        long lightCount = 0;
+        long edgeCount = 0;
+        long saturationSum = 0;
+
+        for (int y = 0; y < height; y += stepY) {
+            int prevLuma = -1;
+            for (int x = 0; x < width; x += stepX) {
+                int argb = image.getRGB(x, y);
+                int alpha = (argb >>> 24) & 0xFF;
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                if (alpha < 128) {
+                    // 透明像素会被填充为白色背景
+                    r = g = b = 255;
+                }
+                int luma = (r * 299 + g * 587 + b * 114) / 1000;
+                int saturation = Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b));
+
+                samples++;
+                saturationSum += saturation;
+                if (luma >= LIGHT_LUMA) {
+                    lightCount++;
+                }
+                if (prevLuma >= 0 && Math.abs(luma - prevLuma) >= EDGE_DELTA) {
+                    edgeCount++;
+                }
+                prevLuma = luma;
+            }
+        }
+
+        ContentAnalysis analysis = new ContentAnalysis();
+        if (samples == 0) {
+            return analysis;
+        }
+        double lightRatio = (double) lightCount / samples;
+        double edgeRatio = (double) edgeCount / samples;
+        double meanSaturation = (double) saturationSum / samples;
+
+        analysis.textHeavy = (lightRatio >= 0.45 && edgeRatio >= 0.03)
+                || (meanSaturation < 24 && edgeRatio >= 0.05);
+        analysis.grayscale = meanSaturation < GRAY_SATURATION;
+        return analysis;
+    }
+
+    /**
+     * 分步缩放：每次缩小不超过一半，最后一步精确缩放到目标尺寸
+     * 第一步同时去除透明通道（填充白色背景）
+     */
+    private BufferedImage progressiveResize(BufferedImage source, int targetWidth, int targetHeight,
+            boolean grayscale) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        BufferedImage current = source;
+        boolean first = true;
+        do {
+            int nextWidth = Math.max(targetWidth, width / 2);
+            int nextHeight = Math.max(targetHeight, height / 2);
+            boolean last = nextWidth == targetWidth && nextHeight == targetHeight;
+            int type = last && grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+
+            BufferedImage step = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D g2d = step.createGraphics();
+            try {
+                if (first) {
+                    // 填充白色背景（处理透明PNG）
+                    g2d.setColor(Color.WHITE);
+                    g2d.fillRect(0, 0, nextWidth, nextHeight);
+                }
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g2d.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                g2d.dispose();
+            }
+
+            current = step;
+            width = nextWidth;
+            height = nextHeight;
+            first = false;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    /**
+     * 使用线程复用的ImageWriter编码JPEG；没有JPEG编码器时编码为PNG
+     */
+    private byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = JPEG_WRITER.get();
+        ByteArrayOutputStream buffer = OUTPUT_BUFFER.get();
+        buffer.reset();
+
+        if (writer == null) {
+            // 回退到PNG格式
+            ImageIO.write(image, "png", buffer);
+            return buffer.toByteArray();
+        }
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return buffer.toByteArray();
+    }
+
+    private ProcessedImage passthrough(byte[] imageBytes) {
+        String mimeType = isPng(imageBytes) ? "image/png" : "image/jpeg";
+        return new ProcessedImage(imageBytes, mimeType, -1, -1, -1, -1, ContentKind.PHOTO);
+    }
+
+    private static boolean isJpeg(byte[] data) {
+        return data.length > 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+
+    private static boolean isPng(byte[] data) {
+        return data.length > 4 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G';
+    }
+}
@@ -0,0 +1,251 @@
+package com.testgen.llm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM调用指标统计
+ * 记录每次大模型调用的token用量、排队时间和总耗时，
+ * 按操作类型（parsePRD/generateTestCases/comparison/standaloneEval/vision/visionBatch）和接入点分别聚合。
+ * 所有计数器均基于LongAdder，记录时无锁。
+ */
+public final class LLMMetrics {
+
+    // 操作类型
+    public static final String OP_PARSE_PRD = "parsePRD";
+    public static final String OP_GENERATE_TEST_CASES = "generateTestCases";
+    public static final String OP_COMPARISON = "comparison";
+    public static final String OP_STANDALONE_EVAL = "standaloneEval";
+    public static final String OP_VISION = "vision";
+    public static final String OP_VISION_BATCH = "visionBatch";
+    public static final String OP_CHAT = "chat";
+
+    private static final LLMMetrics INSTANCE = new LLMMetrics();
+
+    private final ConcurrentHashMap<String, CallStats> byOperation = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CallStats> byEndpoint = new ConcurrentHashMap<>();
+    private final long startTimeMillis = System.currentTimeMillis();
+
+    private LLMMetrics() {
+    }
+
+    public static LLMMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始一次调用计时
+     *
+     * @param operation 操作类型
+     * @param endpoint  接入点ID
+     */
+    public CallTimer start(String operation, String endpoint) {
+        return new CallTimer(operation, endpoint);
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param promptTokens     输入token数（未知时传-1）
+     * @param completionTokens 输出token数（未知时传-1）
+     * @param totalTokens      总token数（未知时传-1）
+     * @param queueNanos       排队/退避等待时间
+     * @param wallNanos        调用总耗时（含排队）
+     */
+    public void record(String operation, String endpoint, long promptTokens, long completionTokens,
+            long totalTokens, long queueNanos, long wallNanos, boolean success) {
+        String op = operation != null ? operation : OP_CHAT;
+        String ep = endpoint != null && !endpoint.isEmpty() ? endpoint : "unknown";
+        byOperation.computeIfAbsent(op, k -> new CallStats())
+                .add(promptTokens, completionTokens, totalTokens, queueNanos, wallNanos, success);
+        byEndpoint.computeIfAbsent(ep, k -> new CallStats())
+                .add(promptTokens, completionTokens, totalTokens, queueNanos, wallNanos, success);
+    }
+
+    /**
+     * 导出当前统计快照（用于HTTP接口输出）
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("since", startTimeMillis);
+        result.put("uptimeMs", System.currentTimeMillis() - startTimeMillis);
+
+        Map<String, Object> operations = new TreeMap<>();
+        byOperation.forEach((k, v) -> operations.put(k, v.snapshot()));
+        result.put("operations", operations);
+
+        Map<String, Object> endpoints = new TreeMap<>();
+        byEndpoint.forEach((k, v) -> endpoints.put(k, v.snapshot()));
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        byOperation.clear();
+        byEndpoint.clear();
+    }
+
+    /**
+     * 单次调用计时器
+     * 排队时间包括等待并发许可和429退避的时间
+     */
+    public final class CallTimer {
+        private final String operation;
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+        private long queueNanos;
+
+        private CallTimer(String operation, String endpoint) {
+            this.operation = operation;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * 累加排队/等待时间
+         */
+        public void addQueueTime(long nanos) {
+            if (nanos > 0) {
+                queueNanos += nanos;
+            }
+        }
+
+        public void success(long promptTokens, long completionTokens, long totalTokens) {
+            record(operation, endpoint, promptTokens, completionTokens, totalTokens,
+                    queueNanos, System.nanoTime() - startNanos, true);
+        }
+
+        public void failure() {
+            record(operation, endpoint, -1, -1, -1, queueNanos, System.nanoTime() - startNanos, false);
+        }
+    }
+
+    /**
+     * 单个维度（操作或接入点）的聚合统计
+     */
+    static final class CallStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder callsWithoutUsage = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder totalTokens = new LongAdder();
+        final LatencyHistogram queueTime = new LatencyHistogram();
+        final LatencyHistogram wallTime = new LatencyHistogram();
+
+        void add(long prompt, long completion, long total, long queueNanos, long wallNanos, boolean success) {
+            calls.increment();
+            if (!success) {
+                failures.increment();
+            }
+            if (total < 0 && prompt < 0 && completion < 0) {
+                callsWithoutUsage.increment();
+            } else {
+                promptTokens.add(Math.max(0, prompt));
+                completionTokens.add(Math.max(0, completion));
+                totalTokens.add(total >= 0 ? total : Math.max(0, prompt) + Math.max(0, completion));
+            }
+            queueTime.record(queueNanos);
+            wallTime.record(wallNanos);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            long callCount = calls.sum();
+            m.put("calls", callCount);
+            m.put("failures", failures.sum());
+            m.put("callsWithoutUsage", callsWithoutUsage.sum());
+            m.put("promptTokens", promptTokens.sum());
+            m.put("completionTokens", completionTokens.sum());
+            m.put("totalTokens", totalTokens.sum());
+            m.put("avgTotalTokens", callCount > 0 ? totalTokens.sum() / (double) callCount : 0.0);
+            m.put("queueTime", queueTime.snapshot());
+            m.put("wallTime", wallTime.snapshot());
+            return m;
+        }
+    }
+
+    /**
+     * 固定分桶的耗时直方图（毫秒）
+     */
+    static final class LatencyHistogram {
+        private static final long[] BUCKET_BOUNDS_MS = {
+                10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000 };
+
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+            long millis = micros / 1000;
+            int idx = 0;
+            while (idx < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[idx]) {
+                idx++;
+            }
+            buckets[idx].increment();
+            count.increment();
+            sumMicros.add(micros);
+            maxMicros.accumulate(micros);
+        }
+
+        Map<String, Object> snapshot() {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", total);
+            m.put("avgMs", total > 0 ? sumMicros.sum() / 1000.0 / total : 0.0);
+            m.put("maxMs", maxMicros.get() / 1000.0);
+            m.put("p50Ms", percentile(counts, total, 0.50));
+            m.put("p90Ms", percentile(counts, total, 0.90));
+            m.put("p99Ms", percentile(counts, total, 0.99));
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                String label = i < BUCKET_BOUNDS_MS.length
+                        ? "<=" + BUCKET_BOUNDS_MS[i] + "ms"
+                        : ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms";
+                histogram.put(label, counts[i]);
+            }
+            m.put("buckets", histogram);
+            return m;
+        }
+
+        /**
+         * 按分桶估算分位数（返回所在桶的上界）
+         */
+        private long percentile(long[] counts, long total, double p) {
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * p);
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxMicros.get() / 1000;
+                }
+            }
+            return maxMicros.get() / 1000;
+        }
+    }
+}
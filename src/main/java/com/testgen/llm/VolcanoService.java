@@ -1,20 +1,15 @@
 package com.testgen.llm;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.volcengine.ark.runtime.model.Usage;
 import com.volcengine.ark.runtime.model.completion.chat.ChatCompletionRequest;
+import com.volcengine.ark.runtime.model.completion.chat.ChatCompletionResult;
 import com.volcengine.ark.runtime.model.completion.chat.ChatMessage;
 import com.volcengine.ark.runtime.model.completion.chat.ChatMessageRole;
 import com.volcengine.ark.runtime.service.ArkService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.*;
-import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.Color;
-import javax.imageio.ImageIO;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.concurrent.TimeUnit;
 import okhttp3.*;
 
@@ -39,9 +34,28 @@ public class VolcanoService implements LLMService {
             ? System.getenv("ARK_API_KEY")
             : ""; // 请通过环境变量ARK_API_KEY配置
 
+    // 视觉模型单张图片的提示词
+    private static final String VISION_PROMPT = "请提取图片中的所有信息，需要识别出图片中流程图的逻辑、图片中的所有文字，输出的文字表述需有助于测试用例编写。**关注约束条件**：对于输入字段，明确提取长度、格式、类型等约束（如最大长度、最小值、允许的特殊字符等）。";
+
+    // 批量识别：单批输入图片token预算、单批最多图片数、单批输出token上限、每张图片预留的输出token
+    private static final long VISION_BATCH_TOKEN_BUDGET = parseLongEnv("VISION_BATCH_TOKEN_BUDGET", 8000);
+    private static final int VISION_BATCH_MAX_IMAGES = (int) parseLongEnv("VISION_BATCH_MAX_IMAGES", 6);
+    private static final int VISION_BATCH_MAX_OUTPUT_TOKENS = (int) parseLongEnv("VISION_BATCH_MAX_OUTPUT_TOKENS", 4000);
+    private static final int VISION_OUTPUT_TOKENS_PER_IMAGE = 700;
+
+    private static final java.util.regex.Pattern BATCH_MARKER_PATTERN =
+            java.util.regex.Pattern.compile("【图片\\s*(\\d+)\\s*】");
+
+    // Vision API使用的HTTP客户端（复用连接池）
+    private static final OkHttpClient VISION_HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(60, TimeUnit.SECONDS)
+            .readTimeout(180, TimeUnit.SECONDS)
+            .build();
+
     private final String endpointId;
     private final ArkService arkService;
     private final ObjectMapper objectMapper;
+    private final ImagePreprocessor imagePreprocessor = new ImagePreprocessor();
 
     public VolcanoService(String apiKey) {
         this(apiKey, DEFAULT_API_URL, DEFAULT_ENDPOINT_ID);
@@ -102,7 +116,7 @@ public class VolcanoService implements LLMService {
     public String parsePRD(String prdText) {
         String systemPrompt = buildPRDParseSystemPrompt();
         String userPrompt = "请解析以下PRD文档：\n\n" + prdText;
-        return chat(systemPrompt, userPrompt);
+        return chat(LLMMetrics.OP_PARSE_PRD, systemPrompt, userPrompt);
     }
 
     @Override
@@ -111,7 +125,7 @@ public class VolcanoService implements LLMService {
             String systemPrompt = buildTestCaseGenerateSystemPrompt();
             String userPrompt = "基于以下PRD数据生成测试用例：\n\n" +
                     objectMapper.writeValueAsString(prdData);
-            return chat(systemPrompt, userPrompt);
+            return chat(LLMMetrics.OP_GENERATE_TEST_CASES, systemPrompt, userPrompt);
         } catch (Exception e) {
             logger.error("生成测试用例失败", e);
             throw new RuntimeException("生成测试用例失败: " + e.getMessage());
@@ -120,6 +134,16 @@ public class VolcanoService implements LLMService {
 
     @Override
     public String chat(String systemPrompt, String userPrompt) {
+        return chat(LLMMetrics.OP_CHAT, systemPrompt, userPrompt);
+    }
+
+    /**
+     * 带操作类型的LLM调用，token用量和耗时按操作类型计入LLMMetrics
+     *
+     * @param operation 操作类型（见LLMMetrics.OP_*）
+     */
+    public String chat(String operation, String systemPrompt, String userPrompt) {
+        LLMMetrics.CallTimer timer = LLMMetrics.getInstance().start(operation, endpointId);
         try {
             // 构建消息列表
             final List<ChatMessage> messages = new ArrayList<>();
@@ -143,8 +167,8 @@ public class VolcanoService implements LLMService {
             logger.info("调用火山方舟API，接入点: {}", endpointId);
 
             StringBuilder response = new StringBuilder();
-            arkService.createChatCompletion(request)
-                    .getChoices()
+            ChatCompletionResult completion = arkService.createChatCompletion(request);
+            completion.getChoices()
                     .forEach(choice -> response.append(choice.getMessage().getContent()));
 
             String result = response.toString();
@@ -152,10 +176,20 @@ public class VolcanoService implements LLMService {
                 throw new RuntimeException("无效的API响应：返回内容为空");
             }
 
-            logger.info("火山方舟API调用成功");
+            // 记录token使用情况
+            Usage usage = completion.getUsage();
+            if (usage != null) {
+                timer.success(usage.getPromptTokens(), usage.getCompletionTokens(), usage.getTotalTokens());
+                logger.info("火山方舟API调用成功 [{}]，token使用: prompt={}, completion={}, total={}",
+                        operation, usage.getPromptTokens(), usage.getCompletionTokens(), usage.getTotalTokens());
+            } else {
+                timer.success(-1, -1, -1);
+                logger.info("火山方舟API调用成功 [{}]", operation);
+            }
             return result;
 
         } catch (Exception e) {
+            timer.failure();
             logger.error("调用火山方舟API失败", e);
 
             String errorMsg = e.getMessage();
@@ -195,105 +229,243 @@ public class VolcanoService implements LLMService {
      * 使用直接HTTP请求，正确传递multimodal content结构
      * 包含429错误重试逻辑
      * 
-     * @param imageBase64 图片Base64数据
-     * @param context     上下文信息
+     * @param imageBytes 图片原始字节
+     * @param context    上下文信息
      * @return 图片中提取的文字
      */
-    public String describeImage(String imageBase64, String context) {
+    public String describeImage(byte[] imageBytes, String context) {
+        try {
+            // 按图片内容自适应压缩以减少token消耗（文字类保留分辨率，照片类512px）
+            return describePreparedImage(prepareImage(imageBytes), context);
+        } catch (Exception e) {
+            logger.warn("图片识别失败: {}", e.getMessage(), e);
+            return "图片识别失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 预处理图片（自适应缩放与压缩），结果可直接用于单张或批量识别
+     */
+    public ImagePreprocessor.ProcessedImage prepareImage(byte[] imageBytes) {
+        ImagePreprocessor.ProcessedImage processed = imagePreprocessor.process(imageBytes);
+        logger.info("图片压缩完成，原始大小: {} bytes, 压缩后: {} bytes",
+                imageBytes.length, processed.data.length);
+        return processed;
+    }
+
+    /**
+     * 识别单张已预处理的图片
+     */
+    public String describePreparedImage(ImagePreprocessor.ProcessedImage image, String context) {
+        String visionEndpointId = getVisionEndpointId();
+        LLMMetrics.CallTimer timer = LLMMetrics.getInstance().start(LLMMetrics.OP_VISION, visionEndpointId);
+        try {
+            // 构建符合OpenAI格式的请求体（图片在写出时才编码为Base64）
+            RequestBody requestBody = buildVisionRequestBody(visionEndpointId, image);
+            String result = callVisionApi(visionEndpointId, requestBody, timer);
+            return result != null && !result.isEmpty() ? result.trim() : "无法识别图片内容";
+        } catch (Exception e) {
+            timer.failure();
+            logger.warn("图片识别失败: {}", e.getMessage(), e);
+            return "图片识别失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 按token预算把图片分批
+     * 输入侧按 宽×高/784 估算每张图片的token数，输出侧按每张图片预留的描述长度估算，
+     * 两者都不超过预算且张数不超过上限时放在同一批中。
+     *
+     * @param images 已预处理的图片
+     * @return 每一批包含的图片下标（保持原顺序）
+     */
+    public List<List<Integer>> planVisionBatches(List<ImagePreprocessor.ProcessedImage> images) {
+        int maxImages = Math.max(1, Math.min(VISION_BATCH_MAX_IMAGES,
+                VISION_BATCH_MAX_OUTPUT_TOKENS / VISION_OUTPUT_TOKENS_PER_IMAGE));
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        long currentTokens = 0;
+        for (int i = 0; i < images.size(); i++) {
+            long tokens = estimateImageTokens(images.get(i));
+            if (!current.isEmpty()
+                    && (current.size() >= maxImages || currentTokens + tokens > VISION_BATCH_TOKEN_BUDGET)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(i);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * 在一次请求中识别多张图片
+     * 提示词中为每张图片加上【图片N】分隔标记，并要求模型按同样的标记分段输出，
+     * 返回后按标记拆分回每张图片。
+     *
+     * @return 与输入一一对应的描述；某张图片的分段缺失时对应位置为null（调用方应单张重试），
+     *         整个请求失败时每个位置都是"图片识别失败: ..."
+     */
+    public List<String> describeImageBatch(List<ImagePreprocessor.ProcessedImage> images, String context) {
+        List<String> results = new ArrayList<>(Collections.nCopies(images.size(), (String) null));
+        if (images.isEmpty()) {
+            return results;
+        }
+        if (images.size() == 1) {
+            results.set(0, describePreparedImage(images.get(0), context));
+            return results;
+        }
+
+        String visionEndpointId = getVisionEndpointId();
+        LLMMetrics.CallTimer timer = LLMMetrics.getInstance().start(LLMMetrics.OP_VISION_BATCH, visionEndpointId);
+        try {
+            RequestBody requestBody = buildBatchVisionRequestBody(visionEndpointId, images);
+            String content = callVisionApi(visionEndpointId, requestBody, timer);
+            Map<Integer, String> sections = splitBatchResponse(content, images.size());
+            for (int i = 0; i < images.size(); i++) {
+                String section = sections.get(i + 1);
+                if (section != null && !section.isEmpty()) {
+                    results.set(i, section);
+                }
+            }
+            logger.info("批量识别完成: {} 张图片, 成功拆分 {} 段", images.size(), sections.size());
+        } catch (Exception e) {
+            timer.failure();
+            logger.warn("批量图片识别失败: {}", e.getMessage());
+            Collections.fill(results, "图片识别失败: " + e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * 按【图片N】标记拆分批量识别的返回内容
+     */
+    static Map<Integer, String> splitBatchResponse(String content, int imageCount) {
+        Map<Integer, String> sections = new HashMap<>();
+        if (content == null) {
+            return sections;
+        }
+        java.util.regex.Matcher matcher = BATCH_MARKER_PATTERN.matcher(content);
+        int currentIndex = -1;
+        int sectionStart = -1;
+        while (matcher.find()) {
+            if (currentIndex > 0) {
+                sections.putIfAbsent(currentIndex, content.substring(sectionStart, matcher.start()).trim());
+            }
+            currentIndex = Integer.parseInt(matcher.group(1));
+            sectionStart = matcher.end();
+            if (currentIndex < 1 || currentIndex > imageCount) {
+                currentIndex = -1;
+            }
+        }
+        if (currentIndex > 0) {
+            sections.putIfAbsent(currentIndex, content.substring(sectionStart).trim());
+        }
+        sections.values().removeIf(String::isEmpty);
+        return sections;
+    }
+
+    /**
+     * 估算单张图片的输入token数（尺寸未知时按1024估算）
+     */
+    private static long estimateImageTokens(ImagePreprocessor.ProcessedImage image) {
+        if (image.width <= 0 || image.height <= 0) {
+            return 1024;
+        }
+        return Math.max(1, (long) image.width * image.height / 784);
+    }
+
+    private static String getVisionEndpointId() {
         // 使用视觉模型 endpoint（从环境变量读取）
-        String visionEndpointId = System.getenv("VOLCANO_VISION_ENDPOINT_ID") != null
+        return System.getenv("VOLCANO_VISION_ENDPOINT_ID") != null
                 ? System.getenv("VOLCANO_VISION_ENDPOINT_ID")
                 : System.getenv("VOLCANO_ENDPOINT_ID"); // 回退到默认endpoint
+    }
 
+    /**
+     * 发送Vision API请求（含429指数退避重试），返回模型输出的文本
+     * 成功时记录token用量；失败时抛出异常，由调用方记录失败
+     */
+    private String callVisionApi(String visionEndpointId, RequestBody body, LLMMetrics.CallTimer timer)
+            throws Exception {
         // 重试配置
         int maxRetries = 3;
         long baseDelayMs = 2000; // 基础等待时间2秒
 
-        try {
-            // 大幅压缩图片以减少token消耗（目标：最大宽度512px，质量50%）
-            String compressedBase64 = compressImageBase64(imageBase64, 512);
-            logger.info("图片压缩完成，原始大小: {} chars, 压缩后: {} chars",
-                    imageBase64.length(), compressedBase64.length());
-
-            // 使用OkHttp直接调用API，正确构造multimodal消息
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(120, TimeUnit.SECONDS)
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            Request request = new Request.Builder()
+                    .url("https://ark.cn-beijing.volces.com/api/v3/chat/completions")
+                    .addHeader("Authorization", "Bearer " + DEFAULT_API_KEY)
+                    .addHeader("Content-Type", "application/json")
+                    .post(body)
                     .build();
 
-            // 构建符合OpenAI格式的请求体
-            String requestJson = buildVisionRequestJson(visionEndpointId, compressedBase64);
-
-            for (int attempt = 1; attempt <= maxRetries; attempt++) {
-                RequestBody body = RequestBody.create(
-                        requestJson,
-                        MediaType.parse("application/json; charset=utf-8"));
-
-                Request request = new Request.Builder()
-                        .url("https://ark.cn-beijing.volces.com/api/v3/chat/completions")
-                        .addHeader("Authorization", "Bearer " + DEFAULT_API_KEY)
-                        .addHeader("Content-Type", "application/json")
-                        .post(body)
-                        .build();
-
-                logger.info("调用火山方舟视觉模型API: {} [尝试 {}/{}]", visionEndpointId, attempt, maxRetries);
-
-                try (Response response = client.newCall(request).execute()) {
-                    String responseBody = response.body() != null ? response.body().string() : "";
-
-                    // 处理429速率限制错误
-                    if (response.code() == 429) {
-                        if (attempt < maxRetries) {
-                            long delayMs = baseDelayMs * (long) Math.pow(2, attempt - 1); // 指数退避
-                            logger.warn("Vision API速率限制(429)，等待{}ms后重试...", delayMs);
-                            Thread.sleep(delayMs);
-                            continue;
-                        } else {
-                            logger.error("Vision API速率限制(429)，已达到最大重试次数");
-                            return "图片识别失败: API速率限制，请稍后重试";
-                        }
+            logger.info("调用火山方舟视觉模型API: {} [尝试 {}/{}]", visionEndpointId, attempt, maxRetries);
+
+            try (Response response = VISION_HTTP_CLIENT.newCall(request).execute()) {
+                String responseBody = response.body() != null ? response.body().string() : "";
+
+                // 处理429速率限制错误
+                if (response.code() == 429) {
+                    if (attempt < maxRetries) {
+                        long delayMs = baseDelayMs * (long) Math.pow(2, attempt - 1); // 指数退避
+                        logger.warn("Vision API速率限制(429)，等待{}ms后重试...", delayMs);
+                        Thread.sleep(delayMs);
+                        timer.addQueueTime(TimeUnit.MILLISECONDS.toNanos(delayMs));
+                        continue;
+                    } else {
+                        logger.error("Vision API速率限制(429)，已达到最大重试次数");
+                        throw new RuntimeException("API速率限制，请稍后重试");
                     }
+                }
 
-                    if (!response.isSuccessful()) {
-                        logger.warn("Vision API调用失败: HTTP {}, body={}", response.code(),
-                                responseBody.length() > 200 ? responseBody.substring(0, 200) : responseBody);
-                        return "图片识别失败: HTTP " + response.code();
-                    }
+                if (!response.isSuccessful()) {
+                    logger.warn("Vision API调用失败: HTTP {}, body={}", response.code(),
+                            responseBody.length() > 200 ? responseBody.substring(0, 200) : responseBody);
+                    throw new RuntimeException("HTTP " + response.code());
+                }
 
-                    // 解析响应
-                    com.fasterxml.jackson.databind.JsonNode json = objectMapper.readTree(responseBody);
-                    if (json.has("choices") && json.get("choices").size() > 0) {
-                        com.fasterxml.jackson.databind.JsonNode message = json.get("choices").get(0).get("message");
-                        if (message != null && message.has("content")) {
-                            String result = message.get("content").asText();
-                            // 记录token使用情况
-                            if (json.has("usage")) {
-                                com.fasterxml.jackson.databind.JsonNode usage = json.get("usage");
-                                logger.info("Vision API token使用: prompt={}, completion={}, total={}",
-                                        usage.has("prompt_tokens") ? usage.get("prompt_tokens").asInt() : "?",
-                                        usage.has("completion_tokens") ? usage.get("completion_tokens").asInt() : "?",
-                                        usage.has("total_tokens") ? usage.get("total_tokens").asInt() : "?");
-                            }
-                            return result != null && !result.isEmpty() ? result.trim() : "无法识别图片内容";
-                        }
+                // 解析响应
+                com.fasterxml.jackson.databind.JsonNode json = objectMapper.readTree(responseBody);
+                recordVisionUsage(timer, json);
+                if (json.has("choices") && json.get("choices").size() > 0) {
+                    com.fasterxml.jackson.databind.JsonNode message = json.get("choices").get(0).get("message");
+                    if (message != null && message.has("content")) {
+                        return message.get("content").asText();
                     }
-
-                    return "无法识别图片内容";
                 }
+                return null;
             }
+        }
 
-            return "图片识别失败: 超过最大重试次数";
-        } catch (Exception e) {
-            logger.warn("图片识别失败: {}", e.getMessage(), e);
-            return "图片识别失败: " + e.getMessage();
+        throw new RuntimeException("超过最大重试次数");
+    }
+
+    /**
+     * 从Vision API响应中读取usage并计入指标
+     */
+    private void recordVisionUsage(LLMMetrics.CallTimer timer, com.fasterxml.jackson.databind.JsonNode json) {
+        com.fasterxml.jackson.databind.JsonNode usage = json.get("usage");
+        if (usage == null) {
+            timer.success(-1, -1, -1);
+            return;
         }
+        long prompt = usage.has("prompt_tokens") ? usage.get("prompt_tokens").asLong() : -1;
+        long completion = usage.has("completion_tokens") ? usage.get("completion_tokens").asLong() : -1;
+        long total = usage.has("total_tokens") ? usage.get("total_tokens").asLong() : -1;
+        timer.success(prompt, completion, total);
+        logger.info("Vision API token使用: prompt={}, completion={}, total={}", prompt, completion, total);
     }
 
     /**
-     * 构建Vision API请求JSON
+     * 构建Vision API请求体
      * 必须使用正确的multimodal content结构（数组形式）
      */
-    private String buildVisionRequestJson(String modelId, String imageBase64) {
+    private RequestBody buildVisionRequestBody(String modelId, ImagePreprocessor.ProcessedImage image) {
         // 手动构建JSON以确保content是数组而不是字符串
         StringBuilder json = new StringBuilder();
         json.append("{\n");
@@ -304,105 +476,73 @@ public class VolcanoService implements LLMService {
         json.append("      \"content\": [\n");
         json.append("        {\n");
         json.append("          \"type\": \"text\",\n");
-        json.append("          \"text\": \"请提取图片中的所有信息，需要识别出图片中流程图的逻辑、图片中的所有文字，输出的文字表述需有助于测试用例编写。**关注约束条件**：对于输入字段，明确提取长度、格式、类型等约束（如最大长度、最小值、允许的特殊字符等）。\"\n");
+        json.append("          \"text\": \"").append(VISION_PROMPT).append("\"\n");
 
         json.append("        },\n");
-        json.append("        {\n");
-        json.append("          \"type\": \"image_url\",\n");
-        json.append("          \"image_url\": {\n");
-        json.append("            \"url\": \"data:image/jpeg;base64,").append(imageBase64).append("\"\n");
-        json.append("          }\n");
-        json.append("        }\n");
+        Base64JsonRequestBody.Builder body = Base64JsonRequestBody.builder();
+        appendImagePart(body, json, image);
+        json.append("\n");
         json.append("      ]\n");
         json.append("    }\n");
         json.append("  ],\n");
         json.append("  \"max_tokens\": 1000\n"); // 限制输出token
         json.append("}");
-        return json.toString();
+        return body.text(json.toString()).build();
     }
 
     /**
-     * 压缩图片Base64以减少token消耗
-     * 更激进的压缩策略：512px宽度 + 50%质量
-     * 
-     * @param base64Image 原始Base64图片
-     * @param maxWidth    最大宽度（像素）
-     * @return 压缩后的Base64图片
+     * 构建批量Vision API请求体
+     * content数组：总体说明 + 每张图片前的【图片N】标记文本 + 图片
      */
-    private String compressImageBase64(String base64Image, int maxWidth) {
-        try {
-            // 解码Base64为字节数组
-            byte[] imageBytes = Base64.getDecoder().decode(base64Image);
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-            BufferedImage originalImage = ImageIO.read(bis);
-
-            if (originalImage == null) {
-                logger.warn("无法解析图片，返回原始数据");
-                return base64Image;
-            }
-
-            int originalWidth = originalImage.getWidth();
-            int originalHeight = originalImage.getHeight();
-
-            // 计算缩放比例，强制缩放到maxWidth以内
-            double scale = Math.min(1.0, (double) maxWidth / originalWidth);
-            int newWidth = (int) (originalWidth * scale);
-            int newHeight = (int) (originalHeight * scale);
-
-            // 创建缩放后的RGB图片（去除透明通道）
-            BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = resizedImage.createGraphics();
-            // 填充白色背景（处理透明PNG）
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, newWidth, newHeight);
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-            g2d.dispose();
-
-            logger.info("图片尺寸调整: {}x{} -> {}x{}", originalWidth, originalHeight, newWidth, newHeight);
-
-            // 转换为JPEG格式并使用较低质量压缩（50%）
-            return convertToJpeg(resizedImage, 0.5f);
-
-        } catch (Exception e) {
-            logger.warn("图片压缩失败，使用原始图片: {}", e.getMessage());
-            return base64Image;
+    private RequestBody buildBatchVisionRequestBody(String modelId, List<ImagePreprocessor.ProcessedImage> images) {
+        int count = images.size();
+        Base64JsonRequestBody.Builder body = Base64JsonRequestBody.builder();
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"model\": \"").append(modelId).append("\",\n");
+        json.append("  \"messages\": [\n");
+        json.append("    {\n");
+        json.append("      \"role\": \"user\",\n");
+        json.append("      \"content\": [\n");
+        json.append("        {\n");
+        json.append("          \"type\": \"text\",\n");
+        json.append("          \"text\": \"下面共有").append(count).append("张图片，每张图片前都有【图片N】编号。")
+                .append("请对每张图片分别处理：").append(VISION_PROMPT)
+                .append("\\n输出时严格按图片顺序分段，每段以单独一行的【图片N】开头（N与输入编号一致），")
+                .append("不要合并或遗漏任何图片，不要输出其他内容。\"\n");
+        json.append("        }");
+        for (int i = 0; i < count; i++) {
+            json.append(",\n");
+            json.append("        {\n");
+            json.append("          \"type\": \"text\",\n");
+            json.append("          \"text\": \"【图片").append(i + 1).append("】\"\n");
+            json.append("        },\n");
+            appendImagePart(body, json, images.get(i));
         }
+        json.append("\n");
+        json.append("      ]\n");
+        json.append("    }\n");
+        json.append("  ],\n");
+        json.append("  \"max_tokens\": ").append(Math.min(VISION_BATCH_MAX_OUTPUT_TOKENS,
+                VISION_OUTPUT_TOKENS_PER_IMAGE * count)).append("\n");
+        json.append("}");
+        return body.text(json.toString()).build();
     }
 
     /**
-     * 将BufferedImage转换为JPEG格式的Base64字符串
+     * 追加一个image_url内容块：已累积的JSON文本先写入请求体，图片数据以Base64段写入
      */
-    private String convertToJpeg(BufferedImage image, float quality) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-            // 使用ImageIO写入JPEG（默认压缩）
-            // 如果需要更精细的质量控制，可以使用ImageWriter
-            javax.imageio.ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
-            javax.imageio.ImageWriteParam param = writer.getDefaultWriteParam();
-            param.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(quality);
-
-            javax.imageio.stream.ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-            writer.setOutput(ios);
-            writer.write(null, new javax.imageio.IIOImage(image, null, null), param);
-            writer.dispose();
-            ios.close();
-
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
-        } catch (Exception e) {
-            logger.warn("JPEG转换失败: {}", e.getMessage());
-            // 回退到PNG格式
-            try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(image, "png", baos);
-                return Base64.getEncoder().encodeToString(baos.toByteArray());
-            } catch (Exception ex) {
-                throw new RuntimeException("图片格式转换失败", ex);
-            }
-        }
+    private static void appendImagePart(Base64JsonRequestBody.Builder body, StringBuilder json,
+            ImagePreprocessor.ProcessedImage image) {
+        json.append("        {\n");
+        json.append("          \"type\": \"image_url\",\n");
+        json.append("          \"image_url\": {\n");
+        json.append("            \"url\": \"data:").append(image.mimeType).append(";base64,");
+        body.text(json.toString()).base64(image.data);
+        json.setLength(0);
+        json.append("\"\n");
+        json.append("          }\n");
+        json.append("        }");
     }
 
     /**
@@ -528,4 +668,16 @@ public class VolcanoService implements LLMService {
                 "9. **场景覆盖要求**：无遗漏关键场景，降低冗余度，避免重复覆盖相同场景\n\n" +
                 "只输出JSON数组格式的测试用例，不要包含其他说明文字。";
     }
+
+    private static long parseLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
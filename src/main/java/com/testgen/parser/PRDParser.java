@@ -107,6 +107,249 @@ public class PRDParser {
         }
     }
 
+    /**
+     * 基于文档结构骨架解析PRD
+     * 字段表、接口定义已从文档块直接提取（见 {@link StructuredPRD}），只把剩余文本交给LLM补充，
+     * 提示中列出已提取的内容，避免模型重复输出；剩余文本只有标题时不调用LLM
+     *
+     * @param residualText 未被结构化提取的文本（图片占位符已替换为描述）
+     * @param structure    文档结构骨架
+     * @return 骨架与LLM补充内容合并后的结果
+     */
+    public Map<String, Object> parsePRD(String residualText, StructuredPRD structure) {
+        if (structure == null || structure.isEmpty()) {
+            return parsePRD(residualText);
+        }
+        Map<String, Object> base = copyOf(structure.skeleton);
+        System.out.println("[解析] 已按文档结构提取 " + structure.fieldCount + " 个字段、"
+                + structure.interfaceCount + " 个接口");
+        if (!hasContentBeyondHeadings(residualText)) {
+            logger.info("文档内容已全部按结构提取，跳过LLM解析");
+            validateResult(base);
+            return base;
+        }
+
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("（以下PRD中的字段表和接口定义已按文档结构直接提取：\n");
+        appendExtractedSummary(prompt, base);
+        prompt.append("请只补充其余内容：交互流程、视觉反馈、校验与业务规则、异常场景、接口响应、前后端协同逻辑，")
+                .append("以及上述结构未覆盖的模块；内容属于已提取的模块时使用相同的moduleName，")
+                .append("不必重复输出已提取的字段和接口。）\n\n")
+                .append(residualText);
+
+        logger.info("结构化提取后LLM补充解析，文本长度: {}", residualText.length());
+        Map<String, Object> delta = parsePRD(prompt.toString());
+        return mergeParsedPRD(base, delta);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendExtractedSummary(StringBuilder prompt, Map<String, Object> skeleton) {
+        for (Object item : (List<Object>) skeleton.getOrDefault("frontendModules", Collections.emptyList())) {
+            Map<String, Object> module = (Map<String, Object>) item;
+            List<String> labels = new ArrayList<>();
+            for (Object element : (List<Object>) module.getOrDefault("pageElements", Collections.emptyList())) {
+                labels.add(String.valueOf(((Map<String, Object>) element).get("label")));
+            }
+            prompt.append("- 前端模块「").append(module.get("moduleName")).append("」页面元素：")
+                    .append(String.join("、", labels)).append("\n");
+        }
+        for (Object item : (List<Object>) skeleton.getOrDefault("backendModules", Collections.emptyList())) {
+            Map<String, Object> module = (Map<String, Object>) item;
+            List<String> interfaces = new ArrayList<>();
+            for (Object def : (List<Object>) module.getOrDefault("interfaces", Collections.emptyList())) {
+                Map<String, Object> interfaceDef = (Map<String, Object>) def;
+                Map<String, Object> params = (Map<String, Object>) interfaceDef.get("params");
+                interfaces.add(interfaceDef.get("method") + " " + interfaceDef.get("path")
+                        + (params != null && !params.isEmpty() ? "（参数 " + String.join("、", params.keySet()) + "）" : ""));
+            }
+            prompt.append("- 后端模块「").append(module.get("moduleName")).append("」接口：")
+                    .append(interfaces.isEmpty() ? "无" : String.join("；", interfaces)).append("\n");
+        }
+    }
+
+    /**
+     * 文本是否还有标题行以外的内容
+     */
+    private static boolean hasContentBeyondHeadings(String text) {
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.matches("#{1,9} .*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 深拷贝骨架（骨架随文档内容缓存，合并时会原地修改）
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> copyOf(Map<String, Object> skeleton) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsBytes(skeleton), Map.class);
+        } catch (IOException e) {
+            throw new RuntimeException("复制PRD骨架失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 增量解析：只解析新增的PRD章节，并合并到已有解析结果中
+     * 用于文本部分先行解析、图片描述稍后到达的场景，已有模块名会告知模型，使同一模块的内容合并到一起
+     *
+     * @param base         已有解析结果（会被原地更新）
+     * @param sectionsText 需要补充解析的章节文本
+     * @return 合并后的结果（即base）
+     */
+    public Map<String, Object> parsePRDIncrement(Map<String, Object> base, String sectionsText) {
+        Set<String> knownModules = new LinkedHashSet<>();
+        collectNames(base.get("frontendModules"), "moduleName", knownModules);
+        collectNames(base.get("backendModules"), "moduleName", knownModules);
+
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("（以下是PRD中的部分章节，用于补充已有的解析结果。");
+        if (!knownModules.isEmpty()) {
+            prompt.append("已解析的模块：").append(String.join("、", knownModules))
+                    .append("；内容属于这些模块时请使用相同的moduleName。");
+        }
+        prompt.append("只输出这些章节中的信息。）\n\n").append(sectionsText);
+
+        logger.info("增量解析PRD章节，文本长度: {}", sectionsText.length());
+        System.out.println("[解析] 增量解析含图片的章节...");
+        Map<String, Object> delta = parsePRD(prompt.toString());
+        return mergeParsedPRD(base, delta);
+    }
+
+    /**
+     * 合并两份解析结果
+     * 前后端模块按moduleName、协同逻辑按name合并；同名条目的列表字段取并集，其他字段保留已有值
+     *
+     * @param base  已有结果（原地更新）
+     * @param delta 新增结果
+     * @return base
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> mergeParsedPRD(Map<String, Object> base, Map<String, Object> delta) {
+        mergeNamedList(base, delta, "frontendModules", "moduleName");
+        mergeNamedList(base, delta, "backendModules", "moduleName");
+        mergeNamedList(base, delta, "crossModuleLogics", "name");
+        for (Map.Entry<String, Object> e : delta.entrySet()) {
+            base.putIfAbsent(e.getKey(), e.getValue());
+        }
+        return base;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void mergeNamedList(Map<String, Object> base, Map<String, Object> delta,
+                                       String field, String nameKey) {
+        Object deltaValue = delta.get(field);
+        if (!(deltaValue instanceof List)) {
+            return;
+        }
+        Object baseValue = base.get(field);
+        List<Object> target;
+        if (baseValue instanceof List) {
+            target = (List<Object>) baseValue;
+        } else {
+            target = new ArrayList<>();
+            base.put(field, target);
+        }
+
+        Map<String, Map<String, Object>> byName = new HashMap<>();
+        for (Object item : target) {
+            if (item instanceof Map && ((Map<String, Object>) item).get(nameKey) != null) {
+                byName.putIfAbsent(String.valueOf(((Map<String, Object>) item).get(nameKey)),
+                        (Map<String, Object>) item);
+            }
+        }
+        for (Object item : (List<Object>) deltaValue) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> incoming = (Map<String, Object>) item;
+            Object name = incoming.get(nameKey);
+            Map<String, Object> existing = name != null ? byName.get(String.valueOf(name)) : null;
+            if (existing == null) {
+                target.add(incoming);
+                if (name != null) {
+                    byName.put(String.valueOf(name), incoming);
+                }
+                continue;
+            }
+            for (Map.Entry<String, Object> e : incoming.entrySet()) {
+                Object current = existing.get(e.getKey());
+                if (current instanceof List && e.getValue() instanceof List) {
+                    mergeList((List<Object>) current, (List<Object>) e.getValue());
+                } else if (current == null) {
+                    existing.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 列表取并集；接口按 method+path、页面元素按 label 视为同一条目，补充已有条目缺少的字段
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeList(List<Object> target, List<Object> incoming) {
+        for (Object v : incoming) {
+            if (target.contains(v)) {
+                continue;
+            }
+            String key = itemKey(v);
+            Map<String, Object> existing = null;
+            if (key != null) {
+                for (Object t : target) {
+                    if (key.equals(itemKey(t))) {
+                        existing = (Map<String, Object>) t;
+                        break;
+                    }
+                }
+            }
+            if (existing == null) {
+                target.add(v);
+                continue;
+            }
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) v).entrySet()) {
+                Object current = existing.get(e.getKey());
+                if (current instanceof Map && e.getValue() instanceof Map) {
+                    for (Map.Entry<String, Object> p : ((Map<String, Object>) e.getValue()).entrySet()) {
+                        ((Map<String, Object>) current).putIfAbsent(p.getKey(), p.getValue());
+                    }
+                } else if (current instanceof List && e.getValue() instanceof List) {
+                    mergeList((List<Object>) current, (List<Object>) e.getValue());
+                } else if (current == null || "".equals(current)) {
+                    existing.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String itemKey(Object item) {
+        if (!(item instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> map = (Map<String, Object>) item;
+        if (map.get("path") != null) {
+            return String.valueOf(map.get("method")).toUpperCase() + " " + map.get("path");
+        }
+        if (map.get("label") != null) {
+            return "label:" + map.get("label");
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectNames(Object list, String nameKey, Set<String> names) {
+        if (list instanceof List) {
+            for (Object item : (List<Object>) list) {
+                if (item instanceof Map && ((Map<String, Object>) item).get(nameKey) != null) {
+                    names.add(String.valueOf(((Map<String, Object>) item).get(nameKey)));
+                }
+            }
+        }
+    }
+
     /**
      * 清理LLM返回的响应内容
      * 移除Markdown代码块标记和多余空白，并检测/修复截断的JSON
@@ -0,0 +1,164 @@
+package com.testgen.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * 与图片识别并行的PRD解析
+ * 文档文本到达后立即解析去掉图片占位符的全文，同时图片在后台识别；
+ * 图片全部识别完成后，只把包含图片的章节（填入图片描述）增量解析并合并到结果中。
+ * 端到端耗时从“识别 + 解析”变为“max(识别, 解析) + 少量增量解析”。
+ *
+ * 章节按标题行（DocxBlockConverter输出的 "# " ~ "######### " 前缀）划分。
+ * 提供文档结构骨架时，只解析骨架之外的剩余文本。
+ * 含图片的章节占全文比例过高时（如整篇没有标题），增量解析几乎等于重新解析，此时直接等待图片后解析一次。
+ */
+public class ProgressivePRDParser {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressivePRDParser.class);
+
+    private static final Pattern HEADING = Pattern.compile("^#{1,9} .*");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{IMAGE_PLACEHOLDER_\\d+\\}\\}");
+    // 含图片章节的字符数超过全文该比例时不做并行解析
+    private static final double MAX_IMAGE_SECTION_RATIO = 0.6;
+
+    private final PRDParser prdParser;
+
+    public ProgressivePRDParser(PRDParser prdParser) {
+        this.prdParser = prdParser;
+    }
+
+    /**
+     * 解析结果及各阶段耗时
+     */
+    public static class Result {
+        public Map<String, Object> prdData;
+        public String fullText;          // 填入图片描述后的完整PRD文本
+        public boolean overlapped;       // 是否与图片识别并行解析
+        public int imageSectionCount;    // 增量解析的章节数
+        public long textParseMs;         // 文本部分解析耗时
+        public long imageWaitMs;         // 文本解析完成后等待图片识别的时间
+        public long incrementalParseMs;  // 含图片章节的增量解析耗时
+    }
+
+    /**
+     * 解析PRD
+     *
+     * @param textWithPlaceholders 带 {{IMAGE_PLACEHOLDER_n}} 占位符的文档文本
+     * @param imagesDone           图片识别完成信号
+     * @param fillImages           把文本片段中的占位符替换为图片描述（imagesDone完成后调用）
+     */
+    public Result parse(String textWithPlaceholders, CompletableFuture<?> imagesDone,
+                        UnaryOperator<String> fillImages) throws InterruptedException {
+        return parse(textWithPlaceholders, null, imagesDone, fillImages);
+    }
+
+    /**
+     * 解析PRD，已按文档结构提取的部分不再交给LLM
+     * 只对 structure.residualText 做上述并行/增量解析，结果合并到结构骨架中
+     *
+     * @param textWithPlaceholders 带占位符的完整文档文本（用于生成 Result.fullText）
+     * @param structure            文档结构骨架，为null或为空时等同于 {@link #parse(String, CompletableFuture, UnaryOperator)}
+     */
+    public Result parse(String textWithPlaceholders, StructuredPRD structure, CompletableFuture<?> imagesDone,
+                        UnaryOperator<String> fillImages) throws InterruptedException {
+        StructuredPRD skeleton = structure != null && !structure.isEmpty() ? structure : null;
+        String parseText = skeleton != null ? skeleton.residualText : textWithPlaceholders;
+        Result result = new Result();
+        List<String> sections = splitSections(parseText);
+        List<String> imageSections = new ArrayList<>();
+        int imageChars = 0;
+        for (String section : sections) {
+            if (PLACEHOLDER.matcher(section).find()) {
+                imageSections.add(section);
+                imageChars += section.length();
+            }
+        }
+
+        if (imageSections.isEmpty() || imageChars > parseText.length() * MAX_IMAGE_SECTION_RATIO) {
+            // 没有图片，或图片分布在大部分章节中：等待图片后一次解析
+            long waitStart = System.currentTimeMillis();
+            awaitImages(imagesDone);
+            result.imageWaitMs = System.currentTimeMillis() - waitStart;
+            result.fullText = fillImages.apply(textWithPlaceholders);
+            long parseStart = System.currentTimeMillis();
+            result.prdData = skeleton != null
+                    ? prdParser.parsePRD(fillImages.apply(parseText), skeleton)
+                    : prdParser.parsePRD(result.fullText);
+            result.textParseMs = System.currentTimeMillis() - parseStart;
+            return result;
+        }
+
+        result.overlapped = true;
+        result.imageSectionCount = imageSections.size();
+        System.out.println("[解析] 图片识别期间先解析文本，" + imageSections.size() + " 个含图片章节稍后增量解析");
+
+        // 1. 文本部分：去掉占位符后的全文
+        long parseStart = System.currentTimeMillis();
+        String textOnly = PLACEHOLDER.matcher(parseText).replaceAll("");
+        Map<String, Object> base = skeleton != null
+                ? prdParser.parsePRD(textOnly, skeleton)
+                : prdParser.parsePRD(textOnly);
+        result.textParseMs = System.currentTimeMillis() - parseStart;
+
+        // 2. 等待图片识别完成
+        long waitStart = System.currentTimeMillis();
+        awaitImages(imagesDone);
+        result.imageWaitMs = System.currentTimeMillis() - waitStart;
+
+        // 3. 只增量解析含图片的章节
+        StringBuilder increment = new StringBuilder();
+        for (String section : imageSections) {
+            increment.append(fillImages.apply(section)).append("\n");
+        }
+        long incrementStart = System.currentTimeMillis();
+        try {
+            result.prdData = prdParser.parsePRDIncrement(base, increment.toString());
+        } catch (RuntimeException e) {
+            // 增量解析失败时保留文本部分的结果
+            logger.warn("含图片章节增量解析失败，使用文本解析结果: {}", e.getMessage());
+            result.prdData = base;
+        }
+        result.incrementalParseMs = System.currentTimeMillis() - incrementStart;
+        result.fullText = fillImages.apply(textWithPlaceholders);
+
+        logger.info("并行解析完成: 文本解析{}ms, 等待图片{}ms, 增量解析{}ms",
+                result.textParseMs, result.imageWaitMs, result.incrementalParseMs);
+        return result;
+    }
+
+    /**
+     * 按标题行划分章节，第一个标题之前的内容为单独一节
+     */
+    static List<String> splitSections(String text) {
+        List<String> sections = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : text.split("\n", -1)) {
+            if (HEADING.matcher(line).matches() && current.length() > 0) {
+                sections.add(current.toString());
+                current.setLength(0);
+            }
+            current.append(line).append('\n');
+        }
+        if (current.length() > 0) {
+            sections.add(current.toString());
+        }
+        return sections;
+    }
+
+    private static void awaitImages(CompletableFuture<?> imagesDone) throws InterruptedException {
+        try {
+            imagesDone.get();
+        } catch (ExecutionException e) {
+            // 识别失败的图片已带有失败说明，继续用现有内容解析
+            logger.warn("图片识别未全部完成: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+    }
+}
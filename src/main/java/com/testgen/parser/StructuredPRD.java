@@ -0,0 +1,37 @@
+package com.testgen.parser;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从文档结构（标题、表格、代码块）直接提取的PRD骨架
+ * skeleton 与LLM解析结果格式相同；residualText 为未被提取的文本（保留标题行和图片占位符），
+ * 只需把这部分交给LLM补充，见 {@link PRDParser#parsePRD(String, StructuredPRD)}。
+ */
+public class StructuredPRD {
+    public final Map<String, Object> skeleton;
+    public final String residualText;
+    public final int fieldCount;      // 从表格提取的字段/参数数
+    public final int interfaceCount;  // 从代码块提取的接口数
+    public final int tableCount;      // 识别为字段表或错误码表的表格数
+
+    public StructuredPRD(Map<String, Object> skeleton, String residualText,
+                         int fieldCount, int interfaceCount, int tableCount) {
+        this.skeleton = skeleton;
+        this.residualText = residualText;
+        this.fieldCount = fieldCount;
+        this.interfaceCount = interfaceCount;
+        this.tableCount = tableCount;
+    }
+
+    /**
+     * 是否提取到了任何结构
+     */
+    public boolean isEmpty() {
+        return isEmptyList(skeleton.get("frontendModules")) && isEmptyList(skeleton.get("backendModules"));
+    }
+
+    private static boolean isEmptyList(Object value) {
+        return !(value instanceof List) || ((List<?>) value).isEmpty();
+    }
+}
@@ -0,0 +1,287 @@
+package com.testgen.pipeline;
+
+import com.testgen.concurrent.SharedExecutors;
+import com.testgen.feishu.FeishuEventCallback;
+import com.testgen.feishu.FeishuException;
+import com.testgen.feishu.FeishuService;
+import com.testgen.generator.TestCaseGenerator;
+import com.testgen.model.testcase.TestCase;
+import com.testgen.parser.PRDParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 关注文档的变更监听与用例预生成
+ * 飞书推送 drive.file.edit_v1 事件后，按文档去抖（连续编辑只在停止编辑一段时间后刷新一次，
+ * 持续编辑时最长等待 maxDelay 也会刷新），然后在低优先级的后台线程池中
+ * 获取文档 → 解析PRD → 生成用例，结果写入 {@link PrecomputedSuiteStore}。
+ * 同一文档同时只有一次刷新，刷新期间的新事件在刷新结束后再合并执行一次。
+ * 只处理通过 {@link #watch} 关注过的文档：事件回调地址未必配置校验token，
+ * 不能让任意请求为任意文档触发后台解析。
+ */
+public class DocumentWatchService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentWatchService.class);
+
+    private static final long DEBOUNCE_MILLIS = TimeUnit.SECONDS.toMillis(
+            parseIntEnv("FEISHU_EVENT_DEBOUNCE_SECONDS", 30));
+    private static final long MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(
+            parseIntEnv("FEISHU_EVENT_MAX_DELAY_SECONDS", 300));
+    // 记住的事件ID数（飞书未及时收到响应时会重试推送同一事件）
+    private static final int RECENT_EVENT_IDS = 1000;
+
+    private final FeishuService feishuService;
+    private final PipelineService pipelineService;
+    private final PRDParser prdParser;
+    private final boolean useLLM;
+    private final PrecomputedSuiteStore store = PrecomputedSuiteStore.getInstance();
+
+    // 文档ID -> 用户关注时提供的链接
+    private final Map<String, String> watchedUrls = new ConcurrentHashMap<>();
+    // 文档ID -> 去抖与刷新状态（受this锁保护）
+    private final Map<String, RefreshState> states = new LinkedHashMap<>();
+    private final Set<String> recentEventIds = Collections.newSetFromMap(
+            new LinkedHashMap<String, Boolean>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > RECENT_EVENT_IDS;
+                }
+            });
+
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder duplicateEvents = new LongAdder();
+    private final LongAdder unwatchedEvents = new LongAdder();
+    private final LongAdder debouncedEvents = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder unchangedRefreshes = new LongAdder();
+    private final LongAdder failedRefreshes = new LongAdder();
+
+    public DocumentWatchService(FeishuService feishuService, PipelineService pipelineService, boolean useLLM) {
+        this.feishuService = feishuService;
+        this.pipelineService = pipelineService;
+        this.prdParser = new PRDParser(useLLM);
+        this.useLLM = useLLM;
+    }
+
+    /**
+     * 关注文档：订阅变更事件并立即预生成一次
+     * 订阅失败（如应用未开通事件权限）不影响预生成，仍可通过本地发送的事件触发刷新
+     *
+     * @param url 飞书文档链接
+     * @return 实际文档ID
+     */
+    public String watch(String url) throws FeishuException {
+        String documentId;
+        try {
+            documentId = feishuService.subscribeDocumentEvents(url);
+        } catch (FeishuException e) {
+            logger.warn("订阅文档事件失败: {}", e.getMessage());
+            documentId = feishuService.resolveDocumentId(url);
+        }
+        watchedUrls.put(documentId, url);
+        System.out.println("[文档监听] 关注文档 " + documentId);
+        enqueue(documentId);
+        return documentId;
+    }
+
+    /**
+     * 处理飞书推送的事件
+     *
+     * @return 是否触发了刷新（重复事件、非文档编辑事件、未关注文档的事件返回false）
+     */
+    public boolean onEvent(FeishuEventCallback.Event event) {
+        eventsReceived.increment();
+        if (event.eventId != null) {
+            synchronized (recentEventIds) {
+                if (!recentEventIds.add(event.eventId)) {
+                    duplicateEvents.increment();
+                    return false;
+                }
+            }
+        }
+        if (!FeishuEventCallback.FILE_EDIT.equals(event.type) || event.fileToken == null
+                || (event.fileType != null && !"docx".equals(event.fileType))) {
+            logger.debug("忽略事件: type={}, fileType={}", event.type, event.fileType);
+            return false;
+        }
+        if (!watchedUrls.containsKey(event.fileToken)) {
+            unwatchedEvents.increment();
+            logger.debug("忽略未关注文档的事件: {}", event.fileToken);
+            return false;
+        }
+        documentChanged(event.fileToken);
+        return true;
+    }
+
+    /**
+     * 文档已变更：推迟刷新，去抖时间内的后续变更只会把刷新继续推迟
+     * 未关注的文档忽略
+     */
+    public synchronized void documentChanged(String documentId) {
+        if (!watchedUrls.containsKey(documentId)) {
+            return;
+        }
+        RefreshState state = states.computeIfAbsent(documentId, id -> new RefreshState());
+        long now = System.currentTimeMillis();
+        if (state.pending != null) {
+            state.pending.cancel(false);
+            debouncedEvents.increment();
+        } else {
+            state.firstChangeAt = now;
+        }
+        long delay = Math.max(0, Math.min(DEBOUNCE_MILLIS, state.firstChangeAt + MAX_DELAY_MILLIS - now));
+        try {
+            state.pending = SharedExecutors.scheduler().schedule(() -> enqueue(documentId),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            states.remove(documentId);
+        }
+    }
+
+    /**
+     * 提交刷新任务；该文档正在刷新时标记为脏，刷新结束后再执行一次
+     */
+    private synchronized void enqueue(String documentId) {
+        RefreshState state = states.computeIfAbsent(documentId, id -> new RefreshState());
+        if (state.pending != null) {
+            state.pending.cancel(false);
+            state.pending = null;
+        }
+        if (state.running) {
+            state.dirty = true;
+            return;
+        }
+        state.running = true;
+        try {
+            SharedExecutors.background().execute(() -> refresh(documentId));
+        } catch (RejectedExecutionException e) {
+            states.remove(documentId);
+        }
+    }
+
+    private void refresh(String documentId) {
+        try {
+            refreshNow(documentId);
+        } catch (Exception e) {
+            failedRefreshes.increment();
+            logger.warn("文档 {} 用例预生成失败: {}", documentId, e.getMessage());
+        } finally {
+            synchronized (this) {
+                RefreshState state = states.get(documentId);
+                if (state != null) {
+                    state.running = false;
+                    if (state.dirty) {
+                        state.dirty = false;
+                        enqueue(documentId);
+                    } else if (state.pending == null) {
+                        states.remove(documentId);
+                    }
+                }
+            }
+        }
+    }
+
+    private void refreshNow(String documentId) throws FeishuException {
+        long start = System.currentTimeMillis();
+        String url = watchedUrls.get(documentId);
+        if (url == null) {
+            return;
+        }
+
+        FeishuService.DocumentContent content = feishuService.getDocumentContent(url, false);
+        String revisionId = content.revisionId;
+        PrecomputedSuiteStore.Suite existing = store.latest(documentId);
+        if (existing != null && revisionId != null && revisionId.equals(existing.revisionId)) {
+            // 事件可能来自评论等不影响正文的操作
+            unchangedRefreshes.increment();
+            return;
+        }
+
+        String prdText = content.getFullContent();
+        // docx文档按块结构提取的部分不再交给LLM
+        Map<String, Object> prdData = content.structure != null
+                ? prdParser.parsePRD(new FeishuService.DocumentContent(content.structure.residualText,
+                        content.images).getFullContent(), content.structure)
+                : prdParser.parsePRD(prdText);
+        // 用户稍后打开同一文档并点击生成时可直接取用解析结果
+        pipelineService.rememberParse(prdText, prdData);
+
+        List<TestCase> testCases = new TestCaseGenerator().generateFromPRDData(prdData);
+        Map<String, Object> result = PipelineService.buildGenerateResponse(testCases, useLLM, false);
+        result.put("prdText", prdText);
+        result.put("imageCount", content.images.size());
+
+        long computeMs = System.currentTimeMillis() - start;
+        store.put(new PrecomputedSuiteStore.Suite(documentId, revisionId, url, result, computeMs));
+        refreshes.increment();
+        System.out.println("[文档监听] 文档 " + documentId + " (revision=" + revisionId + ") 已预生成 "
+                + testCases.size() + " 条用例，耗时 " + computeMs + "ms");
+    }
+
+    /**
+     * 查找文档最新的预生成结果
+     *
+     * @param url 飞书文档链接
+     * @return 结果；尚未生成时返回null
+     */
+    public PrecomputedSuiteStore.Suite lookup(String url) throws FeishuException {
+        return store.latest(feishuService.resolveDocumentId(url));
+    }
+
+    /**
+     * 文档是否有尚未完成的刷新（等待去抖或正在生成）
+     */
+    public synchronized boolean isRefreshing(String documentId) {
+        return states.containsKey(documentId);
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("watched", watchedUrls.size());
+        synchronized (this) {
+            m.put("pendingRefreshes", states.size());
+        }
+        m.put("debounceSeconds", TimeUnit.MILLISECONDS.toSeconds(DEBOUNCE_MILLIS));
+        m.put("eventsReceived", eventsReceived.sum());
+        m.put("duplicateEvents", duplicateEvents.sum());
+        m.put("unwatchedEvents", unwatchedEvents.sum());
+        m.put("debouncedEvents", debouncedEvents.sum());
+        m.put("refreshes", refreshes.sum());
+        m.put("unchangedRefreshes", unchangedRefreshes.sum());
+        m.put("failedRefreshes", failedRefreshes.sum());
+        m.put("store", store.snapshot());
+        return m;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static final class RefreshState {
+        ScheduledFuture<?> pending; // 去抖中的刷新
+        long firstChangeAt;         // 本轮去抖中第一次变更的时间
+        boolean running;
+        boolean dirty;              // 刷新期间又有变更
+    }
+}
@@ -0,0 +1,510 @@
+package com.testgen.pipeline;
+
+import com.testgen.concurrent.SharedExecutors;
+import com.testgen.evaluation.TestCaseEvaluator;
+import com.testgen.evaluation.TestCaseEvaluator.EvaluationResult;
+import com.testgen.feishu.FeishuException;
+import com.testgen.feishu.FeishuService;
+import com.testgen.generator.TestCaseGenerator;
+import com.testgen.model.testcase.TestCase;
+import com.testgen.parser.PRDParser;
+import com.testgen.parser.ProgressivePRDParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 飞书文档 → 测试用例 端到端流水线
+ * <ul>
+ *   <li>{@link #start}：服务端一次完成 获取文档 → 图片识别 → 解析 → 生成 → 评测，前端只需轮询结果</li>
+ *   <li>{@link #speculate}：文档内容一返回就在后台预先解析PRD；用户点击生成时按PRD文本的SHA-256取用结果，
+ *       通常此时解析已经完成或接近完成</li>
+ * </ul>
+ * 流水线运行在 SharedExecutors.pipeline() 上，预解析在 speculation() 上，图片识别在 jobs() 上：
+ * 流水线可等待预解析和图片识别，预解析只等待图片识别，不存在反向等待，因此不会死锁；
+ * 预解析等待图片识别时也不会占用流水线线程。
+ */
+public class PipelineService {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineService.class);
+
+    private static final boolean SPECULATIVE_PARSE_ENABLED =
+            !"false".equalsIgnoreCase(System.getenv("PIPELINE_SPECULATIVE_PARSE"));
+    private static final int SPECULATION_MAX_ENTRIES = parseIntEnv("PIPELINE_SPECULATION_MAX_ENTRIES", 20);
+    private static final long SPECULATION_TTL_MILLIS = TimeUnit.MINUTES.toMillis(
+            parseIntEnv("PIPELINE_SPECULATION_TTL_MINUTES", 30));
+    private static final long RUN_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(
+            parseIntEnv("PIPELINE_RUN_RETENTION_MINUTES", 30));
+    // 同步等待流水线结果的上限，超时后调用方改为按runId轮询，避免长时间占用HTTP线程
+    private static final long WAIT_TIMEOUT_SECONDS = parseIntEnv("PIPELINE_WAIT_SECONDS", 60);
+
+    private final FeishuService feishuService;
+    private final boolean useLLM;
+    private final ProgressivePRDParser progressiveParser;
+
+    private final ConcurrentHashMap<String, PipelineRun> runs = new ConcurrentHashMap<>();
+    // 预解析结果，key为 "text:"+PRD文本SHA-256 或 "doc:"+文档ID@修订号（LRU，受this锁保护）
+    private final LinkedHashMap<String, Speculation> speculations = new LinkedHashMap<>(32, 0.75f, true);
+
+    private final LongAdder speculationsStarted = new LongAdder();
+    private final LongAdder speculationHits = new LongAdder();
+    private final LongAdder speculationMisses = new LongAdder();
+
+    public PipelineService(FeishuService feishuService, boolean useLLM) {
+        this.feishuService = feishuService;
+        this.useLLM = useLLM;
+        this.progressiveParser = new ProgressivePRDParser(new PRDParser(useLLM));
+    }
+
+    // ========== 预解析 ==========
+
+    /**
+     * 文档内容已获取时调用：在后台开始解析PRD
+     *
+     * @param content    文档内容（图片可能仍在识别）
+     * @param imagesDone 图片识别完成信号；图片已齐全时传入已完成的future
+     */
+    public void speculate(FeishuService.DocumentContent content, CompletableFuture<?> imagesDone) {
+        if (!SPECULATIVE_PARSE_ENABLED) {
+            return;
+        }
+        String docKey = docKey(content);
+        if (docKey != null && findSpeculation(docKey) != null) {
+            return;
+        }
+        if (!content.hasPendingImages() && findSpeculation(textKey(content.getFullContent())) != null) {
+            return;
+        }
+        Speculation speculation = new Speculation(() -> parse(content, imagesDone));
+        try {
+            SharedExecutors.speculation().execute(speculation::runIfUnclaimed);
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        speculationsStarted.increment();
+        System.out.println("[流水线] 文档内容已就绪，后台预解析PRD...");
+        registerSpeculation(content, imagesDone, speculation);
+    }
+
+    /**
+     * 取用预解析结果
+     * 解析仍在进行时等待其完成（它比重新解析更早结束）；没有对应的预解析或预解析失败时返回null
+     *
+     * 预解析使用服务端的LLM配置，请求的解析方式与之不同时调用方不应取用
+     *
+     * @param prdText 用户提交的PRD文本
+     */
+    public Map<String, Object> takeSpeculativeParse(String prdText) {
+        if (!SPECULATIVE_PARSE_ENABLED || prdText == null) {
+            return null;
+        }
+        Speculation speculation = findSpeculation(textKey(prdText));
+        if (speculation == null) {
+            speculationMisses.increment();
+            return null;
+        }
+        try {
+            boolean pending = !speculation.future.isDone();
+            // 预解析仍在排队时由当前线程直接执行，不必等待队列中的其他预解析
+            speculation.runIfUnclaimed();
+            Map<String, Object> prdData = speculation.future.get().prdData;
+            speculationHits.increment();
+            System.out.println("[流水线] 使用预解析结果" + (pending ? "（等待完成）" : ""));
+            return prdData;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("预解析失败，重新解析: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            speculationMisses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * 记录已完成的解析结果（如文档变更后后台预生成时的解析），之后提交相同PRD文本的生成请求可直接取用
+     */
+    public void rememberParse(String prdText, Map<String, Object> prdData) {
+        if (!SPECULATIVE_PARSE_ENABLED) {
+            return;
+        }
+        ProgressivePRDParser.Result parsed = new ProgressivePRDParser.Result();
+        parsed.prdData = prdData;
+        parsed.fullText = prdText;
+        Speculation speculation = new Speculation(() -> parsed);
+        speculation.runIfUnclaimed();
+        putSpeculation(textKey(prdText), speculation);
+    }
+
+    private void registerSpeculation(FeishuService.DocumentContent content, CompletableFuture<?> imagesDone,
+                                     Speculation speculation) {
+        String docKey = docKey(content);
+        if (docKey != null) {
+            putSpeculation(docKey, speculation);
+        }
+        // 完整文本要等图片描述齐全后才能确定
+        imagesDone.whenComplete((r, e) -> putSpeculation(textKey(content.getFullContent()), speculation));
+        // 解析失败的条目不保留
+        speculation.future.whenComplete((r, e) -> {
+            if (e != null) {
+                removeSpeculation(speculation);
+            }
+        });
+    }
+
+    private synchronized Speculation findSpeculation(String key) {
+        Speculation speculation = speculations.get(key);
+        if (speculation != null && System.currentTimeMillis() - speculation.createdAt > SPECULATION_TTL_MILLIS) {
+            speculations.remove(key);
+            return null;
+        }
+        return speculation;
+    }
+
+    private synchronized void putSpeculation(String key, Speculation speculation) {
+        speculations.put(key, speculation);
+        Iterator<Speculation> it = speculations.values().iterator();
+        while (speculations.size() > SPECULATION_MAX_ENTRIES && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private synchronized void removeSpeculation(Speculation speculation) {
+        speculations.values().removeIf(s -> s == speculation);
+    }
+
+    // ========== 端到端流水线 ==========
+
+    /**
+     * 启动流水线
+     *
+     * @param url        飞书文档链接
+     * @param refresh    是否忽略文档缓存
+     * @param enableEval 是否评测生成的用例
+     */
+    public PipelineRun start(String url, boolean refresh, boolean enableEval) throws FeishuException {
+        PipelineRun run = new PipelineRun(UUID.randomUUID().toString().replace("-", ""), url);
+        runs.put(run.id, run);
+        try {
+            SharedExecutors.pipeline().execute(() -> execute(run, refresh, enableEval));
+        } catch (RejectedExecutionException e) {
+            runs.remove(run.id);
+            throw new FeishuException("服务正在关闭，无法启动流水线");
+        }
+        return run;
+    }
+
+    public PipelineRun get(String runId) {
+        return runId != null ? runs.get(runId) : null;
+    }
+
+    private void execute(PipelineRun run, boolean refresh, boolean enableEval) {
+        long start = System.currentTimeMillis();
+        try {
+            // 1. 获取文档文本
+            run.stage = "fetch";
+            FeishuService.DocumentContent content = feishuService.getDocumentText(run.url, refresh);
+            run.timings.put("fetchMs", System.currentTimeMillis() - start);
+
+            // 文档变更后已在后台预生成过当前修订版本时直接使用
+            PrecomputedSuiteStore.Suite suite = refresh ? null
+                    : PrecomputedSuiteStore.getInstance().get(content.getDocumentId(), content.revisionId);
+            if (suite != null) {
+                run.precomputed = true;
+                @SuppressWarnings("unchecked")
+                List<TestCase> testCases = (List<TestCase>) suite.result.get("testCases");
+                if (enableEval && !testCases.isEmpty()) {
+                    run.stage = "evaluate";
+                }
+                Map<String, Object> result = buildGenerateResponse(testCases, useLLM, enableEval);
+                result.put("prdText", suite.result.get("prdText"));
+                result.put("imageCount", suite.result.get("imageCount"));
+                run.result = result;
+                run.stage = "done";
+                return;
+            }
+
+            // 2. 图片识别与解析并行：优先复用同一文档修订版本的预解析
+            run.stage = "parse";
+            long parseStart = System.currentTimeMillis();
+            String docKey = docKey(content);
+            Speculation speculation = docKey != null ? findSpeculation(docKey) : null;
+            ProgressivePRDParser.Result parsed = null;
+            if (speculation != null) {
+                try {
+                    // 预解析若仍在队列中则由本线程直接执行，不必等待预解析线程池排队
+                    speculation.runIfUnclaimed();
+                    parsed = speculation.future.get();
+                    run.speculative = true;
+                    speculationHits.increment();
+                } catch (ExecutionException e) {
+                    logger.warn("预解析失败，重新解析: {}", e.getMessage());
+                }
+            }
+            if (parsed == null) {
+                CompletableFuture<Void> imagesDone = describeImagesAsync(content);
+                Speculation own = new Speculation(() -> parse(content, imagesDone));
+                registerSpeculation(content, imagesDone, own);
+                own.runIfUnclaimed();
+                try {
+                    parsed = own.future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            run.timings.put("parseMs", System.currentTimeMillis() - parseStart);
+            run.timings.put("textParseMs", parsed.textParseMs);
+            run.timings.put("imageWaitMs", parsed.imageWaitMs);
+            run.timings.put("incrementalParseMs", parsed.incrementalParseMs);
+            run.timings.put("overlapped", parsed.overlapped);
+
+            // 3. 生成测试用例（每次使用独立的生成器实例）
+            run.stage = "generate";
+            long generateStart = System.currentTimeMillis();
+            List<TestCase> testCases = new TestCaseGenerator().generateFromPRDData(parsed.prdData);
+            run.timings.put("generateMs", System.currentTimeMillis() - generateStart);
+
+            // 4. 评测并构建响应
+            if (enableEval && !testCases.isEmpty()) {
+                run.stage = "evaluate";
+            }
+            long evaluateStart = System.currentTimeMillis();
+            Map<String, Object> result = buildGenerateResponse(testCases, useLLM, enableEval);
+            if (enableEval) {
+                run.timings.put("evaluateMs", System.currentTimeMillis() - evaluateStart);
+            }
+            result.put("prdText", parsed.fullText);
+            result.put("imageCount", content.images.size());
+            run.result = result;
+            run.stage = "done";
+        } catch (Exception e) {
+            logger.warn("流水线 {} 失败: {}", run.id, e.getMessage());
+            run.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            run.stage = "failed";
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            run.timings.put("totalMs", System.currentTimeMillis() - start);
+            run.completion.complete(null);
+            System.out.println("[流水线] " + run.id + " 结束: " + run.stage + "，耗时 " + run.timings.get("totalMs") + "ms");
+            try {
+                SharedExecutors.scheduler().schedule(() -> runs.remove(run.id),
+                        RUN_RETENTION_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                runs.remove(run.id);
+            }
+        }
+    }
+
+    /**
+     * 在作业线程池中识别图片；没有待识别图片时返回已完成的future
+     */
+    private CompletableFuture<Void> describeImagesAsync(FeishuService.DocumentContent content) {
+        if (!content.hasPendingImages()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                feishuService.describeImages(content, null);
+            } catch (FeishuException e) {
+                throw new CompletionException(e);
+            }
+        }, SharedExecutors.jobs());
+    }
+
+    private ProgressivePRDParser.Result parse(FeishuService.DocumentContent content, CompletableFuture<?> imagesDone) {
+        try {
+            return progressiveParser.parse(content.textContent, content.structure, imagesDone,
+                    fragment -> new FeishuService.DocumentContent(fragment, content.images).getFullContent());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("PRD解析被中断", e);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("speculativeParseEnabled", SPECULATIVE_PARSE_ENABLED);
+        synchronized (this) {
+            m.put("speculations", speculations.size());
+        }
+        m.put("speculationsStarted", speculationsStarted.sum());
+        m.put("speculationHits", speculationHits.sum());
+        m.put("speculationMisses", speculationMisses.sum());
+        m.put("runs", runs.size());
+        return m;
+    }
+
+    /**
+     * 构建生成接口的响应：用例列表、统计信息，启用评测时附带质量评分
+     * 页面生成接口与流水线共用，保证两者返回格式一致
+     */
+    public static Map<String, Object> buildGenerateResponse(List<TestCase> testCases, boolean useLLM,
+                                                            boolean enableEval) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", useLLM ? "使用火山引擎大模型生成成功" : "测试用例生成成功");
+        response.put("testCases", testCases);
+        response.put("count", testCases.size());
+        response.put("useLLM", useLLM);
+
+        // 统计信息
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("total", testCases.size());
+        statistics.put("frontend", testCases.stream()
+                .filter(tc -> "FRONTEND".equals(tc.getSceneType().name())).count());
+        statistics.put("backend", testCases.stream()
+                .filter(tc -> "BACKEND".equals(tc.getSceneType().name())).count());
+        statistics.put("integration", testCases.stream()
+                .filter(tc -> "INTEGRATION".equals(tc.getSceneType().name())).count());
+        statistics.put("exception", testCases.stream()
+                .filter(tc -> "EXCEPTION".equals(tc.getSceneType().name())).count());
+
+        response.put("statistics", statistics);
+
+        // 如果启用评测，执行质量评估
+        if (enableEval && testCases.size() > 0) {
+            try {
+                TestCaseEvaluator evaluator = new TestCaseEvaluator();
+                EvaluationResult evalResult = evaluator.evaluate(testCases);
+
+                // 直接返回完整的评测结果对象
+                response.put("evaluation", evalResult);
+
+                response.put("message",
+                        useLLM ? String.format("使用火山引擎大模型生成成功，质量评分: %.1f", evalResult.getTotalScore())
+                                : String.format("测试用例生成成功，质量评分: %.1f", evalResult.getTotalScore()));
+            } catch (Exception e) {
+                System.err.println("评测失败: " + e.getMessage());
+                e.printStackTrace();
+                // 评测失败不影响用例生成，继续返回
+            }
+        }
+
+        return response;
+    }
+
+    private static String docKey(FeishuService.DocumentContent content) {
+        if (content.getDocumentId() == null || content.revisionId == null) {
+            return null;
+        }
+        return "doc:" + content.getDocumentId() + "@" + content.revisionId;
+    }
+
+    static String textKey(String prdText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(prdText.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder("text:");
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 一次预解析
+     * 解析任务只执行一次：由线程池或最先需要结果的流水线线程认领执行，其余调用方等待future
+     */
+    private static final class Speculation {
+        final CompletableFuture<ProgressivePRDParser.Result> future = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+        private final Supplier<ProgressivePRDParser.Result> task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Speculation(Supplier<ProgressivePRDParser.Result> task) {
+            this.task = task;
+        }
+
+        void runIfUnclaimed() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 单次流水线运行状态
+     */
+    public static class PipelineRun {
+        public final String id;
+        public final String url;
+        public final long createdAt = System.currentTimeMillis();
+        public volatile String stage = "queued"; // queued/fetch/parse/generate/evaluate/done/failed
+        public volatile boolean speculative;     // 是否复用了预解析结果
+        public volatile boolean precomputed;     // 是否直接使用了后台预生成的用例
+        public volatile String error;
+        public volatile Map<String, Object> result;
+        public final Map<String, Object> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+        public final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        PipelineRun(String id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        /**
+         * 等待流水线结束，最多等待 PIPELINE_WAIT_SECONDS（默认60秒）
+         *
+         * @return 是否已结束；超时返回false，调用方应改为按runId查询
+         */
+        public boolean await() throws InterruptedException {
+            try {
+                completion.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                // completion只会正常完成，失败信息记录在error中
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.testgen.pipeline;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预生成测试用例的结果存储
+ * 文档变更后后台重新生成的用例按文档ID保存最新一份（含对应的修订号），
+ * 用户打开该文档时直接返回，无需等待解析和生成。
+ *
+ * 按条目数做LRU淘汰，并设置最长存活时间（TTL）。
+ */
+public final class PrecomputedSuiteStore {
+
+    private static final PrecomputedSuiteStore INSTANCE = new PrecomputedSuiteStore(
+            parseIntEnv("PIPELINE_SUITE_STORE_MAX_ENTRIES", 100),
+            TimeUnit.HOURS.toMillis(parseIntEnv("PIPELINE_SUITE_STORE_TTL_HOURS", 24)));
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    // LRU顺序（accessOrder=true），key为文档ID
+    private final LinkedHashMap<String, Suite> suites = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private PrecomputedSuiteStore(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static PrecomputedSuiteStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 查找文档最新的预生成结果（不校验修订号）
+     *
+     * @return 结果；不存在或已过期时返回null
+     */
+    public synchronized Suite latest(String documentId) {
+        Suite suite = documentId != null ? suites.get(documentId) : null;
+        if (suite != null && System.currentTimeMillis() - suite.computedAt > ttlMillis) {
+            suites.remove(documentId);
+            suite = null;
+        }
+        if (suite == null) {
+            misses.increment();
+        }
+        return suite;
+    }
+
+    /**
+     * 查找指定修订版本的预生成结果
+     *
+     * @return 结果；不存在、已过期或修订号不一致时返回null
+     */
+    public synchronized Suite get(String documentId, String revisionId) {
+        Suite suite = latest(documentId);
+        if (suite == null) {
+            return null;
+        }
+        if (revisionId == null || !revisionId.equals(suite.revisionId)) {
+            staleHits.increment();
+            return null;
+        }
+        hits.increment();
+        return suite;
+    }
+
+    public synchronized void put(Suite suite) {
+        if (suite.documentId == null || suite.revisionId == null) {
+            return;
+        }
+        suites.put(suite.documentId, suite);
+        stores.increment();
+        Iterator<Suite> it = suites.values().iterator();
+        while (suites.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", suites.size());
+        m.put("maxEntries", maxEntries);
+        m.put("ttlHours", TimeUnit.MILLISECONDS.toHours(ttlMillis));
+        m.put("hits", hits.sum());
+        m.put("staleHits", staleHits.sum());
+        m.put("misses", misses.sum());
+        m.put("stores", stores.sum());
+        m.put("evictions", evictions.sum());
+        return m;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 一份预生成结果
+     */
+    public static final class Suite {
+        public final String documentId;
+        public final String revisionId;
+        public final String url;
+        public final Map<String, Object> result; // 与生成接口相同格式的响应
+        public final long computedAt = System.currentTimeMillis();
+        public final long computeMs;
+
+        public Suite(String documentId, String revisionId, String url, Map<String, Object> result, long computeMs) {
+            this.documentId = documentId;
+            this.revisionId = revisionId;
+            this.url = url;
+            this.result = result;
+            this.computeMs = computeMs;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.testgen.reference;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV流式读取（RFC 4180）
+ * 支持双引号包裹的字段、字段内的逗号/换行、"" 转义，以及CRLF/LF行尾；首行前的UTF-8 BOM会被忽略。
+ * 逐字符读取，内存中只保留当前行。
+ */
+public class CsvRowReader implements RowReader {
+
+    // 单个字段的最大长度，防止格式错误（如缺少闭合引号）的文件把后续内容全部读进一个字段
+    private static final int MAX_FIELD_LENGTH = 1 << 20;
+
+    private final Reader reader;
+    private final char delimiter;
+    private boolean firstChar = true;
+    private boolean eof;
+    private int pushback = -1;
+
+    public CsvRowReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvRowReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public List<String> nextRow() throws IOException {
+        if (eof) {
+            return null;
+        }
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStarted = false;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                eof = true;
+                if (quoted) {
+                    throw new IOException("CSV格式错误: 引号未闭合");
+                }
+                if (!fieldStarted && row.isEmpty()) {
+                    return null;
+                }
+                row.add(field.toString());
+                return row;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(next);
+                    }
+                } else {
+                    append(field, (char) c);
+                }
+                continue;
+            }
+            if (c == '"' && field.length() == 0) {
+                quoted = true;
+                fieldStarted = true;
+            } else if (c == delimiter) {
+                row.add(field.toString());
+                field.setLength(0);
+                fieldStarted = true;
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                if (!fieldStarted && row.isEmpty()) {
+                    // 空行
+                    continue;
+                }
+                row.add(field.toString());
+                return row;
+            } else {
+                append(field, (char) c);
+                fieldStarted = true;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        int c = reader.read();
+        if (firstChar) {
+            firstChar = false;
+            if (c == '﻿') {
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c >= 0) {
+            pushback = c;
+        }
+    }
+
+    private static void append(StringBuilder field, char c) throws IOException {
+        if (field.length() >= MAX_FIELD_LENGTH) {
+            throw new IOException("CSV格式错误: 字段超过" + MAX_FIELD_LENGTH + "字符");
+        }
+        field.append(c);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
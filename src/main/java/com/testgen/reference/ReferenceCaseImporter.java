@@ -0,0 +1,139 @@
+package com.testgen.reference;
+
+import com.testgen.model.testcase.TestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 人工用例批量导入
+ * 从 {@link RowReader} 逐行读取：先在前几行中找到表头，之后每行立即转换为 {@link TestCase}，
+ * 原始行不做保留；不在模块过滤范围内的行直接丢弃。导入结果存入 {@link ReferenceSuiteStore}。
+ */
+public class ReferenceCaseImporter {
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceCaseImporter.class);
+
+    private static final int MAX_CASES = parseIntEnv("REFERENCE_IMPORT_MAX_CASES", 100000);
+    // 在前多少行中查找表头（表格顶部可能有标题、说明行）
+    private static final int HEADER_SEARCH_ROWS = 10;
+    private static final int MAX_ERRORS = 20;
+
+    private final ReferenceSuiteStore store = ReferenceSuiteStore.getInstance();
+
+    /**
+     * 导入并保存
+     *
+     * @param reader  行读取器，导入结束后关闭
+     * @param source  来源说明（文件类型或表格链接）
+     * @param modules 只导入这些模块的用例，为null或空时全部导入
+     * @return 导入结果
+     */
+    public ImportResult importRows(RowReader reader, String source, Collection<String> modules) throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> moduleFilter = new HashSet<>();
+        if (modules != null) {
+            for (String module : modules) {
+                if (module != null && !module.trim().isEmpty()) {
+                    moduleFilter.add(module.trim());
+                }
+            }
+        }
+
+        ReferenceSuiteStore.Suite suite = new ReferenceSuiteStore.Suite(source);
+        ImportResult result = new ImportResult();
+        try (RowReader rows = reader) {
+            ReferenceCaseMapper mapper = null;
+            List<String> row;
+            int rowNumber = 0;
+            while ((row = rows.nextRow()) != null) {
+                rowNumber++;
+                if (mapper == null) {
+                    mapper = ReferenceCaseMapper.fromHeader(row);
+                    if (mapper == null && rowNumber >= HEADER_SEARCH_ROWS) {
+                        throw new IOException("前" + HEADER_SEARCH_ROWS + "行中未找到表头（需包含“标题”或“用例名称”列）");
+                    }
+                    continue;
+                }
+                result.rows++;
+                TestCase tc;
+                try {
+                    tc = mapper.map(row, rowNumber);
+                } catch (RuntimeException e) {
+                    result.addError(rowNumber, e.getMessage());
+                    continue;
+                }
+                if (tc == null || (!moduleFilter.isEmpty()
+                        && (tc.getModule() == null || !moduleFilter.contains(tc.getModule().trim())))) {
+                    result.skipped++;
+                    continue;
+                }
+                if (suite.size() >= MAX_CASES) {
+                    result.truncated = true;
+                    break;
+                }
+                suite.add(tc);
+            }
+            if (mapper == null) {
+                throw new IOException("未找到表头（需包含“标题”或“用例名称”列）");
+            }
+            for (Map.Entry<ReferenceCaseMapper.Column, Integer> e : mapper.getColumns().entrySet()) {
+                result.columns.put(e.getKey().name(), e.getValue());
+            }
+        }
+
+        store.put(suite);
+        result.importId = suite.id;
+        result.imported = suite.size();
+        result.modules = new ArrayList<>(suite.modules());
+        result.elapsedMs = System.currentTimeMillis() - start;
+        System.out.println("[用例导入] " + source + ": 读取 " + result.rows + " 行，导入 " + result.imported
+                + " 条，跳过 " + result.skipped + " 行，耗时 " + result.elapsedMs + "ms"
+                + (result.truncated ? "（超过上限 " + MAX_CASES + " 条，已截断）" : ""));
+        if (!result.errors.isEmpty()) {
+            logger.warn("用例导入有 {} 行转换失败", result.errors.size());
+        }
+        return result;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 导入结果
+     */
+    public static class ImportResult {
+        public String importId;
+        public int rows;           // 数据行数（不含表头）
+        public int imported;
+        public int skipped;        // 空标题行及不在模块过滤范围内的行
+        public boolean truncated;  // 超过 REFERENCE_IMPORT_MAX_CASES 后停止读取
+        public long elapsedMs;
+        public List<String> modules = new ArrayList<>();
+        public Map<String, Integer> columns = new LinkedHashMap<>(); // 识别到的列 → 表头序号
+        public List<String> errors = new ArrayList<>();              // 只保留前20条
+
+        void addError(int rowNumber, String message) {
+            skipped++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("第" + rowNumber + "行: " + message);
+            }
+        }
+    }
+}
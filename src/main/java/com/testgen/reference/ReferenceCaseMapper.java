@@ -0,0 +1,230 @@
+package com.testgen.reference;
+
+import com.testgen.model.testcase.BackEndStep;
+import com.testgen.model.testcase.FrontEndStep;
+import com.testgen.model.testcase.SceneType;
+import com.testgen.model.testcase.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 人工用例表格行 → {@link TestCase}
+ * 按表头识别列（中英文常见写法，忽略大小写、空格和括号说明），之后逐行转换。
+ * 多行单元格按行拆分为列表，步骤列中 "1. xxx" / "1、xxx" 的序号会被去掉；
+ * 后端用例的步骤若形如 "POST /api/login" 则拆出请求方法和路径。
+ */
+public class ReferenceCaseMapper {
+
+    /**
+     * 可识别的列
+     */
+    public enum Column {
+        CASE_ID, MODULE, TITLE, PRIORITY, SCENE_TYPE, PRE_CONDITION, STEPS,
+        FRONTEND_STEPS, BACKEND_STEPS, EXPECTED, FRONTEND_EXPECTED, BACKEND_EXPECTED, TAGS
+    }
+
+    private static final Map<String, Column> HEADER_ALIASES = new LinkedHashMap<>();
+
+    static {
+        alias(Column.CASE_ID, "caseid", "id", "用例编号", "用例id", "编号", "序号");
+        alias(Column.MODULE, "module", "模块", "所属模块", "功能模块", "模块名称");
+        alias(Column.TITLE, "title", "name", "标题", "用例标题", "用例名称", "测试点", "测试标题");
+        alias(Column.PRIORITY, "priority", "优先级", "用例等级", "级别");
+        alias(Column.SCENE_TYPE, "scenetype", "type", "场景类型", "用例类型", "场景");
+        alias(Column.PRE_CONDITION, "precondition", "前置条件", "预置条件", "前提条件");
+        alias(Column.STEPS, "steps", "步骤", "操作步骤", "测试步骤", "执行步骤");
+        alias(Column.FRONTEND_STEPS, "frontendsteps", "前端步骤", "前端操作步骤");
+        alias(Column.BACKEND_STEPS, "backendsteps", "后端步骤", "接口步骤");
+        alias(Column.EXPECTED, "expected", "预期结果", "期望结果", "预期");
+        alias(Column.FRONTEND_EXPECTED, "frontendexpected", "前端预期", "前端预期结果");
+        alias(Column.BACKEND_EXPECTED, "backendexpected", "后端预期", "后端预期结果", "接口预期");
+        alias(Column.TAGS, "tags", "tag", "标签");
+    }
+
+    private static final Pattern STEP_NUMBER = Pattern.compile("^\\s*(?:步骤)?\\d+\\s*[.、:：)）]\\s*");
+    private static final Pattern API_STEP = Pattern.compile(
+            "\\b(GET|POST|PUT|DELETE|PATCH)\\s+(/\\S*)", Pattern.CASE_INSENSITIVE);
+
+    private final Map<Column, Integer> columns;
+
+    private ReferenceCaseMapper(Map<Column, Integer> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * 按表头行创建映射
+     *
+     * @param header 表头
+     * @return 映射；未识别到标题列时返回null（调用方可继续尝试下一行作为表头）
+     */
+    public static ReferenceCaseMapper fromHeader(List<String> header) {
+        Map<Column, Integer> columns = new EnumMap<>(Column.class);
+        for (int i = 0; i < header.size(); i++) {
+            Column column = HEADER_ALIASES.get(normalizeHeader(header.get(i)));
+            if (column != null && !columns.containsKey(column)) {
+                columns.put(column, i);
+            }
+        }
+        return columns.containsKey(Column.TITLE) ? new ReferenceCaseMapper(columns) : null;
+    }
+
+    /**
+     * 已识别的列（列 → 表头序号）
+     */
+    public Map<Column, Integer> getColumns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * 转换一行
+     *
+     * @param row       单元格
+     * @param rowNumber 行号（从1开始，用于生成缺省用例编号）
+     * @return 用例；标题为空的行（空行、分组行）返回null
+     */
+    public TestCase map(List<String> row, int rowNumber) {
+        String title = cell(row, Column.TITLE);
+        if (title.isEmpty()) {
+            return null;
+        }
+        TestCase tc = new TestCase();
+        String caseId = cell(row, Column.CASE_ID);
+        tc.setCaseId(caseId.isEmpty() ? "REF-" + rowNumber : caseId);
+        tc.setModule(emptyToNull(cell(row, Column.MODULE)));
+        tc.setTitle(title);
+        tc.setPriority(emptyToNull(cell(row, Column.PRIORITY)));
+        SceneType sceneType = parseSceneType(cell(row, Column.SCENE_TYPE));
+        tc.setSceneType(sceneType);
+        tc.setPreCondition(lines(cell(row, Column.PRE_CONDITION), false));
+        tc.setTags(splitTags(cell(row, Column.TAGS)));
+
+        boolean backend = sceneType == SceneType.BACKEND;
+        List<String> steps = lines(cell(row, Column.STEPS), true);
+        List<String> frontSteps = lines(cell(row, Column.FRONTEND_STEPS), true);
+        List<String> backSteps = lines(cell(row, Column.BACKEND_STEPS), true);
+        (backend ? backSteps : frontSteps).addAll(steps);
+        tc.setFrontEndSteps(toFrontEndSteps(frontSteps));
+        tc.setBackEndSteps(toBackEndSteps(backSteps));
+
+        List<String> expected = lines(cell(row, Column.EXPECTED), true);
+        List<String> frontExpected = lines(cell(row, Column.FRONTEND_EXPECTED), true);
+        List<String> backExpected = lines(cell(row, Column.BACKEND_EXPECTED), true);
+        (backend ? backExpected : frontExpected).addAll(expected);
+        tc.setFrontEndExpected(frontExpected);
+        tc.setBackEndExpected(backExpected);
+        return tc;
+    }
+
+    private String cell(List<String> row, Column column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= row.size() || row.get(index) == null) {
+            return "";
+        }
+        return row.get(index).trim();
+    }
+
+    private static List<FrontEndStep> toFrontEndSteps(List<String> steps) {
+        List<FrontEndStep> result = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            result.add(new FrontEndStep(i + 1, steps.get(i), null, null, null));
+        }
+        return result;
+    }
+
+    private static List<BackEndStep> toBackEndSteps(List<String> steps) {
+        List<BackEndStep> result = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            String text = steps.get(i);
+            Matcher m = API_STEP.matcher(text);
+            BackEndStep step = new BackEndStep();
+            step.setStepNumber(i + 1);
+            step.setAction(text);
+            if (m.find()) {
+                step.setMethod(m.group(1).toUpperCase(Locale.ROOT));
+                step.setApiPath(m.group(2));
+            }
+            result.add(step);
+        }
+        return result;
+    }
+
+    /**
+     * 多行单元格拆分为列表，去掉空行；stripNumber为true时去掉行首序号
+     */
+    static List<String> lines(String value, boolean stripNumber) {
+        List<String> result = new ArrayList<>();
+        if (value.isEmpty()) {
+            return result;
+        }
+        for (String line : value.split("\\r?\\n")) {
+            String text = stripNumber ? STEP_NUMBER.matcher(line).replaceFirst("") : line;
+            text = text.trim();
+            if (!text.isEmpty()) {
+                result.add(text);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> splitTags(String value) {
+        List<String> tags = new ArrayList<>();
+        for (String tag : value.split("[,，;；、\\s]+")) {
+            if (!tag.isEmpty()) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    static SceneType parseSceneType(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.isEmpty()) {
+            return SceneType.FRONTEND;
+        }
+        for (SceneType type : SceneType.values()) {
+            if (type.getValue().equals(v)) {
+                return type;
+            }
+        }
+        if (v.contains("异常") || v.contains("边界")) {
+            return SceneType.EXCEPTION;
+        }
+        if (v.contains("集成") || v.contains("联调") || v.contains("端到端")) {
+            return SceneType.INTEGRATION;
+        }
+        if (v.contains("后端") || v.contains("接口") || v.contains("api")) {
+            return SceneType.BACKEND;
+        }
+        return SceneType.FRONTEND;
+    }
+
+    /**
+     * 表头归一化：去掉空白、括号及其中说明、星号（必填标记），英文转小写
+     */
+    static String normalizeHeader(String header) {
+        if (header == null) {
+            return "";
+        }
+        return header.replaceAll("[(（][^)）]*[)）]", "")
+                .replaceAll("[\\s*_\\-]", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void alias(Column column, String... names) {
+        for (String name : names) {
+            HEADER_ALIASES.put(normalizeHeader(name), column);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.testgen.reference;
+
+import com.testgen.model.testcase.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已导入的人工用例集
+ * 导入接口返回 importId，对比评分时以 referenceImportId 引用，无需前端再把数万条用例回传。
+ * 用例按模块分组保存，对比时只取与AI用例相关的模块。
+ *
+ * 按用例集数做LRU淘汰，并设置最长存活时间（TTL）。
+ */
+public final class ReferenceSuiteStore {
+
+    private static final ReferenceSuiteStore INSTANCE = new ReferenceSuiteStore(
+            parseIntEnv("REFERENCE_STORE_MAX_SUITES", 10),
+            TimeUnit.HOURS.toMillis(parseIntEnv("REFERENCE_STORE_TTL_HOURS", 24)));
+
+    private final int maxSuites;
+    private final long ttlMillis;
+    // LRU顺序（accessOrder=true），key为importId
+    private final LinkedHashMap<String, Suite> suites = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ReferenceSuiteStore(int maxSuites, long ttlMillis) {
+        this.maxSuites = Math.max(1, maxSuites);
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static ReferenceSuiteStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return 用例集；不存在或已过期时返回null
+     */
+    public synchronized Suite get(String importId) {
+        Suite suite = importId != null ? suites.get(importId) : null;
+        if (suite != null && System.currentTimeMillis() - suite.importedAt > ttlMillis) {
+            suites.remove(importId);
+            suite = null;
+        }
+        return suite;
+    }
+
+    public synchronized void put(Suite suite) {
+        suites.put(suite.id, suite);
+        stores.increment();
+        Iterator<Suite> it = suites.values().iterator();
+        while (suites.size() > maxSuites && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("suites", suites.size());
+        m.put("maxSuites", maxSuites);
+        long cases = 0;
+        for (Suite suite : suites.values()) {
+            cases += suite.size();
+        }
+        m.put("cases", cases);
+        m.put("stores", stores.sum());
+        m.put("evictions", evictions.sum());
+        return m;
+    }
+
+    private static int parseIntEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 一次导入的人工用例
+     */
+    public static final class Suite {
+        // 未填写模块的用例
+        public static final String NO_MODULE = "";
+
+        public final String id = UUID.randomUUID().toString();
+        public final String source;
+        public final long importedAt = System.currentTimeMillis();
+        // 模块 → 用例（按导入顺序）
+        private final Map<String, List<TestCase>> byModule = new LinkedHashMap<>();
+        private int size;
+
+        public Suite(String source) {
+            this.source = source;
+        }
+
+        void add(TestCase tc) {
+            String module = tc.getModule() != null ? tc.getModule().trim() : NO_MODULE;
+            byModule.computeIfAbsent(module, k -> new ArrayList<>()).add(tc);
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Collection<String> modules() {
+            return Collections.unmodifiableSet(byModule.keySet());
+        }
+
+        /**
+         * 选取对比用的人工用例
+         * 指定模块时只取这些模块（以及未填写模块）的用例；一个都没有时退回按导入顺序选取
+         *
+         * @param modules 模块名，为null或空时不过滤
+         * @param limit   最多返回条数
+         */
+        public List<TestCase> select(Collection<String> modules, int limit) {
+            List<TestCase> selected = new ArrayList<>();
+            if (modules != null && !modules.isEmpty()) {
+                for (String module : modules) {
+                    List<TestCase> cases = module != null ? byModule.get(module.trim()) : null;
+                    if (cases != null && !addUpTo(selected, cases, limit)) {
+                        return selected;
+                    }
+                }
+                List<TestCase> unassigned = byModule.get(NO_MODULE);
+                if (!selected.isEmpty()) {
+                    if (unassigned != null) {
+                        addUpTo(selected, unassigned, limit);
+                    }
+                    return selected;
+                }
+            }
+            for (List<TestCase> cases : byModule.values()) {
+                if (!addUpTo(selected, cases, limit)) {
+                    break;
+                }
+            }
+            return selected;
+        }
+
+        private static boolean addUpTo(List<TestCase> target, List<TestCase> cases, int limit) {
+            for (TestCase tc : cases) {
+                if (target.size() >= limit) {
+                    return false;
+                }
+                target.add(tc);
+            }
+            return target.size() < limit;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.testgen.reference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 表格行读取器
+ * 逐行返回单元格文本，实现方只在内存中保留当前行（或一页），用于导入数万行的人工用例表
+ */
+public interface RowReader extends Closeable {
+
+    /**
+     * 读取下一行
+     *
+     * @return 单元格文本列表；已读完时返回null
+     */
+    List<String> nextRow() throws IOException;
+}
@@ -0,0 +1,268 @@
+package com.testgen.reference;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * XLSX流式读取（只读第一个工作表）
+ * 上传内容先落盘为临时文件再按zip条目读取；工作表XML用StAX逐行解析，
+ * 内存中只保留共享字符串表和当前行，不依赖POI。
+ */
+public class XlsxRowReader implements RowReader {
+
+    private static final String DEFAULT_SHEET = "xl/worksheets/sheet1.xml";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final File tempFile;
+    private final ZipFile zip;
+    private final List<String> sharedStrings;
+    private final InputStream sheetStream;
+    private final XMLStreamReader xml;
+
+    /**
+     * @param in XLSX文件内容，读取完后由调用方关闭
+     */
+    public XlsxRowReader(InputStream in) throws IOException {
+        tempFile = File.createTempFile("reference-import-", ".xlsx");
+        ZipFile opened = null;
+        InputStream stream = null;
+        try {
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            opened = new ZipFile(tempFile);
+            sharedStrings = readSharedStrings(opened);
+            ZipEntry sheet = opened.getEntry(firstSheetPath(opened));
+            if (sheet == null) {
+                sheet = opened.getEntry(DEFAULT_SHEET);
+            }
+            if (sheet == null) {
+                throw new IOException("XLSX中未找到工作表");
+            }
+            stream = opened.getInputStream(sheet);
+            xml = newFactory().createXMLStreamReader(stream);
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            closeQuietly(stream);
+            closeQuietly(opened);
+            Files.deleteIfExists(tempFile.toPath());
+            throw e instanceof IOException ? (IOException) e : new IOException("XLSX格式错误: " + e.getMessage(), e);
+        }
+        zip = opened;
+        sheetStream = stream;
+    }
+
+    @Override
+    public List<String> nextRow() throws IOException {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                    return readRow();
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("XLSX格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取一个 &lt;row&gt;；按单元格引用（如 C5）定位列，缺失的单元格补空串
+     */
+    private List<String> readRow() throws XMLStreamException {
+        List<String> row = new ArrayList<>();
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                return row;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(xml.getLocalName())) {
+                continue;
+            }
+            int column = columnIndex(xml.getAttributeValue(null, "r"), row.size());
+            String type = xml.getAttributeValue(null, "t");
+            String value = readCell(type);
+            while (row.size() < column) {
+                row.add("");
+            }
+            row.add(value);
+        }
+        return row;
+    }
+
+    private String readCell(String type) throws XMLStreamException {
+        StringBuilder value = new StringBuilder();
+        boolean inValue = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                // 数值/共享字符串索引在<v>中，内联字符串在<is><t>中
+                inValue = "v".equals(name) || "t".equals(name);
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (inValue) {
+                    value.append(xml.getText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("c".equals(name)) {
+                    break;
+                }
+                if ("v".equals(name) || "t".equals(name)) {
+                    inValue = false;
+                }
+            }
+        }
+        if ("s".equals(type)) {
+            try {
+                int index = Integer.parseInt(value.toString().trim());
+                return index >= 0 && index < sharedStrings.size() ? sharedStrings.get(index) : "";
+            } catch (NumberFormatException e) {
+                return "";
+            }
+        }
+        if ("b".equals(type)) {
+            return "1".equals(value.toString()) ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+
+    /**
+     * 单元格引用转0起始列号，如 "AB12" → 27；无引用时按顺序排列
+     */
+    static int columnIndex(String ref, int fallback) {
+        if (ref == null) {
+            return fallback;
+        }
+        int column = 0;
+        int i = 0;
+        while (i < ref.length() && Character.isLetter(ref.charAt(i))) {
+            column = column * 26 + (Character.toUpperCase(ref.charAt(i)) - 'A' + 1);
+            i++;
+        }
+        return i == 0 ? fallback : column - 1;
+    }
+
+    private static List<String> readSharedStrings(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<String> strings = new ArrayList<>();
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader reader = newFactory().createXMLStreamReader(in);
+            StringBuilder current = null;
+            boolean inText = false;
+            int phoneticDepth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("si".equals(name)) {
+                        current = new StringBuilder();
+                    } else if ("rPh".equals(name)) {
+                        // 注音文本不属于单元格内容
+                        phoneticDepth++;
+                    } else if ("t".equals(name)) {
+                        inText = phoneticDepth == 0;
+                    }
+                } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                        && inText && current != null) {
+                    current.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("t".equals(name)) {
+                        inText = false;
+                    } else if ("rPh".equals(name)) {
+                        phoneticDepth--;
+                    } else if ("si".equals(name) && current != null) {
+                        strings.add(current.toString());
+                        current = null;
+                    }
+                }
+            }
+            reader.close();
+        }
+        return strings;
+    }
+
+    /**
+     * 按 workbook.xml 中的第一个 &lt;sheet&gt; 及其关系文件找到工作表路径
+     */
+    private static String firstSheetPath(ZipFile zip) throws IOException, XMLStreamException {
+        String relId = null;
+        ZipEntry workbook = zip.getEntry("xl/workbook.xml");
+        if (workbook != null) {
+            try (InputStream in = zip.getInputStream(workbook)) {
+                XMLStreamReader reader = newFactory().createXMLStreamReader(in);
+                while (reader.hasNext() && relId == null) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "sheet".equals(reader.getLocalName())) {
+                        relId = reader.getAttributeValue(NS_REL, "id");
+                    }
+                }
+                reader.close();
+            }
+        }
+        ZipEntry rels = zip.getEntry("xl/_rels/workbook.xml.rels");
+        if (relId == null || rels == null) {
+            return DEFAULT_SHEET;
+        }
+        Map<String, String> targets = new HashMap<>();
+        try (InputStream in = zip.getInputStream(rels)) {
+            XMLStreamReader reader = newFactory().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && "Relationship".equals(reader.getLocalName())) {
+                    targets.put(reader.getAttributeValue(null, "Id"), reader.getAttributeValue(null, "Target"));
+                }
+            }
+            reader.close();
+        }
+        String target = targets.get(relId);
+        if (target == null) {
+            return DEFAULT_SHEET;
+        }
+        return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // 上传文件不可信，禁用DTD和外部实体
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException ignored) {
+            // 关闭底层流即可
+        }
+        closeQuietly(sheetStream);
+        closeQuietly(zip);
+        Files.deleteIfExists(tempFile.toPath());
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+                // 忽略
+            }
+        }
+    }
+}
@@ -2,21 +2,48 @@ package com.testgen.server;
 
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpExchange;
+import com.testgen.concurrent.SharedExecutors;
 import com.testgen.controller.TestCaseController;
 import com.testgen.feishu.FeishuService;
 import com.testgen.feishu.FeishuConfig;
+import com.testgen.feishu.FeishuDocumentCache;
+import com.testgen.feishu.FeishuEventCallback;
 import com.testgen.feishu.FeishuException;
+import com.testgen.feishu.FeishuImportJobs;
+import com.testgen.feishu.FeishuRateLimiter;
+import com.testgen.feishu.FeishuSheetReader;
+import com.testgen.feishu.FeishuTokenManager;
+import com.testgen.feishu.ImageDescriptionCache;
+import com.testgen.feishu.WikiNodeCache;
+import com.testgen.llm.ImageDecodeScheduler;
+import com.testgen.llm.LLMMetrics;
+import com.testgen.pipeline.DocumentWatchService;
+import com.testgen.pipeline.PipelineService;
+import com.testgen.pipeline.PrecomputedSuiteStore;
+import com.testgen.reference.CsvRowReader;
+import com.testgen.reference.ReferenceCaseImporter;
+import com.testgen.reference.RowReader;
+import com.testgen.reference.XlsxRowReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * 简单的HTTP Web服务器
@@ -28,10 +55,17 @@ public class SimpleWebServer {
     private static final int MAX_PORT = 8089;
     private int actualPort;
     private static final String STATIC_DIR = "src/main/resources/static";
+    // SSE无新事件时发送心跳的间隔
+    private static final long SSE_KEEPALIVE_MILLIS = 15000;
+    // 同时保持的SSE连接数上限：每个连接占用一个请求处理线程，至少留一半线程给其他接口
+    private static final int MAX_SSE_STREAMS = Math.max(1, SharedExecutors.httpThreads() / 2);
+    private final Semaphore sseStreams = new Semaphore(MAX_SSE_STREAMS);
 
     private HttpServer server;
     private TestCaseController controller;
     private FeishuService feishuService;
+    private PipelineService pipelineService;
+    private DocumentWatchService documentWatchService;
     private ObjectMapper objectMapper;
     private boolean useLLM;
 
@@ -43,6 +77,9 @@ public class SimpleWebServer {
         this.useLLM = useLLM;
         this.controller = new TestCaseController(useLLM);
         this.feishuService = new FeishuService();
+        this.pipelineService = new PipelineService(feishuService, useLLM);
+        this.controller.setPipelineService(pipelineService);
+        this.documentWatchService = new DocumentWatchService(feishuService, pipelineService, useLLM);
         this.objectMapper = new ObjectMapper();
     }
 
@@ -91,12 +128,27 @@ public class SimpleWebServer {
         server.createContext("/", this::handleStaticRequest);
         server.createContext("/api/testcase/generate", this::handleGenerateRequest);
         server.createContext("/api/testcase/compare", this::handleCompareRequest);
+        server.createContext("/api/evaluate/session", this::handleEvaluationSessionRequest);
+        server.createContext("/api/evaluate/session/delta", this::handleEvaluationDeltaRequest);
+        server.createContext("/api/reference/import", this::handleReferenceImportRequest);
+        server.createContext("/api/reference/import/feishu", this::handleReferenceFeishuImportRequest);
         // 飞书相关路由
         server.createContext("/api/feishu/content", this::handleFeishuContentRequest);
+        server.createContext("/api/feishu/content/stream", this::handleFeishuContentStreamRequest);
+        server.createContext("/api/feishu/content/job", this::handleFeishuContentJobRequest);
         server.createContext("/api/feishu/status", this::handleFeishuStatusRequest);
         server.createContext("/api/feishu/config", this::handleFeishuConfigRequest);
+        server.createContext("/api/feishu/generate", this::handleFeishuGenerateRequest);
+        server.createContext("/api/pipeline", this::handlePipelineRequest);
+        server.createContext("/api/feishu/events", this::handleFeishuEventRequest);
+        server.createContext("/api/feishu/watch", this::handleFeishuWatchRequest);
+        server.createContext("/api/feishu/suite", this::handleFeishuSuiteRequest);
+        // 指标监控路由
+        server.createContext("/api/metrics/llm", this::handleLLMMetricsRequest);
+        server.createContext("/api/metrics/executors", this::handleExecutorMetricsRequest);
 
-        server.setExecutor(null);
+        // 多线程处理请求：SSE长连接和图片识别期间不阻塞其他请求
+        server.setExecutor(SharedExecutors.http());
         server.start();
 
         System.out.println("========================================");
@@ -114,6 +166,7 @@ public class SimpleWebServer {
             server.stop(0);
             System.out.println("服务器已停止");
         }
+        SharedExecutors.shutdown();
     }
 
     /**
@@ -163,7 +216,11 @@ public class SimpleWebServer {
             is.close();
 
             // 调用控制器处理
-            String response = controller.generateTestCases(requestBody);
+            // 生成器有实例状态，同一时刻只处理一个生成请求
+            String response;
+            synchronized (controller) {
+                response = controller.generateTestCases(requestBody);
+            }
 
             sendJsonResponse(exchange, 200, response);
         } catch (Exception e) {
@@ -172,6 +229,234 @@ public class SimpleWebServer {
         }
     }
 
+    /**
+     * 从飞书文档直接生成测试用例（服务端完成获取、图片识别、解析、生成）
+     * POST /api/feishu/generate  {"url": "...", "refresh": false, "enableEval": false}
+     * 同步版的端到端流水线：完成时返回与生成接口相同的结果（另含prdText和各阶段耗时timings）；
+     * 超过 PIPELINE_WAIT_SECONDS 仍未完成时返回runId（done=false），之后通过 GET /api/pipeline 查询
+     */
+    private void handleFeishuGenerateRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            JsonNode json = objectMapper.readTree(requestBody);
+            String url = json.path("url").asText("").trim();
+            if (url.isEmpty()) {
+                sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":\"缺少飞书文档链接\"}");
+                return;
+            }
+            PipelineService.PipelineRun run = pipelineService.start(url, json.path("refresh").asBoolean(false),
+                    json.path("enableEval").asBoolean(false));
+            System.out.println("[流水线] 启动 " + run.id + ": " + url);
+            if (!run.await()) {
+                sendJsonResponse(exchange, 200, pipelineRunJson(run));
+                return;
+            }
+            if (run.error != null) {
+                sendJsonResponse(exchange, 200, "{\"success\":false,\"message\":" +
+                        objectMapper.writeValueAsString("生成失败: " + run.error) + "}");
+                return;
+            }
+            Map<String, Object> response = new LinkedHashMap<>(run.result);
+            response.put("runId", run.id);
+            response.put("done", true);
+            synchronized (run.timings) {
+                response.put("timings", new LinkedHashMap<>(run.timings));
+            }
+            sendJsonResponse(exchange, 200, objectMapper.writeValueAsString(response));
+        } catch (FeishuException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString(e.getMessage()) + "}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"生成被中断\"}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"Internal Server Error\"}");
+        }
+    }
+
+    /**
+     * 端到端流水线：飞书文档链接 → 测试用例
+     * POST /api/pipeline  {"url": "...", "refresh": false, "enableEval": false, "wait": false}
+     *   启动流水线，返回runId；wait=true时等待完成后直接返回结果，
+     *   最多等待 PIPELINE_WAIT_SECONDS，超时返回当前阶段（done=false），之后按runId查询
+     * GET /api/pipeline?runId=xxx
+     *   查询阶段与结果
+     */
+    private void handlePipelineRequest(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        try {
+            PipelineService.PipelineRun run;
+            if ("POST".equals(method)) {
+                InputStream is = exchange.getRequestBody();
+                String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                is.close();
+
+                JsonNode json = objectMapper.readTree(requestBody);
+                String url = json.path("url").asText("").trim();
+                if (url.isEmpty()) {
+                    sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":\"缺少飞书文档链接\"}");
+                    return;
+                }
+                run = pipelineService.start(url, json.path("refresh").asBoolean(false),
+                        json.path("enableEval").asBoolean(false));
+                System.out.println("[流水线] 启动 " + run.id + ": " + url);
+                if (json.path("wait").asBoolean(false) && !run.await()) {
+                    System.out.println("[流水线] " + run.id + " 等待超时，返回当前阶段，由前端按runId查询");
+                }
+            } else if ("GET".equals(method)) {
+                run = pipelineService.get(parseQuery(exchange.getRequestURI().getRawQuery()).get("runId"));
+                if (run == null) {
+                    sendJsonResponse(exchange, 404, "{\"success\":false,\"message\":\"流水线不存在或已过期\"}");
+                    return;
+                }
+            } else {
+                sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+                return;
+            }
+            sendJsonResponse(exchange, 200, pipelineRunJson(run));
+        } catch (FeishuException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString(e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    private String pipelineRunJson(PipelineService.PipelineRun run) throws IOException {
+        // 先读完成状态再读结果，保证done=true时结果已写入
+        boolean done = run.isDone();
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{\"success\":true,\"runId\":").append(objectMapper.writeValueAsString(run.id));
+        jsonBuilder.append(",\"stage\":").append(objectMapper.writeValueAsString(run.stage));
+        jsonBuilder.append(",\"done\":").append(done);
+        jsonBuilder.append(",\"speculative\":").append(run.speculative);
+        jsonBuilder.append(",\"precomputed\":").append(run.precomputed);
+        synchronized (run.timings) {
+            jsonBuilder.append(",\"timings\":").append(objectMapper.writeValueAsString(run.timings));
+        }
+        if (done) {
+            jsonBuilder.append(",\"error\":").append(objectMapper.writeValueAsString(run.error));
+            jsonBuilder.append(",\"result\":").append(objectMapper.writeValueAsString(run.result));
+        }
+        jsonBuilder.append("}");
+        return jsonBuilder.toString();
+    }
+
+    /**
+     * 飞书事件订阅回调
+     * POST /api/feishu/events
+     * 回调地址校验时原样返回challenge；drive.file.edit_v1 事件交给文档监听去抖后在后台预生成用例。
+     * 飞书要求3秒内响应，这里只登记事件，不做任何耗时处理
+     */
+    private void handleFeishuEventRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            FeishuEventCallback.Event event = FeishuEventCallback.parse(requestBody);
+            if (event.isUrlVerification()) {
+                sendJsonResponse(exchange, 200, "{\"challenge\":" + objectMapper.writeValueAsString(event.challenge) + "}");
+                return;
+            }
+            boolean accepted = documentWatchService.onEvent(event);
+            sendJsonResponse(exchange, 200, "{\"success\":true,\"accepted\":" + accepted + "}");
+        } catch (FeishuException e) {
+            System.err.println("[Feishu] 事件回调无效: " + e.getMessage());
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString(e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    /**
+     * 关注文档：订阅变更事件，并在后台预生成一次用例
+     * POST /api/feishu/watch  {"url": "飞书文档链接"}
+     */
+    private void handleFeishuWatchRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            String url = objectMapper.readTree(requestBody).path("url").asText("").trim();
+            if (url.isEmpty()) {
+                sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":\"缺少飞书文档链接\"}");
+                return;
+            }
+            String documentId = documentWatchService.watch(url);
+            sendJsonResponse(exchange, 200, "{\"success\":true,\"documentId\":" +
+                    objectMapper.writeValueAsString(documentId) + ",\"message\":\"已关注，正在后台生成用例\"}");
+        } catch (FeishuException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString(e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    /**
+     * 获取文档最新的预生成用例
+     * GET /api/feishu/suite?url=xxx
+     * found=false 表示尚未生成；refreshing=true 表示文档有新的变更正在后台重新生成
+     */
+    private void handleFeishuSuiteRequest(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        String url = parseQuery(exchange.getRequestURI().getRawQuery()).get("url");
+        if (url == null || url.isEmpty()) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":\"缺少url参数\"}");
+            return;
+        }
+        try {
+            PrecomputedSuiteStore.Suite suite = documentWatchService.lookup(url);
+            StringBuilder jsonBuilder = new StringBuilder();
+            jsonBuilder.append("{\"success\":true,\"found\":").append(suite != null);
+            if (suite != null) {
+                jsonBuilder.append(",\"documentId\":").append(objectMapper.writeValueAsString(suite.documentId));
+                jsonBuilder.append(",\"revisionId\":").append(objectMapper.writeValueAsString(suite.revisionId));
+                jsonBuilder.append(",\"computedAt\":").append(suite.computedAt);
+                jsonBuilder.append(",\"computeMs\":").append(suite.computeMs);
+                jsonBuilder.append(",\"refreshing\":").append(documentWatchService.isRefreshing(suite.documentId));
+                jsonBuilder.append(",\"result\":").append(objectMapper.writeValueAsString(suite.result));
+            }
+            jsonBuilder.append("}");
+            sendJsonResponse(exchange, 200, jsonBuilder.toString());
+        } catch (FeishuException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString(e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
     /**
      * 处理测试用例对比评分请求
      */
@@ -188,7 +473,10 @@ public class SimpleWebServer {
             is.close();
 
             // 调用控制器处理对比评分
-            String response = controller.compareTestCases(requestBody);
+            String response;
+            synchronized (controller) {
+                response = controller.compareTestCases(requestBody);
+            }
 
             sendJsonResponse(exchange, 200, response);
         } catch (Exception e) {
@@ -197,9 +485,165 @@ public class SimpleWebServer {
         }
     }
 
+    /**
+     * 创建增量评估会话
+     * POST /api/evaluate/session
+     * 请求体: {"testCases": [...]}
+     */
+    private void handleEvaluationSessionRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            // 会话自带锁，不占用控制器锁，编辑用例时不必等待正在进行的生成或对比
+            sendJsonResponse(exchange, 200, controller.createEvaluationSession(requestBody));
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"Internal Server Error\"}");
+        }
+    }
+
+    /**
+     * 提交用例变更，增量更新评估结果
+     * POST /api/evaluate/session/delta
+     * 请求体: {"sessionId": "...", "upserts": [...], "deletes": ["TC_0001"]}
+     */
+    private void handleEvaluationDeltaRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            sendJsonResponse(exchange, 200, controller.updateEvaluationSession(requestBody));
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"Internal Server Error\"}");
+        }
+    }
+
+    /**
+     * 导入人工用例文件
+     * POST /api/reference/import?format=csv|xlsx[&modules=登录,支付]
+     * 请求体为文件原始内容，边读取边转换，不整体读入内存；返回的importId用于对比评分的 referenceImportId
+     */
+    private void handleReferenceImportRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String format = params.getOrDefault("format", "").toLowerCase();
+        if (format.isEmpty()) {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            format = contentType != null && contentType.contains("spreadsheetml") ? "xlsx" : "csv";
+        }
+        try (InputStream is = exchange.getRequestBody()) {
+            RowReader reader;
+            if ("xlsx".equals(format)) {
+                reader = new XlsxRowReader(is);
+            } else if ("csv".equals(format)) {
+                reader = new CsvRowReader(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)));
+            } else {
+                sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                        objectMapper.writeValueAsString("不支持的文件格式: " + format) + "}");
+                return;
+            }
+            ReferenceCaseImporter.ImportResult result = new ReferenceCaseImporter()
+                    .importRows(reader, format, splitModules(params.get("modules")));
+            sendJsonResponse(exchange, 200, buildReferenceImportResponse(result));
+        } catch (IOException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString("导入失败: " + e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    /**
+     * 从飞书电子表格导入人工用例
+     * POST /api/reference/import/feishu
+     * 请求体: {"url": "https://xxx.feishu.cn/sheets/...", "range": "A1:H"（可选）, "modules": [...]（可选）}
+     */
+    private void handleReferenceFeishuImportRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            InputStream is = exchange.getRequestBody();
+            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            is.close();
+
+            JsonNode request = objectMapper.readTree(requestBody);
+            String url = request.path("url").asText("").trim();
+            if (url.isEmpty()) {
+                sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":\"缺少飞书表格链接\"}");
+                return;
+            }
+            List<String> modules = new ArrayList<>();
+            for (JsonNode module : request.path("modules")) {
+                modules.add(module.asText());
+            }
+            FeishuSheetReader reader = new FeishuSheetReader(url, request.path("range").asText(null));
+            ReferenceCaseImporter.ImportResult result = new ReferenceCaseImporter().importRows(reader, url, modules);
+            sendJsonResponse(exchange, 200, buildReferenceImportResponse(result));
+        } catch (FeishuException | IOException e) {
+            sendJsonResponse(exchange, 400, "{\"success\":false,\"message\":" +
+                    objectMapper.writeValueAsString("导入失败: " + e.getMessage()) + "}");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    private String buildReferenceImportResponse(ReferenceCaseImporter.ImportResult result) throws IOException {
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{\"success\":true");
+        jsonBuilder.append(",\"importId\":").append(objectMapper.writeValueAsString(result.importId));
+        jsonBuilder.append(",\"rows\":").append(result.rows);
+        jsonBuilder.append(",\"imported\":").append(result.imported);
+        jsonBuilder.append(",\"skipped\":").append(result.skipped);
+        jsonBuilder.append(",\"truncated\":").append(result.truncated);
+        jsonBuilder.append(",\"elapsedMs\":").append(result.elapsedMs);
+        jsonBuilder.append(",\"modules\":").append(objectMapper.writeValueAsString(result.modules));
+        jsonBuilder.append(",\"columns\":").append(objectMapper.writeValueAsString(result.columns));
+        jsonBuilder.append(",\"errors\":").append(objectMapper.writeValueAsString(result.errors));
+        jsonBuilder.append(",\"message\":").append(objectMapper.writeValueAsString(
+                "已导入 " + result.imported + " 条人工用例" + (result.truncated ? "（超过上限，已截断）" : "")));
+        jsonBuilder.append("}");
+        return jsonBuilder.toString();
+    }
+
+    private List<String> splitModules(String value) {
+        List<String> modules = new ArrayList<>();
+        if (value != null) {
+            for (String module : value.split("[,，]")) {
+                if (!module.trim().isEmpty()) {
+                    modules.add(module.trim());
+                }
+            }
+        }
+        return modules;
+    }
+
     /**
      * 处理飞书文档内容获取请求
-     * GET /api/feishu/content?url=xxx
+     * GET /api/feishu/content?url=xxx[&refresh=true]
+     * 文档修订号未变化时返回缓存内容，refresh=true 强制重新获取
      */
     private void handleFeishuContentRequest(HttpExchange exchange) throws IOException {
         // 支持CORS预检请求
@@ -219,12 +663,17 @@ public class SimpleWebServer {
             // 获取URL参数
             String query = exchange.getRequestURI().getQuery();
             String documentUrl = null;
+            boolean refresh = false;
+            boolean async = false;
             if (query != null) {
                 for (String param : query.split("&")) {
                     String[] pair = param.split("=", 2);
                     if ("url".equals(pair[0]) && pair.length > 1) {
                         documentUrl = java.net.URLDecoder.decode(pair[1], StandardCharsets.UTF_8);
-                        break;
+                    } else if ("refresh".equals(pair[0]) && pair.length > 1) {
+                        refresh = "true".equalsIgnoreCase(pair[1]);
+                    } else if ("async".equals(pair[0]) && pair.length > 1) {
+                        async = "true".equalsIgnoreCase(pair[1]);
                     }
                 }
             }
@@ -237,15 +686,30 @@ public class SimpleWebServer {
             System.out.println("[Feishu] 获取文档: " + documentUrl);
 
             // 获取文档内容
-            FeishuService.DocumentContent docContent = feishuService.getDocumentContent(documentUrl);
+            FeishuService.DocumentContent docContent = feishuService.getDocumentText(documentUrl, refresh);
+            FeishuImportJobs.Job job = null;
+            if (async && docContent.hasPendingImages()) {
+                // 异步模式：先返回带占位符的文本，图片在后台识别，通过 /api/feishu/content/stream 或 /job 获取
+                job = FeishuImportJobs.getInstance().start(feishuService, docContent);
+            } else {
+                feishuService.describeImages(docContent, null);
+            }
+            // 用户确认内容期间在后台预解析，点击生成时直接取用
+            pipelineService.speculate(docContent,
+                    job != null ? job.completion : CompletableFuture.completedFuture(null));
 
             // 构建响应
             StringBuilder jsonBuilder = new StringBuilder();
             jsonBuilder.append("{\"success\":true,\"content\":");
-            jsonBuilder.append(objectMapper.writeValueAsString(docContent.getFullContent()));
+            jsonBuilder.append(objectMapper.writeValueAsString(
+                    job != null ? docContent.textContent : docContent.getFullContent()));
             jsonBuilder.append(",\"textContent\":");
             jsonBuilder.append(objectMapper.writeValueAsString(docContent.textContent));
             jsonBuilder.append(",\"imageCount\":").append(docContent.images.size());
+            jsonBuilder.append(",\"cached\":").append(docContent.fromCache);
+            jsonBuilder.append(",\"revisionId\":").append(objectMapper.writeValueAsString(docContent.revisionId));
+            jsonBuilder.append(",\"pending\":").append(job != null);
+            jsonBuilder.append(",\"jobId\":").append(objectMapper.writeValueAsString(job != null ? job.id : null));
             jsonBuilder.append(",\"message\":\"获取成功\"}");
 
             sendJsonResponse(exchange, 200, jsonBuilder.toString());
@@ -261,6 +725,161 @@ public class SimpleWebServer {
         }
     }
 
+    /**
+     * 以SSE推送异步导入作业的图片识别结果
+     * GET /api/feishu/content/stream?jobId=xxx[&since=n]
+     * 每张图片完成时发送 image 事件，全部完成后发送 done 事件（含完整内容），失败时发送 error 事件
+     * 同时推送的连接数达到上限时返回503，前端改为轮询
+     */
+    private void handleFeishuContentStreamRequest(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        FeishuImportJobs.Job job = FeishuImportJobs.getInstance().get(params.get("jobId"));
+        if (job == null) {
+            sendJsonResponse(exchange, 404, "{\"success\":false,\"message\":\"导入作业不存在或已过期\"}");
+            return;
+        }
+        int sent = parseNonNegativeInt(params.get("since"));
+        if (!sseStreams.tryAcquire()) {
+            // 前端收到错误后改为轮询 /api/feishu/content/job
+            sendJsonResponse(exchange, 503, "{\"success\":false,\"message\":\"推送连接过多，请改用轮询\"}");
+            return;
+        }
+        try {
+            streamImageEvents(exchange, job, sent);
+        } finally {
+            sseStreams.release();
+        }
+    }
+
+    private void streamImageEvents(HttpExchange exchange, FeishuImportJobs.Job job, int sent) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            while (true) {
+                // 先读完成状态再取事件：已完成时取到的就是全部剩余事件
+                boolean done = job.isDone();
+                List<FeishuImportJobs.ImageEvent> events = done
+                        ? job.eventsSince(sent)
+                        : job.awaitEvents(sent, SSE_KEEPALIVE_MILLIS);
+                for (FeishuImportJobs.ImageEvent event : events) {
+                    sent++;
+                    writeSseEvent(os, "image", sent, imageEventJson(event));
+                }
+                if (done) {
+                    break;
+                }
+                if (events.isEmpty()) {
+                    // 保持连接，及时发现客户端断开
+                    os.write(": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                os.flush();
+            }
+            String error = job.getError();
+            if (error != null) {
+                writeSseEvent(os, "error", sent, "{\"success\":false,\"message\":" +
+                        objectMapper.writeValueAsString(error) + "}");
+            } else {
+                writeSseEvent(os, "done", sent, "{\"success\":true,\"content\":" +
+                        objectMapper.writeValueAsString(job.content.getFullContent()) + "}");
+            }
+            os.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端已断开，作业继续在后台执行
+            System.out.println("[Feishu] 图片进度推送连接已断开: " + job.id);
+        }
+    }
+
+    /**
+     * 轮询异步导入作业的图片识别结果
+     * GET /api/feishu/content/job?jobId=xxx&since=n
+     * 返回序号n之后完成的图片；作业完成后附带完整内容
+     */
+    private void handleFeishuContentJobRequest(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        FeishuImportJobs.Job job = FeishuImportJobs.getInstance().get(params.get("jobId"));
+        if (job == null) {
+            sendJsonResponse(exchange, 404, "{\"success\":false,\"message\":\"导入作业不存在或已过期\"}");
+            return;
+        }
+        int since = parseNonNegativeInt(params.get("since"));
+
+        // 先读完成状态再读事件，保证done=true时事件已全部返回
+        boolean done = job.isDone();
+        List<FeishuImportJobs.ImageEvent> events = job.eventsSince(since);
+
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{\"success\":true,\"jobId\":").append(objectMapper.writeValueAsString(job.id));
+        jsonBuilder.append(",\"done\":").append(done);
+        jsonBuilder.append(",\"imageCount\":").append(job.imageCount());
+        jsonBuilder.append(",\"next\":").append(since + events.size());
+        jsonBuilder.append(",\"events\":[");
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                jsonBuilder.append(",");
+            }
+            jsonBuilder.append(imageEventJson(events.get(i)));
+        }
+        jsonBuilder.append("]");
+        if (done) {
+            jsonBuilder.append(",\"error\":").append(objectMapper.writeValueAsString(job.getError()));
+            jsonBuilder.append(",\"content\":").append(objectMapper.writeValueAsString(job.content.getFullContent()));
+        }
+        jsonBuilder.append("}");
+
+        sendJsonResponse(exchange, 200, jsonBuilder.toString());
+    }
+
+    private String imageEventJson(FeishuImportJobs.ImageEvent event) throws IOException {
+        return "{\"index\":" + event.index +
+                ",\"placeholder\":" + objectMapper.writeValueAsString("{{IMAGE_PLACEHOLDER_" + event.index + "}}") +
+                ",\"description\":" + objectMapper.writeValueAsString(event.description) +
+                ",\"content\":" + objectMapper.writeValueAsString(event.content) + "}";
+    }
+
+    private void writeSseEvent(OutputStream os, String event, int id, String data) throws IOException {
+        String frame = "id: " + id + "\nevent: " + event + "\ndata: " + data + "\n\n";
+        os.write(frame.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                String[] pair = param.split("=", 2);
+                if (pair.length > 1) {
+                    params.put(pair[0], java.net.URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private int parseNonNegativeInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * 处理飞书配置状态检查请求
      * GET /api/feishu/status
@@ -275,10 +894,16 @@ public class SimpleWebServer {
         boolean hasToken = FeishuConfig.getCachedToken() != null;
 
         String response = String.format(
-                "{\"success\":true,\"configured\":%b,\"hasValidToken\":%b,\"appId\":\"%s\"}",
+                "{\"success\":true,\"configured\":%b,\"hasValidToken\":%b,\"appId\":\"%s\",\"documentCache\":%s,\"wikiCache\":%s,\"token\":%s,\"rateLimits\":%s,\"pipeline\":%s,\"watch\":%s}",
                 configured,
                 hasToken,
-                configured ? maskString(FeishuConfig.getAppId()) : "");
+                configured ? maskString(FeishuConfig.getAppId()) : "",
+                objectMapper.writeValueAsString(FeishuDocumentCache.getInstance().snapshot()),
+                objectMapper.writeValueAsString(WikiNodeCache.getInstance().snapshot()),
+                objectMapper.writeValueAsString(FeishuTokenManager.getInstance().snapshot()),
+                objectMapper.writeValueAsString(FeishuRateLimiter.getInstance().snapshot()),
+                objectMapper.writeValueAsString(pipelineService.snapshot()),
+                objectMapper.writeValueAsString(documentWatchService.snapshot()));
 
         sendJsonResponse(exchange, 200, response);
     }
@@ -321,6 +946,60 @@ public class SimpleWebServer {
         }
     }
 
+    /**
+     * 处理LLM调用指标查询请求
+     * GET /api/metrics/llm 查询；POST /api/metrics/llm?reset=true 返回当前统计后清空
+     * visionCache 字段为图片描述缓存的命中情况（避免的视觉模型调用次数）
+     */
+    private void handleLLMMetricsRequest(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"POST".equals(method)) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            LLMMetrics metrics = LLMMetrics.getInstance();
+            String json = "{\"success\":true,\"metrics\":" +
+                    objectMapper.writeValueAsString(metrics.snapshot()) +
+                    ",\"visionCache\":" +
+                    objectMapper.writeValueAsString(ImageDescriptionCache.getInstance().snapshot()) + "}";
+
+            // 清空统计会改变状态，只接受POST
+            if ("POST".equals(method)
+                    && "true".equals(parseQuery(exchange.getRequestURI().getRawQuery()).get("reset"))) {
+                metrics.reset();
+            }
+
+            sendJsonResponse(exchange, 200, json);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
+    /**
+     * 处理共享线程池状态查询请求
+     * GET /api/metrics/executors （imageDecode 字段为图片解码内存预算的使用情况）
+     */
+    private void handleExecutorMetricsRequest(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"success\":false,\"message\":\"Method Not Allowed\"}");
+            return;
+        }
+
+        try {
+            String json = "{\"success\":true,\"executors\":" +
+                    objectMapper.writeValueAsString(SharedExecutors.snapshot()) +
+                    ",\"imageDecode\":" +
+                    objectMapper.writeValueAsString(ImageDecodeScheduler.getInstance().snapshot()) + "}";
+            sendJsonResponse(exchange, 200, json);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendJsonResponse(exchange, 500, "{\"success\":false,\"message\":\"服务器内部错误\"}");
+        }
+    }
+
     /**
      * 掩码字符串（用于显示敏感信息）
      */
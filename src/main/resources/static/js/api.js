@@ -16,10 +16,129 @@ const api = {
     /**
      * 获取飞书文档内容
      * @param {string} url - 飞书文档链接
+     * @param {Object} options - { async: boolean } async为true时先返回文本，图片描述通过 streamFeishuImages 获取
      * @returns {Promise}
      */
-    fetchFeishuContent: (url) => {
-        return axios.get(`${API_BASE}/feishu/content`, { params: { url } });
+    fetchFeishuContent: (url, options = {}) => {
+        const params = { url };
+        if (options.async) {
+            params.async = true;
+        }
+        return axios.get(`${API_BASE}/feishu/content`, { params });
+    },
+
+    /**
+     * 轮询异步导入作业的图片识别结果
+     * @param {string} jobId - 作业ID
+     * @param {number} since - 已获取的事件数
+     * @returns {Promise}
+     */
+    pollFeishuJob: (jobId, since) => {
+        return axios.get(`${API_BASE}/feishu/content/job`, { params: { jobId, since } });
+    },
+
+    /**
+     * 订阅异步导入作业的图片识别结果（SSE），不支持SSE或连接中断时改为轮询
+     * @param {string} jobId - 作业ID
+     * @param {Object} handlers - { onImage(event), onDone(content), onError(message) }
+     * @returns {Function} 取消订阅
+     */
+    streamFeishuImages: (jobId, handlers) => {
+        let received = 0;
+        let closed = false;
+        let source = null;
+        let timer = null;
+
+        const poll = async () => {
+            if (closed) return;
+            try {
+                const res = await api.pollFeishuJob(jobId, received);
+                const data = res.data;
+                (data.events || []).forEach(e => handlers.onImage(e));
+                received = data.next;
+                if (data.done) {
+                    closed = true;
+                    if (data.error) {
+                        handlers.onError(data.error);
+                    } else {
+                        handlers.onDone(data.content);
+                    }
+                    return;
+                }
+                timer = setTimeout(poll, 1500);
+            } catch (e) {
+                closed = true;
+                handlers.onError(e.response?.data?.message || e.message);
+            }
+        };
+
+        if (window.EventSource) {
+            source = new EventSource(`${API_BASE}/feishu/content/stream?jobId=${encodeURIComponent(jobId)}`);
+            source.addEventListener('image', (e) => {
+                received = Number(e.lastEventId) || received + 1;
+                handlers.onImage(JSON.parse(e.data));
+            });
+            source.addEventListener('done', (e) => {
+                closed = true;
+                source.close();
+                handlers.onDone(JSON.parse(e.data).content);
+            });
+            source.addEventListener('error', (e) => {
+                source.close();
+                if (closed) return;
+                if (e.data) {
+                    closed = true;
+                    handlers.onError(JSON.parse(e.data).message);
+                } else {
+                    // 连接中断，从已收到的位置继续轮询
+                    poll();
+                }
+            });
+        } else {
+            poll();
+        }
+
+        return () => {
+            closed = true;
+            if (source) source.close();
+            if (timer) clearTimeout(timer);
+        };
+    },
+
+    /**
+     * 启动端到端流水线（飞书链接 → 测试用例），返回runId；wait为true时等待完成后返回结果
+     * @param {Object} data - { url: string, refresh: boolean, enableEval: boolean, wait: boolean }
+     * @returns {Promise}
+     */
+    startPipeline: (data) => {
+        return axios.post(`${API_BASE}/pipeline`, data);
+    },
+
+    /**
+     * 查询流水线阶段与结果
+     * @param {string} runId - 流水线ID
+     * @returns {Promise}
+     */
+    getPipeline: (runId) => {
+        return axios.get(`${API_BASE}/pipeline`, { params: { runId } });
+    },
+
+    /**
+     * 关注飞书文档：文档变更后在后台自动重新生成用例
+     * @param {string} url - 飞书文档链接
+     * @returns {Promise}
+     */
+    watchFeishuDocument: (url) => {
+        return axios.post(`${API_BASE}/feishu/watch`, { url });
+    },
+
+    /**
+     * 获取关注文档最新的预生成用例（found为false表示尚未生成）
+     * @param {string} url - 飞书文档链接
+     * @returns {Promise}
+     */
+    getPrecomputedSuite: (url) => {
+        return axios.get(`${API_BASE}/feishu/suite`, { params: { url } });
     },
 
     /**
@@ -31,9 +150,54 @@ const api = {
         return axios.post(`${API_BASE}/evaluate`, testCases);
     },
 
+    /**
+     * 创建增量评估会话，之后编辑用例只需提交变更
+     * @param {Array} testCases - 测试用例列表
+     * @returns {Promise} data: { sessionId, evaluation }
+     */
+    createEvaluationSession: (testCases) => {
+        return axios.post(`${API_BASE}/evaluate/session`, { testCases });
+    },
+
+    /**
+     * 提交用例变更，返回增量更新后的评估结果（会话过期时 data.expired 为 true）
+     * @param {Object} data - { sessionId: string, upserts: Array, deletes: Array<string> }
+     * @returns {Promise}
+     */
+    updateEvaluationSession: (data) => {
+        return axios.post(`${API_BASE}/evaluate/session/delta`, data);
+    },
+
+    /**
+     * 导入人工用例文件（CSV/XLSX），返回importId供对比评分使用
+     * @param {File} file - 用例文件
+     * @param {Object} options - { modules: Array<string> } 只导入指定模块
+     * @returns {Promise}
+     */
+    importReferenceCases: (file, options = {}) => {
+        const format = /\.xlsx$/i.test(file.name) ? 'xlsx' : 'csv';
+        const params = { format };
+        if (options.modules && options.modules.length) {
+            params.modules = options.modules.join(',');
+        }
+        return axios.post(`${API_BASE}/reference/import`, file, {
+            params,
+            headers: { 'Content-Type': 'application/octet-stream' }
+        });
+    },
+
+    /**
+     * 从飞书电子表格导入人工用例
+     * @param {Object} data - { url: string, range: string, modules: Array<string> }
+     * @returns {Promise}
+     */
+    importReferenceFromFeishu: (data) => {
+        return axios.post(`${API_BASE}/reference/import/feishu`, data);
+    },
+
     /**
      * 对比评分 - 比较人工用例与AI生成用例
-     * @param {Object} data - { aiCases: Array, referenceCases: Array }
+     * @param {Object} data - { aiCases: Array, referenceCases: Array } 或 { aiCases: Array, referenceImportId: string }
      * @returns {Promise}
      */
     compareTestCases: (data) => {
@@ -20,11 +20,15 @@ const app = createApp({
         const evaluationResult = ref(null);
         const comparisonResult = ref(null);
         const currentPrdText = ref('');
+        // 增量评估会话：第一次编辑用例时创建，之后只提交变更
+        let evaluationSessionId = null;
+        let evaluationQueue = Promise.resolve();
 
         const handleGenerate = async (data) => {
             loading.value = true;
             testCases.value = [];
             evaluationResult.value = null;
+            evaluationSessionId = null;
 
             // data 可以是字符串(旧版)或对象(新版)
             const prdText = typeof data === 'string' ? data : data.prdText;
@@ -47,26 +51,8 @@ const app = createApp({
                 });
 
                 if (res.data && res.data.success) {
-                    testCases.value = res.data.testCases || [];
-
-                    if (res.data.evaluation) {
-                        evaluationResult.value = res.data.evaluation;
-
-                        if (evaluationResult.value.totalScore < 60) {
-                            ElementPlus.ElNotification({
-                                title: '质量预警',
-                                message: '生成的用例质量较低，建议优化 PRD 或补充约束条件',
-                                type: 'warning',
-                                duration: 5000
-                            });
-                        }
-                    }
-
+                    applyGenerateResult(res.data);
                     ElementPlus.ElMessage.success(res.data.message);
-
-                    if (activeTab.value === 'mindmap') {
-                        Vue.nextTick(() => renderMindmap());
-                    }
                 } else {
                     ElementPlus.ElMessage.warning(res.data.message || '生成失败');
                 }
@@ -78,6 +64,40 @@ const app = createApp({
             }
         };
 
+        // 展示生成结果（页面生成、飞书导入后直接使用的用例共用）
+        const applyGenerateResult = (data) => {
+            testCases.value = data.testCases || [];
+
+            if (data.evaluation) {
+                evaluationResult.value = data.evaluation;
+
+                if (evaluationResult.value.totalScore < 60) {
+                    ElementPlus.ElNotification({
+                        title: '质量预警',
+                        message: '生成的用例质量较低，建议优化 PRD 或补充约束条件',
+                        type: 'warning',
+                        duration: 5000
+                    });
+                }
+            }
+
+            if (activeTab.value === 'mindmap') {
+                Vue.nextTick(() => renderMindmap());
+            }
+        };
+
+        // 导入飞书文档时已得到用例（如后台预生成的用例），直接展示
+        const handleGenerated = (data) => {
+            evaluationResult.value = null;
+            evaluationSessionId = null;
+            currentPrdText.value = data.prdText || '';
+            applyGenerateResult(data);
+            if (!data.evaluation && testCases.value.length > 0) {
+                // 预生成的用例不含评估结果，创建评估会话时一并评估
+                syncEvaluation({});
+            }
+        };
+
         Vue.watch(activeTab, (val) => {
             if (val === 'mindmap' && testCases.value.length > 0) {
                 Vue.nextTick(() => {
@@ -281,6 +301,52 @@ const app = createApp({
             window.addEventListener('resize', resizeHandler);
         };
 
+        // 提交用例变更并刷新评估结果；请求按顺序执行，保证服务端按编辑顺序应用变更
+        const syncEvaluation = (delta) => {
+            evaluationQueue = evaluationQueue.then(async () => {
+                try {
+                    let res = null;
+                    if (evaluationSessionId) {
+                        res = await api.updateEvaluationSession({ sessionId: evaluationSessionId, ...delta });
+                    }
+                    if (!res || res.data.expired) {
+                        // 首次编辑或会话已过期：以当前用例创建会话（已包含本次变更）
+                        res = await api.createEvaluationSession(testCases.value);
+                    }
+                    if (res.data && res.data.success) {
+                        evaluationSessionId = res.data.sessionId;
+                        evaluationResult.value = res.data.evaluation;
+                    } else {
+                        // 服务端与前端的用例可能已不一致，下次编辑时重建会话
+                        evaluationSessionId = null;
+                        ElementPlus.ElMessage.warning(res.data.message || '评估更新失败');
+                    }
+                } catch (e) {
+                    console.error(e);
+                    evaluationSessionId = null;
+                    ElementPlus.ElMessage.error('评估更新失败: ' + (e.response?.data?.message || e.message));
+                }
+            });
+        };
+
+        const handleCaseUpdate = ({ original, updated }) => {
+            const index = testCases.value.indexOf(original);
+            if (index < 0) return;
+            testCases.value.splice(index, 1, updated);
+            syncEvaluation({
+                upserts: [updated],
+                deletes: updated.caseId !== original.caseId ? [original.caseId] : []
+            });
+            ElementPlus.ElMessage.success(`用例 ${updated.caseId} 已保存`);
+        };
+
+        const handleCaseDelete = (tc) => {
+            const index = testCases.value.indexOf(tc);
+            if (index < 0) return;
+            testCases.value.splice(index, 1);
+            syncEvaluation({ deletes: [tc.caseId] });
+        };
+
         return {
             loading,
             evaluating,
@@ -291,7 +357,10 @@ const app = createApp({
             comparisonResult,
             currentPrdText,
             handleGenerate,
-            handleCompare
+            handleGenerated,
+            handleCompare,
+            handleCaseUpdate,
+            handleCaseDelete
         };
     }
 });
@@ -4,6 +4,12 @@ const PrdInput = {
             <template #header>
                 <div class="card-header" style="display: flex; justify-content: space-between; align-items: center;">
                     <span style="font-weight: 600;">PRD 输入</span>
+                    <el-tag v-if="imageProgress" size="small" type="info" effect="plain">
+                        图片识别中 {{ imageProgress.done }}/{{ imageProgress.total }}
+                    </el-tag>
+                    <el-tag v-if="pipelineStage" size="small" type="info" effect="plain">
+                        {{ pipelineStageLabel }}
+                    </el-tag>
                     <el-button type="primary" link @click="fetchFeishu" :loading="fetching">
                         <el-icon style="margin-right: 4px;"><Link /></el-icon> 导入飞书
                     </el-button>
@@ -92,7 +98,7 @@ const PrdInput = {
                         v-if="activeInputTab === 'prd'"
                         type="primary" 
                         @click="generate" 
-                        :loading="loading" 
+                        :loading="loading || !!pipelineStage" 
                         style="width: 100%; margin-top: 10px;" 
                         size="large"
                     >
@@ -159,9 +165,15 @@ const PrdInput = {
                 <template #footer>
                     <span class="dialog-footer">
                         <el-button type="info"  @click="feishuDialogVisible = false">取消</el-button>
+                        <el-button @click="watchFeishu" :loading="watching" :disabled="!feishuUrl">
+                            <el-icon style="margin-right: 4px;"><Bell /></el-icon> 关注文档
+                        </el-button>
                         <el-button type="primary" @click="confirmFetchFeishu" :loading="fetching" :disabled="!feishuUrl">
                             <el-icon style="margin-right: 4px;"><Download /></el-icon> 导入文档
                         </el-button>
+                        <el-button type="success" @click="generateFromFeishu" :loading="!!pipelineStage" :disabled="!feishuUrl || fetching">
+                            <el-icon style="margin-right: 4px;"><MagicStick /></el-icon> 导入并生成
+                        </el-button>
                     </span>
                 </template>
             </el-dialog>
@@ -177,7 +189,7 @@ const PrdInput = {
             default: () => []
         }
     },
-    emits: ['generate', 'compare'],
+    emits: ['generate', 'generated', 'compare'],
     setup(props, { emit }) {
         const activeInputTab = Vue.ref('prd');
         const form = Vue.reactive({
@@ -194,6 +206,21 @@ const PrdInput = {
         const feishuSettingsExpanded = Vue.ref([]);
         const feishuStatus = Vue.ref(null);
         const savingConfig = Vue.ref(false);
+        const watching = Vue.ref(false);
+        // 服务端流水线（导入并生成）当前阶段，未运行时为null
+        const pipelineStage = Vue.ref(null);
+        const PIPELINE_STAGE_LABELS = {
+            queued: '排队中',
+            fetch: '获取文档',
+            parse: '解析PRD',
+            generate: '生成用例',
+            evaluate: '质量评测'
+        };
+        const pipelineStageLabel = Vue.computed(() =>
+            (PIPELINE_STAGE_LABELS[pipelineStage.value] || pipelineStage.value) + '...');
+        // 异步导入时的图片识别进度 { done, total }
+        const imageProgress = Vue.ref(null);
+        let cancelImageStream = null;
 
         // 是否有AI生成的用例
         const hasAiCases = Vue.computed(() => {
@@ -320,15 +347,97 @@ const PrdInput = {
             }
         };
 
+        // 图片描述逐张到达时替换对应占位符
+        const followImageJob = (jobId, total) => {
+            if (cancelImageStream) cancelImageStream();
+            imageProgress.value = { done: 0, total };
+            cancelImageStream = api.streamFeishuImages(jobId, {
+                onImage: (e) => {
+                    form.prdText = form.prdText.split(e.placeholder).join(e.content);
+                    imageProgress.value = { done: imageProgress.value.done + 1, total };
+                },
+                onDone: (content) => {
+                    imageProgress.value = null;
+                    cancelImageStream = null;
+                    if (form.prdText.includes('{{IMAGE_PLACEHOLDER_')) {
+                        form.prdText = content;
+                    }
+                    ElementPlus.ElMessage.success('图片识别完成');
+                },
+                onError: (message) => {
+                    imageProgress.value = null;
+                    cancelImageStream = null;
+                    ElementPlus.ElMessage.error('图片识别失败: ' + message);
+                }
+            });
+        };
+
+        // 文档已被关注并在后台预生成过用例时，询问是否直接使用
+        const offerPrecomputedSuite = async (url) => {
+            let suite;
+            try {
+                const res = await api.getPrecomputedSuite(url);
+                suite = res.data;
+            } catch (e) {
+                console.error('获取预生成用例失败:', e);
+                return;
+            }
+            if (!suite || !suite.found || !suite.result) return;
+
+            const time = new Date(suite.computedAt).toLocaleString();
+            try {
+                await ElementPlus.ElMessageBox.confirm(
+                    `该文档已在后台预生成 ${suite.result.count} 条用例（${time}）` +
+                    (suite.refreshing ? '，文档有新的变更正在重新生成' : '') + '，是否直接使用？',
+                    '预生成用例',
+                    { confirmButtonText: '使用', cancelButtonText: '不使用', type: 'info' }
+                );
+            } catch (e) {
+                return;
+            }
+            if (cancelImageStream) {
+                cancelImageStream();
+                cancelImageStream = null;
+                imageProgress.value = null;
+            }
+            if (suite.result.prdText) {
+                form.prdText = suite.result.prdText;
+            }
+            emit('generated', suite.result);
+        };
+
+        const watchFeishu = async () => {
+            if (!feishuUrl.value) return;
+            watching.value = true;
+            try {
+                const res = await api.watchFeishuDocument(feishuUrl.value);
+                if (res.data && res.data.success) {
+                    ElementPlus.ElMessage.success(res.data.message);
+                } else {
+                    ElementPlus.ElMessage.error(res.data?.message || '关注失败');
+                }
+            } catch (e) {
+                ElementPlus.ElMessage.error('关注失败: ' + (e.response?.data?.message || e.message));
+            } finally {
+                watching.value = false;
+            }
+        };
+
         const confirmFetchFeishu = async () => {
             if (!feishuUrl.value) return;
             fetching.value = true;
             try {
-                const res = await api.fetchFeishuContent(feishuUrl.value);
+                const res = await api.fetchFeishuContent(feishuUrl.value, { async: true });
                 if (res.data && res.data.content) {
                     form.prdText = res.data.content;
                     feishuDialogVisible.value = false;
-                    ElementPlus.ElMessage.success('导入成功');
+                    if (res.data.pending && res.data.jobId) {
+                        ElementPlus.ElMessage.success(`文本已导入，正在识别 ${res.data.imageCount} 张图片`);
+                        followImageJob(res.data.jobId, res.data.imageCount);
+                    } else {
+                        ElementPlus.ElMessage.success('导入成功');
+                    }
+                    offerPrecomputedSuite(feishuUrl.value);
                 } else {
                     ElementPlus.ElMessage.error('无法获取文档内容');
                 }
@@ -339,6 +448,37 @@ const PrdInput = {
             }
         };
 
+        // 由服务端流水线完成 获取文档 → 图片识别 → 解析 → 生成 → 评测，前端按runId轮询结果
+        const generateFromFeishu = async () => {
+            if (!feishuUrl.value) return;
+            if (cancelImageStream) {
+                cancelImageStream();
+                cancelImageStream = null;
+                imageProgress.value = null;
+            }
+            pipelineStage.value = 'queued';
+            feishuDialogVisible.value = false;
+            try {
+                let run = (await api.startPipeline({ url: feishuUrl.value, enableEval: true })).data;
+                while (run.success && !run.done) {
+                    pipelineStage.value = run.stage;
+                    await new Promise(resolve => setTimeout(resolve, 1500));
+                    run = (await api.getPipeline(run.runId)).data;
+                }
+                if (!run.success || run.error) {
+                    ElementPlus.ElMessage.error('生成失败: ' + (run.error || run.message));
+                    return;
+                }
+                form.prdText = run.result.prdText || '';
+                emit('generated', run.result);
+                ElementPlus.ElMessage.success(run.result.message);
+            } catch (e) {
+                ElementPlus.ElMessage.error('生成失败: ' + (e.response?.data?.message || e.message));
+            } finally {
+                pipelineStage.value = null;
+            }
+        };
+
         const validateJson = () => {
             try {
                 const cases = JSON.parse(form.referenceCasesJson);
@@ -388,11 +528,17 @@ const PrdInput = {
             feishuSettingsExpanded,
             feishuStatus,
             savingConfig,
+            watching,
+            imageProgress,
+            pipelineStage,
+            pipelineStageLabel,
             generate,
             performCompare,
             fetchFeishu,
             saveFeishuConfig,
+            watchFeishu,
             confirmFetchFeishu,
+            generateFromFeishu,
             validateJson,
             clearReferenceJson,
             showSampleJson
@@ -91,14 +91,61 @@ const TestCaseDisplay = {
                         <el-tag :type="getPriorityTag(scope.row.priority)" effect="plain" size="small">{{ scope.row.priority }}</el-tag>
                     </template>
                 </el-table-column>
-                <el-table-column label="操作" width="150" fixed="right">
+                <el-table-column label="操作" width="230" fixed="right">
                     <template #default="scope">
+                        <el-button type="primary" size="small" @click="showEditDialog(scope.row)" plain>
+                            <el-icon><Edit /></el-icon> 编辑
+                        </el-button>
+                        <el-button type="danger" size="small" @click="handleDelete(scope.row)" plain>
+                            <el-icon><Delete /></el-icon>
+                        </el-button>
                         <el-button type="primary" size="small" @click="showExportDialog(scope.row)" plain>
-                            <el-icon><Download /></el-icon> 导出用例
+                            <el-icon><Download /></el-icon> 导出
                         </el-button>
                     </template>
                 </el-table-column>
             </el-table>
+
+            <!-- 编辑用例对话框（保存后评估得分按变更增量更新） -->
+            <el-dialog v-model="editDialogVisible" title="编辑用例" width="600px" class="export-dialog">
+                <el-form :model="editForm" label-width="90px" size="small">
+                    <el-form-item label="用例ID">
+                        <el-input v-model="editForm.caseId"></el-input>
+                    </el-form-item>
+                    <el-form-item label="标题">
+                        <el-input v-model="editForm.title"></el-input>
+                    </el-form-item>
+                    <el-form-item label="模块">
+                        <el-input v-model="editForm.module"></el-input>
+                    </el-form-item>
+                    <el-form-item label="类型">
+                        <el-select v-model="editForm.sceneType">
+                            <el-option label="前端" value="FRONTEND"></el-option>
+                            <el-option label="后端" value="BACKEND"></el-option>
+                            <el-option label="集成" value="INTEGRATION"></el-option>
+                            <el-option label="异常" value="EXCEPTION"></el-option>
+                        </el-select>
+                    </el-form-item>
+                    <el-form-item label="优先级">
+                        <el-select v-model="editForm.priority">
+                            <el-option v-for="p in ['P0', 'P1', 'P2', 'P3']" :key="p" :label="p" :value="p"></el-option>
+                        </el-select>
+                    </el-form-item>
+                    <el-form-item label="前置条件">
+                        <el-input v-model="editForm.preCondition" type="textarea" :rows="2" placeholder="每行一条"></el-input>
+                    </el-form-item>
+                    <el-form-item label="前端预期">
+                        <el-input v-model="editForm.frontEndExpected" type="textarea" :rows="3" placeholder="每行一条"></el-input>
+                    </el-form-item>
+                    <el-form-item label="后端预期">
+                        <el-input v-model="editForm.backEndExpected" type="textarea" :rows="3" placeholder="每行一条"></el-input>
+                    </el-form-item>
+                </el-form>
+                <template #footer>
+                    <el-button type="info" @click="editDialogVisible = false">取消</el-button>
+                    <el-button type="primary" @click="confirmEdit">保存</el-button>
+                </template>
+            </el-dialog>
             
             <!-- 单个用例导出格式选择对话框 -->
             <el-dialog v-model="exportDialogVisible" title="导出用例" width="400px" class="export-dialog">
@@ -267,7 +314,8 @@ const TestCaseDisplay = {
         </div>
     `,
     props: ['cases', 'loading'],
-    setup(props) {
+    emits: ['update-case', 'delete-case'],
+    setup(props, { emit }) {
         const filterType = Vue.ref('ALL');
 
         const displayCases = Vue.computed(() => {
@@ -569,6 +617,62 @@ const TestCaseDisplay = {
             exportDialogVisible.value = true;
         };
 
+        // 编辑用例：列表字段在表单中按行编辑
+        const editDialogVisible = Vue.ref(false);
+        const editingCase = Vue.ref(null);
+        const editForm = Vue.reactive({});
+
+        const showEditDialog = (tc) => {
+            editingCase.value = tc;
+            Object.assign(editForm, {
+                caseId: tc.caseId || '',
+                title: tc.title || '',
+                module: tc.module || '',
+                sceneType: tc.sceneType || 'FRONTEND',
+                priority: tc.priority || 'P2',
+                preCondition: (tc.preCondition || []).join('\n'),
+                frontEndExpected: (tc.frontEndExpected || []).join('\n'),
+                backEndExpected: (tc.backEndExpected || []).join('\n')
+            });
+            editDialogVisible.value = true;
+        };
+
+        const splitLines = (text) => text.split('\n').map(s => s.trim()).filter(s => s);
+
+        const confirmEdit = () => {
+            const original = editingCase.value;
+            const caseId = editForm.caseId.trim();
+            if (!caseId || !editForm.title.trim()) {
+                ElementPlus.ElMessage.warning('用例ID和标题不能为空');
+                return;
+            }
+            if (caseId !== original.caseId && (props.cases || []).some(c => c.caseId === caseId)) {
+                ElementPlus.ElMessage.warning(`用例ID ${caseId} 已存在`);
+                return;
+            }
+            const updated = {
+                ...original,
+                caseId,
+                title: editForm.title.trim(),
+                module: editForm.module.trim() || null,
+                sceneType: editForm.sceneType,
+                priority: editForm.priority,
+                preCondition: splitLines(editForm.preCondition),
+                frontEndExpected: splitLines(editForm.frontEndExpected),
+                backEndExpected: splitLines(editForm.backEndExpected)
+            };
+            emit('update-case', { original, updated });
+            editDialogVisible.value = false;
+        };
+
+        const handleDelete = (tc) => {
+            ElementPlus.ElMessageBox.confirm(`确定删除用例 ${tc.caseId}「${tc.title}」？`, '删除用例', {
+                type: 'warning',
+                confirmButtonText: '删除',
+                cancelButtonText: '取消'
+            }).then(() => emit('delete-case', tc)).catch(() => {});
+        };
+
         // 生成JSON格式
         const formatToJson = (tc) => {
             return JSON.stringify(tc, null, 2);
@@ -693,7 +797,13 @@ const TestCaseDisplay = {
             exportingCase,
             exportFormat,
             showExportDialog,
-            confirmExportSingle
+            confirmExportSingle,
+            // 编辑/删除
+            editDialogVisible,
+            editForm,
+            showEditDialog,
+            confirmEdit,
+            handleDelete
         };
     }
 };